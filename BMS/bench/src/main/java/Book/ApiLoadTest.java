@@ -0,0 +1,200 @@
+package Book;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop load test of ApiServer on an existing database (DataGenerator
+// makes one). The server runs in-process on a free port; each client thread
+// sends its next request as soon as the last one is answered, over keep-alive
+// HTTP/1.1, in a mix weighted towards what the shop front does most: catalog
+// pages, single books and searches, with some reports and a few orders.
+// Besides throughput it reports the server's CPU time per request (the
+// process's CPU time less the client threads'), which is what bounds
+// requests per second per core once clients run elsewhere. Orders are written
+// to the database, so use a copy.
+// Usage: java -cp bench/target/benchmarks.jar Book.ApiLoadTest <database> [seconds] [clients]
+final class ApiLoadTest {
+    private static final String[] SEARCH_WORDS = {"the", "river", "garden", "night", "kingdom", "silent", "mirror"};
+
+    private enum Kind {
+        CATALOG(45), BOOK(25), SEARCH(15), ORDERS(7), REPORT(6), PLACE_ORDER(2);
+
+        final int weight;
+
+        Kind(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    // Latencies and counts per kind of request for one run
+    private static final class Results {
+        final Map<Kind, QueryMetrics.Histogram> latency = new EnumMap<>(Kind.class);
+        final Map<Kind, LongAdder> counts = new EnumMap<>(Kind.class);
+        final LongAdder errors = new LongAdder();
+        final LongAdder clientCpuNanos = new LongAdder();
+
+        Results() {
+            for (Kind kind : Kind.values()) {
+                latency.put(kind, new QueryMetrics.Histogram());
+                counts.put(kind, new LongAdder());
+            }
+        }
+    }
+
+    private ApiLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp bench/target/benchmarks.jar Book.ApiLoadTest <database> [seconds] [clients]");
+            System.exit(2);
+        }
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        Class.forName("org.sqlite.JDBC");
+        SchemaMigrations.migrate(Database.open(args[0]), null);
+        int maxBookId = maxId("SELECT MAX(book_id) FROM books");
+        int maxCustomerId = maxId("SELECT MAX(customer_id) FROM customers");
+        ApiServer server = ApiServer.start(0);
+        String base = "http://localhost:" + server.port() + "/api/";
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+
+        // Warm up the JIT, the page caches and the report cache, then measure from zero
+        run(client, base, Math.max(2, seconds / 5), clients, maxBookId, maxCustomerId);
+        long cpuBefore = processCpuNanos() - httpClientCpuNanos();
+        Results results = run(client, base, seconds, clients, maxBookId, maxCustomerId);
+        long serverCpu = processCpuNanos() - httpClientCpuNanos() - cpuBefore - results.clientCpuNanos.sum();
+
+        long total = 0;
+        for (Kind kind : Kind.values()) {
+            long count = results.counts.get(kind).sum();
+            QueryMetrics.Histogram latency = results.latency.get(kind);
+            total += count;
+            System.out.printf(Locale.ROOT, "%-12s %8d  p50=%6.2fms  p99=%7.2fms%n", kind, count,
+                latency.valueAt(0.50) / 1e6, latency.valueAt(0.99) / 1e6);
+        }
+        System.out.printf(Locale.ROOT, "%d clients, %d s: %d requests, %.0f requests/s, %d errors%n",
+            clients, seconds, total, total / (double) seconds, results.errors.sum());
+        System.out.printf(Locale.ROOT, "Server CPU %.3f ms per request, about %.0f requests/s per core (%d cores here)%n",
+            serverCpu / 1e6 / total, total * 1e9 / serverCpu, Runtime.getRuntime().availableProcessors());
+        System.out.println(server.stats());
+        System.out.println(Database.stats());
+        server.stop();
+        Database.close();
+    }
+
+    private static Results run(HttpClient client, String base, int seconds, int clients, int maxBookId,
+                               int maxCustomerId) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Results results = new Results();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    Kind kind = pick(random);
+                    HttpRequest request = request(kind, base, random, maxBookId, maxCustomerId);
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() >= 400 && response.statusCode() != 404) {
+                            results.errors.increment();
+                        }
+                    } catch (Exception e) {
+                        results.errors.increment();
+                    }
+                    results.latency.get(kind).record(System.nanoTime() - start);
+                    results.counts.get(kind).increment();
+                }
+                results.clientCpuNanos.add(ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime());
+            }, "load-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return results;
+    }
+
+    private static Kind pick(Random random) {
+        int roll = random.nextInt(100);
+        for (Kind kind : Kind.values()) {
+            roll -= kind.weight;
+            if (roll < 0) {
+                return kind;
+            }
+        }
+        return Kind.CATALOG;
+    }
+
+    private static HttpRequest request(Kind kind, String base, Random random, int maxBookId, int maxCustomerId) {
+        String path;
+        switch (kind) {
+            case CATALOG:
+                path = "books?limit=50&after=" + random.nextInt(Math.max(1, maxBookId));
+                break;
+            case BOOK:
+                path = "books/" + (1 + random.nextInt(Math.max(1, maxBookId)));
+                break;
+            case SEARCH:
+                path = "books/search?limit=20&q=" + SEARCH_WORDS[random.nextInt(SEARCH_WORDS.length)];
+                break;
+            case ORDERS:
+                path = "orders?limit=50&from=2024-0" + (1 + random.nextInt(9)) + "-01&to=2024-12-31";
+                break;
+            case REPORT:
+                BookstoreService.Report[] reports = BookstoreService.Report.values();
+                path = "reports/" + reports[random.nextInt(reports.length)].path;
+                break;
+            default:
+                String order = "{\"customerId\":" + (1 + random.nextInt(Math.max(1, maxCustomerId))) +
+                               ",\"items\":[{\"bookId\":" + (1 + random.nextInt(Math.max(1, maxBookId))) +
+                               ",\"quantity\":" + (1 + random.nextInt(3)) + "}]}";
+                return HttpRequest.newBuilder(URI.create(base + "orders"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(order)).build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+            .getProcessCpuTime();
+    }
+
+    // CPU time of the HttpClient's own selector threads so far
+    private static long httpClientCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long nanos = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("HttpClient")) {
+                nanos += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return nanos;
+    }
+
+    private static int maxId(String query) throws SQLException {
+        try (Statement stmt = Database.reader().createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
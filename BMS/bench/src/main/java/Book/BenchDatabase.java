@@ -0,0 +1,119 @@
+package Book;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Seeded bookstore databases for the benchmarks, built once per size and schema
+// version and kept in bench.dataDir between runs. "rows" is the number of order
+// lines; the other tables scale from it (a book per 10 lines, a customer per 20,
+// four lines per order) so every size has the same shape.
+final class BenchDatabase {
+    static final String[] TITLE_WORDS = {"Garden", "River", "Shadow", "Winter", "Empire", "Secret", "Journey", "Ocean"};
+    static final String[] SUBTITLE_WORDS = {"Lantern", "Harbor", "Echo", "Atlas", "Ember", "Meadow", "Canyon",
+                                            "Signal", "Orchard", "Tide", "Compass", "Falcon", "Quarry"};
+    static final int LINES_PER_ORDER = 4;
+
+    private BenchDatabase() {
+    }
+
+    static int books(int rows) {
+        return Math.max(100, rows / 10);
+    }
+
+    static int customers(int rows) {
+        return Math.max(50, rows / 20);
+    }
+
+    static int authors(int rows) {
+        return Math.max(10, rows / 1000);
+    }
+
+    // Path of the seeded database for this size, creating it on first use
+    static synchronized File seeded(int rows) throws SQLException, IOException {
+        File dir = new File(System.getProperty("bench.dataDir",
+            new File(System.getProperty("java.io.tmpdir"), "bms-bench").getPath()));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, "bookstore-" + rows + "-v" + SchemaMigrations.latestVersion() + ".db");
+        if (!file.exists()) {
+            File temp = new File(dir, file.getName() + ".seeding");
+            temp.delete();
+            long start = System.nanoTime();
+            seed(temp, rows);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.printf("Seeded %s in %.1fs%n", file, (System.nanoTime() - start) / 1e9);
+        }
+        return file;
+    }
+
+    // A private copy for benchmarks that write
+    static File scratchCopy(int rows) throws SQLException, IOException {
+        File copy = File.createTempFile("bms-bench-" + rows + "-", ".db");
+        Files.copy(seeded(rows).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    static void deleteDatabase(File file) {
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+    }
+
+    private static void seed(File file, int rows) throws SQLException {
+        int books = books(rows);
+        int customers = customers(rows);
+        int authors = authors(rows);
+        int orders = (rows + LINES_PER_ORDER - 1) / LINES_PER_ORDER;
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            SchemaMigrations.migrate(connection, null);
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA cache_size = -262144");
+                stmt.execute(series(authors) + "INSERT INTO authors (name, birth_date) " +
+                             "SELECT 'Author ' || i, date('1940-01-01', '+' || (i * 37 % 20000) || ' days') FROM n");
+                stmt.execute(series(books) + "INSERT INTO books (title, author_id, genre, price_cents, publication_date) " +
+                             "SELECT " + words(TITLE_WORDS, "i") + " || ' ' || " +
+                             words(SUBTITLE_WORDS, "(i / " + TITLE_WORDS.length + ")") + " || ' ' || i, " +
+                             "1 + i % " + authors + ", 'Genre ' || (i % 25), (i % 50) * 100 + 499, " +
+                             "date('1990-01-01', '+' || (i * 13 % 12000) || ' days') FROM n");
+                stmt.execute(series(customers) + "INSERT INTO customers (name, email, phone) " +
+                             "SELECT 'Customer ' || i, 'customer' || i || '@example.com', '555-' || (1000000 + i) FROM n");
+                stmt.execute(series(orders) + "INSERT INTO orders (customer_id, order_date, total_cents) " +
+                             "SELECT 1 + i * 7919 % " + customers + ", date('2020-01-01', '+' || (i % 1500) || ' days'), 0 FROM n");
+                // Book price is (book_id % 50) + 4.99, so lines can be priced without a join
+                stmt.execute(series(rows) + "INSERT INTO order_items (order_id, book_id, quantity, unit_price_cents) " +
+                             "SELECT 1 + (i - 1) / " + LINES_PER_ORDER + ", b, 1 + i % 3, (b % 50) * 100 + 499 " +
+                             "FROM (SELECT i, 1 + i * 48271 % " + books + " AS b FROM n)");
+                stmt.execute("UPDATE orders SET total_cents = (SELECT SUM(quantity * unit_price_cents) FROM order_items " +
+                             "WHERE order_items.order_id = orders.order_id)");
+                stmt.execute("ANALYZE");
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("VACUUM");
+            }
+        }
+    }
+
+    private static String series(int count) {
+        return "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + count + ") ";
+    }
+
+    // SQL expression picking words[expr % words.length]
+    private static String words(String[] words, String expr) {
+        StringBuilder sql = new StringBuilder("CASE (" + expr + ") % " + words.length);
+        for (int i = 0; i < words.length; i++) {
+            sql.append(" WHEN ").append(i).append(" THEN '").append(words[i]).append('\'');
+        }
+        return sql.append(" END").toString();
+    }
+}
@@ -0,0 +1,203 @@
+package Book;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import Book.EntityCache.LookupItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The application's data-access hot paths, each run through the same code or SQL
+// the UI uses, against seeded databases of each size. Pick sizes or benchmarks
+// with the usual JMH options, and keep the JSON for comparing versions:
+//   java -jar bench/target/benchmarks.jar -p rows=10000 -rf json -rff results.json
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAccessBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private Connection connection;
+    private PagedTableModel booksModel;
+    private File exportFile;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        File file = BenchDatabase.seeded(rows);
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON");
+        }
+        booksModel = BookstoreManagementSystem.createBooksModel();
+        EntityCache.load(connection);
+        exportFile = File.createTempFile("bms-bench-export", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+        exportFile.delete();
+    }
+
+    // refreshBooksTable: every row key, then the first keyset page
+    @Benchmark
+    public void loadBooksTable(Blackhole blackhole) throws SQLException {
+        int firstKey = -1;
+        int count = 0;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(booksModel.keysQuery())) {
+            while (rs.next()) {
+                int key = rs.getInt(1);
+                if (firstKey < 0) {
+                    firstKey = key;
+                }
+                count++;
+            }
+        }
+        blackhole.consume(count);
+        readPage(blackhole, firstKey);
+    }
+
+    // Scrolling: one keyset page from the middle of the table
+    @Benchmark
+    public void loadBooksPage(Blackhole blackhole) throws SQLException {
+        readPage(blackhole, BenchDatabase.books(rows) / 2);
+    }
+
+    // searchBooks: a two-word query matching about 1 book in 100
+    @Benchmark
+    public int[] searchBooks() throws SQLException {
+        return BookSearchIndex.search(connection, "river lantern", new BookSearchIndex.Filters(), null);
+    }
+
+    @Benchmark
+    public int[] searchBooksWithPriceFilter() throws SQLException {
+        BookSearchIndex.Filters filters = new BookSearchIndex.Filters();
+        filters.minPriceCents = 1000L;
+        filters.maxPriceCents = 2000L;
+        return BookSearchIndex.search(connection, "garden", filters, null);
+    }
+
+    // Autocomplete in the book combo boxes, served from the in-memory index
+    @Benchmark
+    public List<LookupItem> autocompleteBooks() {
+        return EntityCache.suggest(EntityCache.Kind.BOOK, "shadow ech", 10);
+    }
+
+    @Benchmark
+    public void reportSalesByGenre(Blackhole blackhole) throws SQLException {
+        runQuery(blackhole, SalesSummary.SALES_BY_GENRE_QUERY);
+    }
+
+    @Benchmark
+    public void reportTopSellingBooks(Blackhole blackhole) throws SQLException {
+        runQuery(blackhole, SalesSummary.TOP_SELLING_BOOKS_QUERY);
+    }
+
+    @Benchmark
+    public void reportCustomerSpending(Blackhole blackhole) throws SQLException {
+        runQuery(blackhole, SalesSummary.CUSTOMER_SPENDING_QUERY);
+    }
+
+    // Export of the full books table, as the Books tab's Export button runs it
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long exportBooksCsv() throws Exception {
+        List<Object> params = new ArrayList<>();
+        String query = booksModel.exportQuery(params);
+        return CsvExporter.export(connection, query, params.toArray(), booksModel.getColumnNames(), exportFile, null);
+    }
+
+    // Saving a new order (insertOrderItems) on a private copy of the database
+    @Benchmark
+    public int insertOrder(OrderState state) throws SQLException {
+        return OrderWriter.insertOrder(state.connection, state.nextCustomer(), "2024-06-01", 5995, state.nextItems());
+    }
+
+    @State(Scope.Benchmark)
+    public static class OrderState {
+        static final int LINES = 5;
+
+        private File file;
+        private Connection connection;
+        private final Random random = new Random(42);
+        private int books;
+        private int customers;
+
+        @Setup(Level.Trial)
+        public void open(DataAccessBenchmark benchmark) throws Exception {
+            file = BenchDatabase.scratchCopy(benchmark.rows);
+            books = BenchDatabase.books(benchmark.rows);
+            customers = BenchDatabase.customers(benchmark.rows);
+            connection = Database.open(file.getPath());
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            Database.close();
+            BenchDatabase.deleteDatabase(file);
+        }
+
+        int nextCustomer() {
+            return 1 + random.nextInt(customers);
+        }
+
+        List<Object[]> nextItems() {
+            List<Object[]> items = new ArrayList<>(LINES);
+            for (int i = 0; i < LINES; i++) {
+                int bookId = 1 + random.nextInt(books);
+                long priceCents = bookId % 50 * 100 + 499;
+                items.add(new Object[] {LookupItem.book(bookId, "", priceCents, 0), 1, priceCents});
+            }
+            return items;
+        }
+    }
+
+    private void readPage(Blackhole blackhole, int firstKey) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(booksModel.pageQuery())) {
+            pstmt.setInt(1, firstKey);
+            pstmt.setInt(2, PagedTableModel.PAGE_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    blackhole.consume(booksModel.rowMapper().map(rs));
+                }
+            }
+        }
+    }
+
+    private void runQuery(Blackhole blackhole, String query) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    blackhole.consume(rs.getObject(i));
+                }
+            }
+        }
+    }
+}
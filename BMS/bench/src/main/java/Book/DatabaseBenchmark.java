@@ -0,0 +1,192 @@
+package Book;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Book.EntityCache.LookupItem;
+
+// Mixed read/write throughput on a scratch database. One client saves orders in
+// a loop while the others alternate between the customer spending report and
+// order-list page reads. "shared" replays the original setup: rollback journal
+// and a single connection every task queues for. "wal" uses Database: a WAL-mode
+// writer plus one read-only connection per reading thread.
+// Usage: java -cp bench/target/benchmarks.jar Book.DatabaseBenchmark [seconds] [readers] [seedOrders]
+final class DatabaseBenchmark {
+    private static final int CUSTOMERS = 2_000;
+    private static final int BOOKS = 5_000;
+    private static final int PAGE_READS_PER_REPORT = 5;
+
+    private DatabaseBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seedOrders = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        Class.forName("org.sqlite.JDBC");
+
+        run("shared", seconds, readers, seedOrders);
+        run("wal", seconds, readers, seedOrders);
+    }
+
+    private static void run(String mode, int seconds, int readers, int seedOrders) throws Exception {
+        File file = File.createTempFile("bookstore-mixed", ".db");
+        try {
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+                SchemaMigrations.migrate(connection, null);
+                seed(connection, seedOrders);
+            }
+
+            boolean wal = mode.equals("wal");
+            Connection shared = wal ? null : DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+            Connection writer = wal ? Database.open(file.getPath()) : shared;
+            Object lock = new Object();
+
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Long> writeLatencies = new ArrayList<>();
+            AtomicLong reports = new AtomicLong();
+            AtomicLong pages = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            List<Exception> failures = new ArrayList<>();
+
+            threads.add(new Thread(() -> {
+                Random random = new Random(1);
+                try {
+                    while (System.nanoTime() < deadline) {
+                        List<Object[]> items = new ArrayList<>();
+                        for (int i = 0; i < 3; i++) {
+                            int bookId = 1 + random.nextInt(BOOKS);
+                            items.add(new Object[] {LookupItem.book(bookId, "Book " + bookId, 999, 1), 1, 999L});
+                        }
+                        long start = System.nanoTime();
+                        if (wal) {
+                            OrderWriter.insertOrder(writer, 1 + random.nextInt(CUSTOMERS), "2024-06-01", 2997, items);
+                        } else {
+                            synchronized (lock) {
+                                OrderWriter.insertOrder(writer, 1 + random.nextInt(CUSTOMERS), "2024-06-01", 2997, items);
+                            }
+                        }
+                        writeLatencies.add(System.nanoTime() - start);
+                    }
+                } catch (SQLException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "bench-writer"));
+
+            for (int r = 0; r < readers; r++) {
+                int seed = r;
+                threads.add(new Thread(() -> {
+                    Random random = new Random(100 + seed);
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            Connection connection = wal ? Database.reader() : shared;
+                            if (wal) {
+                                readOnce(connection, random);
+                            } else {
+                                synchronized (lock) {
+                                    readOnce(connection, random);
+                                }
+                            }
+                            reports.incrementAndGet();
+                            pages.addAndGet(PAGE_READS_PER_REPORT);
+                        }
+                    } catch (SQLException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }, "bench-reader-" + r));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (wal) {
+                System.out.println("  " + Database.stats());
+                Database.close();
+            } else {
+                shared.close();
+            }
+            if (!failures.isEmpty()) {
+                throw failures.get(0);
+            }
+
+            long[] latencies = writeLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-6s %7.1f orders/s  write p50=%6.2fms p99=%7.2fms max=%7.2fms  " +
+                              "%6.1f reports/s %7.1f pages/s%n",
+                              mode, latencies.length / (double) seconds,
+                              percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                              (latencies.length == 0 ? 0 : latencies[latencies.length - 1]) / 1e6,
+                              reports.get() / (double) seconds, pages.get() / (double) seconds);
+        } finally {
+            file.delete();
+            new File(file.getPath() + "-wal").delete();
+            new File(file.getPath() + "-shm").delete();
+        }
+    }
+
+    // One report plus a few keyset pages of the orders list, as the Reports and Orders tabs do
+    private static void readOnce(Connection connection, Random random) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SalesSummary.CUSTOMER_SPENDING_QUERY)) {
+            while (rs.next()) {
+                rs.getLong(2);
+            }
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT o.order_id, c.name, o.order_date, o.total_cents FROM orders o " +
+                "JOIN customers c ON o.customer_id = c.customer_id WHERE o.order_id >= ? ORDER BY o.order_id LIMIT ?")) {
+            for (int p = 0; p < PAGE_READS_PER_REPORT; p++) {
+                pstmt.setInt(1, 1 + random.nextInt(10_000));
+                pstmt.setInt(2, PagedTableModel.PAGE_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rs.getString(2);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void seed(Connection connection, int orders) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO authors (name) VALUES ('Bench Author')");
+            stmt.execute("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + CUSTOMERS + ") " +
+                         "INSERT INTO customers (name, email, phone) SELECT 'Customer ' || i, '', '' FROM n");
+            stmt.execute("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + BOOKS + ") " +
+                         "INSERT INTO books (title, author_id, genre, price_cents, publication_date) " +
+                         "SELECT 'Book ' || i, 1, 'Genre ' || (i % 20), 999, '2020-01-01' FROM n");
+            stmt.execute("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + orders + ") " +
+                         "INSERT INTO orders (customer_id, order_date, total_cents) " +
+                         "SELECT 1 + i % " + CUSTOMERS + ", '2024-01-01', 2997 FROM n");
+            stmt.execute("INSERT INTO order_items (order_id, book_id, quantity, unit_price_cents) " +
+                         "SELECT o.order_id, 1 + (o.order_id * 7 + k.k) % " + BOOKS + ", 1, 999 " +
+                         "FROM orders o, (SELECT 0 AS k UNION ALL SELECT 1 UNION ALL SELECT 2) k");
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,122 @@
+package Book;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Measures orders saved per second on a scratch database file, comparing the
+// original per-row autocommit path with OrderWriter's single batched transaction.
+// Usage: java -cp bench/target/benchmarks.jar Book.OrderSaveBenchmark [orders] [linesPerOrder] [catalogSize]
+final class OrderSaveBenchmark {
+
+    private OrderSaveBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int catalog = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        Class.forName("org.sqlite.JDBC");
+
+        double legacy = run("per-row autocommit", orders, lines, catalog, true);
+        double batched = run("batched transaction", orders, lines, catalog, false);
+        System.out.printf("Speedup: %.1fx%n", batched / legacy);
+    }
+
+    private static double run(String label, int orders, int lines, int catalog,
+                              boolean legacy) throws SQLException, java.io.IOException {
+        File file = File.createTempFile("bookstore-bench", ".db");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            SchemaMigrations.migrate(connection, null);
+            List<String> titles = seedCatalog(connection, catalog);
+
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            for (int o = 0; o < orders; o++) {
+                List<Object[]> items = new ArrayList<>(lines);
+                for (int i = 0; i < lines; i++) {
+                    items.add(new Object[] {titles.get(random.nextInt(titles.size())), 1 + random.nextInt(3), 999L});
+                }
+                if (legacy) {
+                    insertOrderLegacy(connection, 1, "2024-01-01", 0, items);
+                } else {
+                    OrderWriter.insertOrder(connection, 1, "2024-01-01", 0, items);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double perSecond = orders / seconds;
+            System.out.printf("%-20s %6d orders x %3d lines in %7.2fs = %9.1f orders/s%n",
+                              label, orders, lines, seconds, perSecond);
+            return perSecond;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static List<String> seedCatalog(Connection connection, int catalog) throws SQLException {
+        List<String> titles = new ArrayList<>(catalog);
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement pstmt = connection.prepareStatement(
+                 "INSERT INTO books (title, author_id, genre, price_cents, publication_date) VALUES (?, NULL, 'Fiction', 999, '2020-01-01')")) {
+            stmt.execute("INSERT INTO customers (name, email, phone) VALUES ('Bench Customer', '', '')");
+            for (int i = 0; i < catalog; i++) {
+                String title = "Book " + i;
+                pstmt.setString(1, title);
+                pstmt.addBatch();
+                titles.add(title);
+            }
+            pstmt.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return titles;
+    }
+
+    // The save path as it was: autocommit header insert, then a title lookup and an insert per line
+    private static void insertOrderLegacy(Connection connection, int customerId, String orderDate,
+                                          long totalCents, List<Object[]> items) throws SQLException {
+        int orderId = -1;
+        try (PreparedStatement orderStmt = connection.prepareStatement(
+                "INSERT INTO orders (customer_id, order_date, total_cents) VALUES (?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            orderStmt.setInt(1, customerId);
+            orderStmt.setString(2, orderDate);
+            orderStmt.setLong(3, totalCents);
+            orderStmt.executeUpdate();
+            try (ResultSet generatedKeys = orderStmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    orderId = generatedKeys.getInt(1);
+                }
+            }
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO order_items (order_id, book_id, quantity, unit_price_cents) VALUES (?, ?, ?, ?)")) {
+            for (Object[] item : items) {
+                int bookId = -1;
+                try (PreparedStatement lookup = connection.prepareStatement("SELECT book_id FROM books WHERE title=?")) {
+                    lookup.setString(1, (String) item[0]);
+                    try (ResultSet rs = lookup.executeQuery()) {
+                        if (rs.next()) {
+                            bookId = rs.getInt("book_id");
+                        }
+                    }
+                }
+                pstmt.setInt(1, orderId);
+                pstmt.setInt(2, bookId);
+                pstmt.setInt(3, (Integer) item[1]);
+                pstmt.setLong(4, (Long) item[2]);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
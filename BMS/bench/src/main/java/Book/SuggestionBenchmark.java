@@ -0,0 +1,80 @@
+package Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Book.EntityCache.LookupItem;
+
+// Measures autocomplete latency against a large synthetic catalog. Each query
+// replays a typist entering a title (or a word from its middle) one keystroke
+// at a time, then the index is updated in place to time incremental changes.
+// Usage: java -cp bench/target/benchmarks.jar Book.SuggestionBenchmark [titles] [typedTitles]
+final class SuggestionBenchmark {
+    private static final String[] WORDS = {
+        "the", "night", "garden", "river", "shadow", "empire", "secret", "winter", "house", "silent",
+        "history", "of", "a", "little", "stone", "lost", "city", "kingdom", "dream", "fire",
+        "ocean", "mountain", "letters", "journey", "last", "storm", "glass", "queen", "machine", "light"
+    };
+
+    private SuggestionBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int titles = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int typed = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(7);
+
+        List<LookupItem> books = new ArrayList<>(titles);
+        for (int i = 0; i < titles; i++) {
+            books.add(LookupItem.book(i + 1, randomTitle(random, i), 999, 0));
+        }
+
+        long start = System.nanoTime();
+        SuggestionIndex index = SuggestionIndex.build(books);
+        System.out.printf("Built index over %d titles in %.0fms%n", titles, (System.nanoTime() - start) / 1e6);
+
+        // Warm up, then measure a fresh index's latency histogram
+        replay(index, books, random, typed / 4);
+        index = SuggestionIndex.build(books);
+        int keystrokes = replay(index, books, random, typed);
+        System.out.println("Keystrokes: " + keystrokes);
+        System.out.println("Suggest:    " + index.stats());
+
+        start = System.nanoTime();
+        int updates = 1_000;
+        for (int i = 0; i < updates; i++) {
+            LookupItem book = books.get(random.nextInt(books.size()));
+            index.add(LookupItem.book(book.id, book.name + " (revised)", book.priceCents, 0));
+            index.remove(books.get(random.nextInt(books.size())).id);
+        }
+        System.out.printf("Updates:    %.3fms per rename + delete%n", (System.nanoTime() - start) / 1e6 / updates);
+    }
+
+    private static int replay(SuggestionIndex index, List<LookupItem> books, Random random, int typedTitles) {
+        int keystrokes = 0;
+        for (int t = 0; t < typedTitles; t++) {
+            String name = books.get(random.nextInt(books.size())).name;
+            // Half the typists start at a word in the middle of the title
+            int from = random.nextBoolean() ? 0 : Math.max(0, name.indexOf(' ') + 1);
+            for (int end = from + 1; end <= name.length(); end++) {
+                index.suggest(name.substring(from, end), 50);
+                keystrokes++;
+            }
+        }
+        return keystrokes;
+    }
+
+    private static String randomTitle(Random random, int serial) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (w == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            title.append(word).append(' ');
+        }
+        return title.append(serial).toString();
+    }
+}
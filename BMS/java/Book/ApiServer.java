@@ -0,0 +1,489 @@
+package Book;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless JSON API over the bookstore database for the web shop and the tills,
+// on the JDK's built-in HTTP server and BookstoreService. Every request runs on
+// its own thread: a virtual thread on Java 21 and later, otherwise one from a
+// fixed pool of platform threads. Reads borrow a connection from Database's
+// reader pool, which also bounds how many queries run at once; writes take the
+// writer connection one request at a time through WriteScheduler, and a write
+// that cannot get the database's lock from another process answers 503.
+//
+//   GET  /api/books?after=&limit=                  catalog in id order; "next" is the after= of the next page
+//   GET  /api/books/{id}
+//   GET  /api/books/search?q=&minPrice=&maxPrice=&from=&to=&limit=
+//   GET  /api/orders?after=&limit=&q=&from=&to=     by date, then id; "next" is "date,id" of the last row
+//   GET  /api/orders/{id}                          the order with its lines
+//   POST /api/orders                               {"customerId": 1, "orderDate": "2024-05-01",
+//                                                   "items": [{"bookId": 7, "quantity": 2}]}
+//   GET  /api/reports/{sales-by-genre|top-selling-books|customer-spending}?from=&to=&limit=
+//   GET  /api/stats
+//
+// Amounts are integer cents and dates ISO yyyy-MM-dd; an order is priced from the
+// catalog, and its date defaults to today. Errors are {"error": message}.
+// Usage: java Book.ApiServer [database] [port]
+final class ApiServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_LIMIT = 50;
+    // Leading rows of a report returned unless the request asks for more
+    static final int DEFAULT_REPORT_ROWS = 100;
+    // Request threads when the runtime has no virtual threads
+    static final int PLATFORM_THREADS = 64;
+    static final int BACKLOG = 1024;
+    // Largest request body read; an order with thousands of lines still fits
+    static final int MAX_BODY_BYTES = 1 << 20;
+
+    private static final Logger log = LoggerFactory.getLogger(ApiServer.class);
+
+    // A request that cannot be served, with the status to answer it with
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Read<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final QueryMetrics.Histogram latency = new QueryMetrics.Histogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private ApiServer(HttpServer server, ExecutorService executor, boolean virtualThreads) {
+        this.server = server;
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "bookstore.db";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        Class.forName("org.sqlite.JDBC");
+        SchemaMigrations.migrate(Database.open(path));
+        ApiServer server = start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "api-stop"));
+    }
+
+    // Serve the open Database on the port (0 for any free one)
+    static ApiServer start(int port) throws IOException {
+        ExecutorService executor = virtualThreadExecutor();
+        boolean virtual = executor != null;
+        if (!virtual) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(PLATFORM_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "api-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        HttpServer http = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        ApiServer api = new ApiServer(http, executor, virtual);
+        http.createContext("/api/", api::handle);
+        http.setExecutor(executor);
+        http.start();
+        log.info("Serving the bookstore API on port {} ({} threads)", api.port(), virtual ? "virtual" : "platform");
+        return api;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when the runtime has it; the build targets
+    // Java 11, so it is looked up by name
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String stats() {
+        return String.format(Locale.ROOT, "API requests=%d failed=%d p50=%.2fms p99=%.2fms threads=%s",
+            requests.sum(), failures.sum(), latency.valueAt(0.50) / 1e6, latency.valueAt(0.99) / 1e6,
+            virtualThreads ? "virtual" : "platform");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        Object body;
+        try {
+            body = route(exchange);
+            if (exchange.getRequestMethod().equals("POST")) {
+                status = 201;
+            }
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException | ParseException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (WriteScheduler.BusyException e) {
+            // Another process kept the database locked; the client may try again
+            status = 503;
+            body = error(e.getMessage());
+            exchange.getResponseHeaders().set("Retry-After", "1");
+        } catch (Exception | Error e) {
+            // Errors too (a StackOverflowError, say), so the client still gets an answer
+            log.error("{} {} failed", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            status = 500;
+            body = error("Internal error: " + e.getMessage());
+        }
+        try {
+            byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+            requests.increment();
+            if (status >= 500) {
+                failures.increment();
+            }
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private Object route(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path[0];
+        String item = path.length > 1 ? path[1] : null;
+        if (path.length > 2) {
+            throw new ApiException(404, "No such resource: " + exchange.getRequestURI().getPath());
+        }
+
+        if (method.equals("POST")) {
+            if (resource.equals("orders") && item == null) {
+                return placeOrder(Json.parseObject(body(exchange)));
+            }
+            throw new ApiException(405, "POST is only supported on /api/orders");
+        }
+        if (!method.equals("GET")) {
+            throw new ApiException(405, method + " is not supported");
+        }
+        switch (resource) {
+            case "books":
+                if (item == null) {
+                    return books(query);
+                }
+                return item.equals("search") ? searchBooks(query) : book(id(item));
+            case "orders":
+                return item == null ? orders(query) : order(id(item));
+            case "reports":
+                if (item == null) {
+                    throw new ApiException(404, "Name a report: /api/reports/{name}");
+                }
+                BookstoreService.Report report;
+                try {
+                    report = BookstoreService.Report.byPath(item);
+                } catch (IllegalArgumentException e) {
+                    throw new ApiException(404, e.getMessage());
+                }
+                return report(report, query);
+            case "stats":
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("api", stats());
+                stats.put("database", Database.stats());
+                stats.put("writes", WriteScheduler.stats());
+                stats.put("reportCache", ReportCache.stats());
+                return stats;
+            default:
+                throw new ApiException(404, "No such resource: " + resource);
+        }
+    }
+
+    // The request body as text, refused with 413 beyond MAX_BODY_BYTES
+    private static String body(HttpExchange exchange) throws IOException, ApiException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "The request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private Object books(Map<String, String> query) throws SQLException {
+        int after = intParam(query, "after", 0);
+        int limit = intParam(query, "limit", DEFAULT_LIMIT);
+        List<Object[]> rows = read(connection -> BookstoreService.books(connection, after, limit));
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("books", bookList(rows));
+        page.put("next", rows.size() < BookstoreService.pageSize(limit) ? null : rows.get(rows.size() - 1)[0]);
+        return page;
+    }
+
+    private Object book(int bookId) throws SQLException, ApiException {
+        Object[] row = read(connection -> BookstoreService.book(connection, bookId));
+        if (row == null) {
+            throw new ApiException(404, "No book " + bookId);
+        }
+        return bookJson(row);
+    }
+
+    private Object searchBooks(Map<String, String> query) throws SQLException, ParseException {
+        BookSearchIndex.Filters filters = new BookSearchIndex.Filters();
+        filters.minPriceCents = centsParam(query, "minPrice");
+        filters.maxPriceCents = centsParam(query, "maxPrice");
+        filters.fromDate = IsoDates.normalize(query.get("from"));
+        filters.toDate = IsoDates.normalize(query.get("to"));
+        String text = query.getOrDefault("q", "");
+        int limit = intParam(query, "limit", DEFAULT_LIMIT);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("books", bookList(read(connection ->
+            BookstoreService.searchBooks(connection, text, filters, limit, null))));
+        return result;
+    }
+
+    private Object orders(Map<String, String> query) throws SQLException, ParseException {
+        String after = query.get("after");
+        String afterDate = null;
+        int afterId = 0;
+        if (after != null && !after.isEmpty()) {
+            int comma = after.lastIndexOf(',');
+            afterDate = comma > 0 ? after.substring(0, comma) : "";
+            afterId = intParam(query, "after", comma + 1, 0);
+            if (!IsoDates.isIso(afterDate)) {
+                throw new IllegalArgumentException("after must be the \"next\" of the previous page");
+            }
+        }
+        int limit = intParam(query, "limit", DEFAULT_LIMIT);
+        String text = query.get("q");
+        String from = IsoDates.normalize(query.get("from"));
+        String to = IsoDates.normalize(query.get("to"));
+        String cursorDate = afterDate;
+        int cursorId = afterId;
+        List<Object[]> rows = read(connection ->
+            BookstoreService.ordersByDate(connection, cursorDate, cursorId, limit, text, from, to));
+        List<Object> orders = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            orders.add(orderJson(row));
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("orders", orders);
+        Object[] last = rows.size() < BookstoreService.pageSize(limit) ? null : rows.get(rows.size() - 1);
+        page.put("next", last == null ? null : last[2] + "," + last[0]);
+        return page;
+    }
+
+    private Object order(int orderId) throws SQLException, ApiException {
+        Object[][] found = read(connection -> {
+            Object[] header = BookstoreService.order(connection, orderId);
+            return header == null ? null : new Object[][] {
+                header, BookstoreService.orderItems(connection, orderId).toArray()
+            };
+        });
+        if (found == null) {
+            throw new ApiException(404, "No order " + orderId);
+        }
+        Map<String, Object> order = orderJson(found[0]);
+        List<Object> items = new ArrayList<>();
+        for (Object line : found[1]) {
+            // {orderItemId, bookId, title, quantity, unitPrice}
+            items.add(json(new String[] {"id", "bookId", "title", "quantity", "unitPriceCents"}, (Object[]) line));
+        }
+        order.put("items", items);
+        return order;
+    }
+
+    private Object placeOrder(Map<String, Object> request) throws Exception {
+        int customerId = intField(request, "customerId");
+        String orderDate = request.get("orderDate") == null ? LocalDate.now().toString()
+                         : IsoDates.normalize(String.valueOf(request.get("orderDate")));
+        Object items = request.get("items");
+        if (!(items instanceof List)) {
+            throw new IllegalArgumentException("items must be a list of {bookId, quantity}");
+        }
+        List<?> list = (List<?>) items;
+        int[] bookIds = new int[list.size()];
+        int[] quantities = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            if (!(list.get(i) instanceof Map)) {
+                throw new IllegalArgumentException("items must be a list of {bookId, quantity}");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> line = (Map<String, Object>) list.get(i);
+            bookIds[i] = intField(line, "bookId");
+            quantities[i] = intField(line, "quantity");
+        }
+
+        return WriteScheduler.run(Database.writer(), writer -> {
+            List<Object[]> lines = BookstoreService.catalogLines(writer, bookIds, quantities);
+            int orderId = BookstoreService.placeOrder(writer, customerId, orderDate, lines);
+            Map<String, Object> placed = new LinkedHashMap<>();
+            placed.put("orderId", orderId);
+            placed.put("orderDate", orderDate);
+            placed.put("totalCents", BookstoreService.total(lines));
+            return placed;
+        });
+    }
+
+    private Object report(BookstoreService.Report report, Map<String, String> query)
+            throws SQLException, ParseException {
+        Object[] period = BookstoreService.period(query.get("from"), query.get("to"));
+        int limit = intParam(query, "limit", DEFAULT_REPORT_ROWS);
+        List<Object[]> rows = read(connection -> BookstoreService.report(connection, report, period,
+                                                                         Math.max(0, limit), null));
+        List<Object> json = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            json.add(json(report.fields, row));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("report", report.path);
+        if (period.length > 0) {
+            result.put("from", period[0]);
+            result.put("to", period[1]);
+        }
+        result.put("rows", json);
+        return result;
+    }
+
+    // Run a read on a pooled reader connection
+    private static <T> T read(Read<T> read) throws SQLException {
+        Connection connection = Database.borrowReader();
+        try {
+            return read.run(connection);
+        } finally {
+            Database.returnReader(connection);
+        }
+    }
+
+    private static List<Object> bookList(List<Object[]> rows) {
+        List<Object> books = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            books.add(bookJson(row));
+        }
+        return books;
+    }
+
+    private static Map<String, Object> bookJson(Object[] row) {
+        return json(new String[] {"id", "title", "author", "genre", "priceCents", "publicationDate"}, row);
+    }
+
+    private static Map<String, Object> orderJson(Object[] row) {
+        return json(new String[] {"id", "customer", "orderDate", "totalCents"}, row);
+    }
+
+    // A service row as a JSON object; Money becomes its cents
+    private static Map<String, Object> json(String[] fields, Object[] row) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            object.put(fields[i], row[i] instanceof Money ? (Object) ((Money) row[i]).cents : row[i]);
+        }
+        return object;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", message);
+        return error;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static int id(String text) throws ApiException {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "Not an id: " + text);
+        }
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        return intParam(query, name, 0, defaultValue);
+    }
+
+    // The parameter's value from the given offset on
+    private static int intParam(Map<String, String> query, String name, int offset, int defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.length() <= offset) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.substring(offset));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    private static Long centsParam(Map<String, String> query, String name) {
+        String value = query.get(name);
+        return value == null || value.isEmpty() ? null : Money.parseCents(value);
+    }
+
+    // A whole number field that fits an int; larger values are refused rather than wrapped
+    private static int intField(Map<String, Object> object, String name) {
+        Object value = object.get(name);
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+        long number = (Long) value;
+        if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " is out of range");
+        }
+        return (int) number;
+    }
+}
@@ -0,0 +1,187 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Full-text index over book title, author name and genre, backed by an SQLite
+// FTS5 table whose rowid is the book_id. Triggers on books and authors keep it
+// in sync, so every writer (dialogs, API, imports) indexes its changes.
+final class BookSearchIndex {
+    // bm25 column weights: a title hit counts more than an author hit, which counts more than genre
+    private static final String RANK = "bm25(books_fts, 10.0, 5.0, 1.0)";
+
+    private static final String INDEX_BOOK =
+        "INSERT INTO books_fts (rowid, title, author, genre) " +
+        "VALUES (NEW.book_id, NEW.title, (SELECT name FROM authors WHERE author_id = NEW.author_id), NEW.genre);";
+
+    private static final String[] TRIGGERS = {
+        "CREATE TRIGGER IF NOT EXISTS trg_books_fts_insert AFTER INSERT ON books BEGIN " +
+            INDEX_BOOK + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_books_fts_delete AFTER DELETE ON books BEGIN " +
+            "DELETE FROM books_fts WHERE rowid = OLD.book_id; END",
+        // Price, date and version changes do not touch the indexed columns
+        "CREATE TRIGGER IF NOT EXISTS trg_books_fts_update AFTER UPDATE OF book_id, title, author_id, genre ON books BEGIN " +
+            "DELETE FROM books_fts WHERE rowid = OLD.book_id; " + INDEX_BOOK + " END",
+        // Book search matches on author name, so a rename re-indexes the author's books
+        "CREATE TRIGGER IF NOT EXISTS trg_authors_fts_update AFTER UPDATE OF name ON authors " +
+            "WHEN OLD.name IS NOT NEW.name BEGIN " +
+            "UPDATE books_fts SET author = NEW.name " +
+            "WHERE rowid IN (SELECT book_id FROM books WHERE author_id = NEW.author_id); END",
+        "CREATE TRIGGER IF NOT EXISTS trg_authors_fts_delete AFTER DELETE ON authors BEGIN " +
+            "UPDATE books_fts SET author = NULL " +
+            "WHERE rowid IN (SELECT book_id FROM books WHERE author_id = OLD.author_id); END"
+    };
+
+    private BookSearchIndex() {
+    }
+
+    // Typed range filters applied alongside (or instead of) the text query; null means unbounded
+    static final class Filters {
+        Long minPriceCents;
+        Long maxPriceCents;
+        String fromDate;
+        String toDate;
+
+        boolean isEmpty() {
+            return minPriceCents == null && maxPriceCents == null && fromDate == null && toDate == null;
+        }
+
+        // SQL predicate over the books alias "b", with its parameters in order
+        String clause(List<Object> params) {
+            List<String> predicates = new ArrayList<>();
+            if (minPriceCents != null) {
+                predicates.add("b.price_cents >= ?");
+                params.add(minPriceCents);
+            }
+            if (maxPriceCents != null) {
+                predicates.add("b.price_cents <= ?");
+                params.add(maxPriceCents);
+            }
+            if (fromDate != null) {
+                predicates.add("b.publication_date >= ?");
+                params.add(fromDate);
+            }
+            if (toDate != null) {
+                predicates.add("b.publication_date <= ?");
+                params.add(toDate);
+            }
+            return String.join(" AND ", predicates);
+        }
+    }
+
+    static void ensureSchema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS books_fts USING fts5(" +
+                         "title, author, genre, tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3')");
+
+            // Populate the index the first time it is created against an existing catalog
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT (SELECT COUNT(*) FROM books_fts) = 0 AND (SELECT COUNT(*) FROM books) > 0")) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    rebuild(connection);
+                }
+            }
+        }
+    }
+
+    // The rebuild catches up on writes made before the triggers, which only the book dialogs indexed
+    static void ensureTriggers(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : TRIGGERS) {
+                stmt.execute(sql);
+            }
+        }
+        rebuild(connection);
+    }
+
+    static void rebuild(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM books_fts");
+            stmt.executeUpdate("INSERT INTO books_fts (rowid, title, author, genre) " +
+                               "SELECT b.book_id, b.title, a.name, b.genre " +
+                               "FROM books b LEFT JOIN authors a ON b.author_id = a.author_id");
+        }
+    }
+
+    // Book ids matching the text query, best match first
+    static int[] search(Connection connection, String text, Filters filters,
+                        DataAccessExecutor.Context context) throws SQLException {
+        return search(connection, text, filters, -1, context);
+    }
+
+    // The best limit matches only (all of them for a negative limit)
+    static int[] search(Connection connection, String text, Filters filters, int limit,
+                        DataAccessExecutor.Context context) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        params.add(toMatchQuery(text));
+        String rangeClause = filters.clause(params);
+        params.add(limit);
+        String query = "SELECT f.rowid FROM books_fts f " +
+                       (rangeClause.isEmpty() ? "" : "JOIN books b ON b.book_id = f.rowid ") +
+                       "WHERE books_fts MATCH ?" +
+                       (rangeClause.isEmpty() ? "" : " AND " + rangeClause) +
+                       " ORDER BY " + RANK + " LIMIT ?";
+
+        int[] ids = new int[64];
+        int count = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            if (context != null) {
+                context.setStatement(pstmt);
+            }
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // Translate what the user typed into FTS5 syntax. "Quoted text" is kept as a
+    // phrase; every other word becomes a prefix term. All terms must match.
+    static String toMatchQuery(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inPhrase = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c == '"') {
+                addTerm(terms, word, inPhrase);
+                inPhrase = !inPhrase;
+            } else if (inPhrase ? i == text.length() : !Character.isLetterOrDigit(c)) {
+                addTerm(terms, word, inPhrase);
+                if (inPhrase) {
+                    inPhrase = false;
+                }
+            } else if (inPhrase && !Character.isLetterOrDigit(c)) {
+                if (word.length() > 0 && word.charAt(word.length() - 1) != ' ') {
+                    word.append(' ');
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        return String.join(" ", terms);
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder word, boolean phrase) {
+        String term = word.toString().trim();
+        word.setLength(0);
+        if (!term.isEmpty()) {
+            // Terms contain only letters, digits and spaces here, so quoting cannot be broken out of
+            terms.add(phrase ? "\"" + term + "\"" : "\"" + term + "\"*");
+        }
+    }
+}
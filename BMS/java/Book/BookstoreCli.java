@@ -0,0 +1,355 @@
+package Book;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Batch entry point for scheduled jobs on machines without a display: reports
+// and table exports to CSV, imports, rebuilding the sales summaries, and
+// ANALYZE/VACUUM. Nothing here touches AWT or Swing (java.awt.headless is set
+// as well), so a run starts in a fraction of a second. Progress and errors go
+// to stderr; stdout gets one JSON line describing the run, with the command,
+// status, exit code, what it did and its phase timings in milliseconds.
+//
+// Exit codes: 0 done, 1 failed, 2 bad command line, 3 done with problems
+// (rejected import rows, summaries that differ from the order history).
+//
+// Usage: java Book.BookstoreCli [--db bookstore.db] <command> [options]
+//   report <sales-by-genre|top-selling-books|customer-spending> --out file.csv[.gz] [--from date] [--to date]
+//   export <books|authors|customers|orders|order-items> --out file.csv[.gz]
+//   import <books|customers|orders> <file.csv|file.jsonl>[.gz] [--commit-size n]
+//   rebuild-aggregates [--verify-only]
+//   analyze
+//   vacuum
+final class BookstoreCli {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_PROBLEMS = 3;
+
+    private interface Command {
+        // Reject bad arguments before the database is opened
+        default void check() {
+        }
+
+        // Do the work, recording what was done in the run's summary; returns the exit code
+        int run(Connection connection, Map<String, Object> summary) throws Exception;
+    }
+
+    // Tables the export command writes, in key order
+    private enum Table {
+        BOOKS("books", BookstoreService.BOOK_COLUMNS, "SELECT " + BookstoreService.BOOK_SELECT + " FROM " +
+              BookstoreService.BOOK_FROM + " ORDER BY " + BookstoreService.BOOK_KEY),
+        AUTHORS("authors", new String[] {"ID", "Name", "Birth Date"},
+                "SELECT author_id, name, birth_date FROM authors ORDER BY author_id"),
+        CUSTOMERS("customers", new String[] {"ID", "Name", "Email", "Phone"},
+                  "SELECT customer_id, name, email, phone FROM customers ORDER BY customer_id"),
+        ORDERS("orders", BookstoreService.ORDER_COLUMNS, "SELECT " + BookstoreService.ORDER_SELECT + " FROM " +
+               BookstoreService.ORDER_FROM + " ORDER BY " + BookstoreService.ORDER_KEY),
+        ORDER_ITEMS("order-items", new String[] {"Item ID", "Order ID", "Book ID", "Title", "Quantity", "Unit Price"},
+                    "SELECT oi.order_item_id, oi.order_id, oi.book_id, b.title, oi.quantity, oi.unit_price_cents " +
+                    "FROM order_items oi JOIN books b ON b.book_id = oi.book_id ORDER BY oi.order_item_id");
+
+        final String name;
+        final String[] header;
+        final String query;
+
+        Table(String name, String[] header, String query) {
+            this.name = name;
+            this.header = header;
+            this.query = query;
+        }
+    }
+
+    static final class Options {
+        @Parameter(names = "--db", description = "Database file")
+        String database = "bookstore.db";
+
+        @Parameter(names = {"-h", "--help"}, help = true, description = "Show this help")
+        boolean help;
+    }
+
+    @Parameters(commandDescription = "Write a sales report to CSV, over all history or a period of order dates")
+    static final class ReportCommand implements Command {
+        @Parameter(description = "sales-by-genre|top-selling-books|customer-spending", required = true)
+        String report;
+
+        @Parameter(names = {"-o", "--out"}, required = true, description = "Output file (.csv or .csv.gz)")
+        String out;
+
+        @Parameter(names = "--from", description = "First order date (YYYY-MM-DD)")
+        String from;
+
+        @Parameter(names = "--to", description = "Last order date (YYYY-MM-DD)")
+        String to;
+
+        private BookstoreService.Report chosen;
+        private Object[] period;
+
+        @Override
+        public void check() {
+            try {
+                chosen = BookstoreService.Report.byPath(report);
+                period = BookstoreService.period(from, to);
+            } catch (IllegalArgumentException | ParseException e) {
+                throw new ParameterException(e.getMessage());
+            }
+        }
+
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws SQLException, IOException {
+            File file = new File(out);
+            long rows = CsvExporter.export(connection, chosen.query(period), period, chosen.columns, file, null);
+            summary.put("report", chosen.path);
+            if (period.length > 0) {
+                summary.put("from", period[0]);
+                summary.put("to", period[1]);
+            }
+            summary.put("rows", rows);
+            summary.put("file", file.getPath());
+            summary.put("bytes", file.length());
+            return EXIT_OK;
+        }
+    }
+
+    @Parameters(commandDescription = "Write a whole table to CSV")
+    static final class ExportCommand implements Command {
+        @Parameter(description = "books|authors|customers|orders|order-items", required = true)
+        String table;
+
+        @Parameter(names = {"-o", "--out"}, required = true, description = "Output file (.csv or .csv.gz)")
+        String out;
+
+        private Table chosen;
+
+        @Override
+        public void check() {
+            for (Table candidate : Table.values()) {
+                if (candidate.name.equals(table)) {
+                    chosen = candidate;
+                }
+            }
+            if (chosen == null) {
+                throw new ParameterException("Unknown table: " + table);
+            }
+        }
+
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws SQLException, IOException {
+            File file = new File(out);
+            long rows = CsvExporter.export(connection, chosen.query, new Object[0], chosen.header, file, null);
+            summary.put("table", chosen.name);
+            summary.put("rows", rows);
+            summary.put("file", file.getPath());
+            summary.put("bytes", file.length());
+            return EXIT_OK;
+        }
+    }
+
+    @Parameters(commandDescription = "Import books, customers or orders from CSV or JSONL; bad rows go to a rejects file")
+    static final class ImportCommand implements Command {
+        @Parameter(description = "books|customers|orders <file>", required = true, arity = 2)
+        List<String> arguments;
+
+        @Parameter(names = "--commit-size", description = "Rows per transaction")
+        int commitSize = BulkImporter.DEFAULT_COMMIT_SIZE;
+
+        private BulkImporter.Kind kind;
+        private File file;
+
+        @Override
+        public void check() {
+            try {
+                kind = BulkImporter.Kind.valueOf(arguments.get(0).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException("Unknown import kind: " + arguments.get(0));
+            }
+            file = new File(arguments.get(1));
+            if (!file.isFile()) {
+                throw new ParameterException("No such file: " + file);
+            }
+            if (commitSize < 1) {
+                throw new ParameterException("--commit-size must be at least 1");
+            }
+        }
+
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws Exception {
+            // Queued behind, and backing off from, writes by the tills and the API server
+            BulkImporter.Result result = WriteScheduler.run(connection, writer ->
+                BulkImporter.importFile(writer, kind, file, commitSize, null));
+            System.err.println(result);
+            summary.put("kind", kind.name().toLowerCase(Locale.ROOT));
+            summary.put("file", file.getPath());
+            summary.put("read", result.read);
+            summary.put("imported", result.imported);
+            summary.put("rejected", result.rejected);
+            summary.put("authorsCreated", result.authorsCreated);
+            summary.put("indexesDeferred", result.indexesDeferred);
+            if (result.rejected > 0) {
+                summary.put("rejectsFile", result.rejectsFile.getPath());
+            }
+            return result.rejected > 0 ? EXIT_PROBLEMS : EXIT_OK;
+        }
+    }
+
+    @Parameters(commandDescription = "Recompute the sales summary tables from the order history and check them")
+    static final class RebuildCommand implements Command {
+        @Parameter(names = "--verify-only", description = "Only compare the summaries with the order history")
+        boolean verifyOnly;
+
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws Exception {
+            if (!verifyOnly) {
+                long start = System.nanoTime();
+                // One transaction, taken with the write lock up front
+                WriteScheduler.run(connection, writer -> {
+                    SalesSummary.rebuild(writer);
+                    return null;
+                });
+                summary.put("rebuildMs", millis(System.nanoTime() - start));
+            }
+            List<String> problems = SalesSummary.verify(connection);
+            problems.forEach(System.err::println);
+            summary.put("rebuilt", !verifyOnly);
+            summary.put("mismatches", problems.size());
+            return problems.isEmpty() ? EXIT_OK : EXIT_PROBLEMS;
+        }
+    }
+
+    @Parameters(commandDescription = "Refresh the query planner's statistics (ANALYZE, then PRAGMA optimize)")
+    static final class AnalyzeCommand implements Command {
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws SQLException {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ANALYZE");
+                stmt.execute("PRAGMA optimize");
+            }
+            return EXIT_OK;
+        }
+    }
+
+    @Parameters(commandDescription = "Rewrite the database file without free pages (VACUUM)")
+    static final class VacuumCommand implements Command {
+        @Override
+        public int run(Connection connection, Map<String, Object> summary) throws SQLException {
+            File file = new File(summary.get("database").toString());
+            summary.put("bytesBefore", file.length());
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("VACUUM");
+                // Fold the rewritten pages back into the file so its size shows the result
+                stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            }
+            summary.put("bytesAfter", file.length());
+            return EXIT_OK;
+        }
+    }
+
+    private BookstoreCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        Instant mainStart = Instant.now();
+        long start = System.nanoTime();
+        System.setProperty("java.awt.headless", "true");
+
+        Options options = new Options();
+        Map<String, Command> commands = new LinkedHashMap<>();
+        commands.put("report", new ReportCommand());
+        commands.put("export", new ExportCommand());
+        commands.put("import", new ImportCommand());
+        commands.put("rebuild-aggregates", new RebuildCommand());
+        commands.put("analyze", new AnalyzeCommand());
+        commands.put("vacuum", new VacuumCommand());
+        JCommander.Builder builder = JCommander.newBuilder().programName("java Book.BookstoreCli").addObject(options);
+        commands.forEach(builder::addCommand);
+        JCommander commander = builder.build();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, Object> timings = new LinkedHashMap<>();
+        // From process start to main, which is JVM startup and class loading
+        ProcessHandle.current().info().startInstant().ifPresent(processStart ->
+            timings.put("jvmStartMs", Duration.between(processStart, mainStart).toMillis()));
+        int code;
+        try {
+            commander.parse(args);
+            if (options.help) {
+                usage(commander);
+                return EXIT_OK;
+            }
+            String name = commander.getParsedCommand();
+            if (name == null) {
+                throw new ParameterException("Name a command");
+            }
+            summary.put("command", name);
+            summary.put("database", options.database);
+            if (!new File(options.database).isFile()) {
+                throw new ParameterException("No database at " + options.database);
+            }
+            Command command = commands.get(name);
+            command.check();
+            timings.put("parseMs", millis(System.nanoTime() - start));
+
+            long phase = System.nanoTime();
+            Database.useCachedNativeLibrary();
+            Class.forName("org.sqlite.JDBC");
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + options.database)) {
+                // The tills may be writing; wait for them rather than failing at once
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA busy_timeout = " + Database.BUSY_TIMEOUT_MS);
+                }
+                SchemaMigrations.migrate(connection, System.err);
+                timings.put("openMs", millis(System.nanoTime() - phase));
+                phase = System.nanoTime();
+                code = command.run(connection, summary);
+                timings.put("runMs", millis(System.nanoTime() - phase));
+            }
+        } catch (ParameterException e) {
+            System.err.println(e.getMessage());
+            usage(commander);
+            summary.put("error", e.getMessage());
+            code = EXIT_USAGE;
+        } catch (Exception e) {
+            System.err.println("Failed: " + e);
+            summary.put("error", e.toString());
+            code = EXIT_FAILED;
+        }
+        timings.put("totalMs", millis(System.nanoTime() - start));
+
+        summary.put("status", code == EXIT_OK ? "ok" : code == EXIT_PROBLEMS ? "problems"
+                             : code == EXIT_USAGE ? "usage" : "failed");
+        summary.put("exitCode", code);
+        summary.put("timings", timings);
+        System.out.println(Json.write(summary));
+        return code;
+    }
+
+    private static void usage(JCommander commander) {
+        StringBuilder usage = new StringBuilder();
+        commander.getUsageFormatter().usage(usage);
+        System.err.print(usage);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+}
@@ -1,5 +1,8 @@
 package Book;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
@@ -10,10 +13,17 @@ import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Vector;
+import Book.EntityCache.LookupItem;
 import java.io.*;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.awt.RenderingHints;
 import java.awt.GradientPaint;
@@ -32,9 +42,13 @@ import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 
 public class BookstoreManagementSystem {
+    private static final Logger log = LoggerFactory.getLogger(BookstoreManagementSystem.class);
+
     private static Connection connection;
     private static JFrame frame;
     private static JTabbedPane tabbedPane;
+    // Builders of the tabs not built yet, by tab index (null once built)
+    private static final List<Supplier<JPanel>> tabBuilders = new ArrayList<>();
 
     // Main color palette - 7 colors for consistent design
     private static final Color PRIMARY_COLOR = new Color(41, 128, 185); // Blue
@@ -73,8 +87,31 @@ public class BookstoreManagementSystem {
     private static final int COMPONENT_HEIGHT = 35;
     private static final int DIALOG_MIN_WIDTH = 500;
     private static final int DIALOG_MIN_HEIGHT = 400;
+    
+    // Autocomplete settings
+    private static final int SUGGESTION_DELAY_MS = 120; // Wait for a pause in typing before suggesting
+    private static final int SUGGESTION_LIMIT = 50;
+    private static final int QUERY_STATS_ROWS = 50;
+
+    // Edit conflict choices (see askConflict)
+    private static final int CONFLICT_MERGE = 0;
+    private static final int CONFLICT_RELOAD = 1;
+
+    // The edit forms' fields as stored now, for the merge after a conflict; each query takes
+    // the key and selects the row version too
+    private static final String[] BOOK_FORM_FIELDS = {"Title", "Author", "Genre", "Price", "Publication Date"};
+    private static final String BOOK_FORM_QUERY = "SELECT b.title, a.name, b.genre, b.price_cents, b.publication_date, " +
+        "b.version FROM books b LEFT JOIN authors a ON a.author_id = b.author_id WHERE b.book_id = ?";
+    private static final String[] AUTHOR_FORM_FIELDS = {"Name", "Birth Date"};
+    private static final String AUTHOR_FORM_QUERY = "SELECT name, birth_date, version FROM authors WHERE author_id = ?";
+    private static final String[] CUSTOMER_FORM_FIELDS = {"Name", "Email", "Phone"};
+    private static final String CUSTOMER_FORM_QUERY = "SELECT name, email, phone, version FROM customers WHERE customer_id = ?";
 
     public static void main(String[] args) {
+        StartupTimer.start();
+        // Time every event handler from the start, so slow ones are caught with their stack
+        EdtWatchdog.install();
+        
         try {
             // Set system look and feel with custom colors
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -103,10 +140,19 @@ public class BookstoreManagementSystem {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        StartupTimer.phase("Look and feel");
 
         // Initialize database connection
         connectToDatabase();
 
+        // Build the window on the Event Dispatch Thread
+        SwingUtilities.invokeLater(BookstoreManagementSystem::createMainWindow);
+    }
+
+    // Only the selected tab is built before the window appears; the others are
+    // built the first time they are selected, and every table loads its rows
+    // once it is on screen, so startup time does not grow with the database
+    private static void createMainWindow() {
         // Create and set up the main window
         frame = new JFrame("Bookstore Management System");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -122,11 +168,14 @@ public class BookstoreManagementSystem {
         tabbedPane.setBorder(BorderFactory.createEmptyBorder(PADDING, PADDING, PADDING, PADDING));
 
         // Add tabs with icons
-        tabbedPane.addTab("Books", createIcon("book.png"), createBooksPanel());
-        tabbedPane.addTab("Authors", createIcon("author.png"), createAuthorsPanel());
-        tabbedPane.addTab("Customers", createIcon("customer.png"), createCustomersPanel());
-        tabbedPane.addTab("Orders", createIcon("order.png"), createOrdersPanel());
-        tabbedPane.addTab("Reports", createIcon("report.png"), createReportsPanel());
+        addLazyTab("Books", "book.png", BookstoreManagementSystem::createBooksPanel);
+        addLazyTab("Authors", "author.png", BookstoreManagementSystem::createAuthorsPanel);
+        addLazyTab("Customers", "customer.png", BookstoreManagementSystem::createCustomersPanel);
+        addLazyTab("Orders", "order.png", BookstoreManagementSystem::createOrdersPanel);
+        addLazyTab("Reports", "report.png", BookstoreManagementSystem::createReportsPanel);
+        StartupTimer.phase("Window setup");
+        buildTab(tabbedPane.getSelectedIndex());
+        StartupTimer.phase(tabbedPane.getTitleAt(tabbedPane.getSelectedIndex()) + " tab");
 
         // Add keyboard shortcuts for tabs
         tabbedPane.setMnemonicAt(0, KeyEvent.VK_B);
@@ -135,23 +184,216 @@ public class BookstoreManagementSystem {
         tabbedPane.setMnemonicAt(3, KeyEvent.VK_O);
         tabbedPane.setMnemonicAt(4, KeyEvent.VK_R);
 
+        // Switching tabs abandons whatever the previous tab was still loading
+        final int[] previousTab = {tabbedPane.getSelectedIndex()};
+        tabbedPane.addChangeListener(e -> {
+            if (previousTab[0] >= 0) {
+                DataAccessExecutor.cancel(tabbedPane.getTitleAt(previousTab[0]).toLowerCase());
+            }
+            previousTab[0] = tabbedPane.getSelectedIndex();
+            buildTab(previousTab[0]);
+        });
+
         frame.add(tabbedPane);
+        frame.add(createStatusBar(), BorderLayout.SOUTH);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                StartupTimer.windowOpened();
+                loadLookups();
+            }
+        });
         frame.setVisible(true);
     }
 
+    // A tab whose panel is built the first time it is selected
+    private static void addLazyTab(String title, String icon, Supplier<JPanel> builder) {
+        tabBuilders.add(builder);
+        tabbedPane.addTab(title, createIcon(icon), createStyledPanel());
+    }
+
+    private static void buildTab(int index) {
+        if (index < 0 || tabBuilders.get(index) == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Supplier<JPanel> builder = tabBuilders.set(index, null);
+        tabbedPane.setComponentAt(index, builder.get());
+        if (frame.isShowing()) {
+            StartupTimer.finished("Built " + tabbedPane.getTitleAt(index) + " tab", start);
+        }
+    }
+
+    // Run a panel's first load once the panel is on screen, so that building the
+    // window neither waits for a query nor competes with one
+    private static void loadWhenShown(JComponent panel, Runnable load) {
+        panel.addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && panel.isShowing()) {
+                    panel.removeHierarchyListener(this);
+                    load.run();
+                }
+            }
+        });
+    }
+
+    // The id/name lookups behind the forms' combo boxes, read once the window is up
+    private static void loadLookups() {
+        long start = System.nanoTime();
+        reloadLookups(() -> StartupTimer.finished("Loaded lookups", start));
+    }
+
+    // Re-read the lookups on a reader connection, off the write queue
+    private static void reloadLookups(Runnable onLoaded) {
+        DataAccessExecutor.submitRead(null, "Loading lookups",
+            context -> {
+                EntityCache.load(context.connection());
+                return null;
+            },
+            loaded -> onLoaded.run(),
+            e -> showNotification("Error loading lookups: " + e.getMessage(), ERROR_COLOR));
+    }
+
+    // Status bar showing progress of background database work
+    private static JPanel createStatusBar() {
+        JPanel statusBar = new JPanel(new BorderLayout(PADDING, 0));
+        statusBar.setBackground(Color.WHITE);
+        statusBar.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createMatteBorder(1, 0, 0, 0, BORDER_COLOR),
+            BorderFactory.createEmptyBorder(4, PADDING, 4, PADDING)
+        ));
+        
+        JLabel statusLabel = new JLabel("Ready");
+        statusLabel.setFont(SMALL_FONT);
+        statusLabel.setForeground(TEXT_LIGHT_COLOR);
+        
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setPreferredSize(new Dimension(150, 12));
+        progressBar.setVisible(false);
+        
+        DataAccessExecutor.setActivityListener((activeTasks, description, percent) -> {
+            if (activeTasks > 0) {
+                if (description != null) {
+                    statusLabel.setText(description + "...");
+                }
+                progressBar.setIndeterminate(percent < 0);
+                if (percent >= 0) {
+                    progressBar.setValue(percent);
+                }
+                progressBar.setVisible(true);
+            } else {
+                statusLabel.setText("Ready");
+                statusLabel.setToolTipText(EntityCache.stats() + " | " + ReportCache.stats() + " | " + DataAccessExecutor.edtStats() + " | " + EdtWatchdog.stats() + " | " + Database.stats() + " | " + WriteScheduler.stats());
+                progressBar.setVisible(false);
+            }
+        });
+        
+        // Double-click for the live per-query statistics
+        statusLabel.setToolTipText("Double-click for query statistics");
+        statusLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    showQueryStatsDialog();
+                }
+            }
+        });
+        
+        statusBar.add(statusLabel, BorderLayout.WEST);
+        statusBar.add(progressBar, BorderLayout.EAST);
+        return statusBar;
+    }
+
+    // Top queries by total time, refreshed every second while the dialog is open; also
+    // exports the EDT watchdog's report
+    private static void showQueryStatsDialog() {
+        JDialog dialog = createStyledDialog("Query Statistics", 1100, 500);
+        dialog.setModal(false);
+        
+        String[] columns = {"Query", "Calls", "Total ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Rows/call", "Slow", "SQL"};
+        DefaultTableModel statsModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable statsTable = new JTable(statsModel);
+        applyTableStyle(statsTable);
+        statsTable.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        statsTable.getColumnModel().getColumn(0).setPreferredWidth(260);
+        statsTable.getColumnModel().getColumn(9).setPreferredWidth(400);
+        
+        Runnable refresh = () -> {
+            statsModel.setRowCount(0);
+            for (QueryMetrics.QueryStats q : QueryMetrics.topOffenders(QUERY_STATS_ROWS)) {
+                long calls = q.calls.sum();
+                statsModel.addRow(new Object[] {q.name, calls,
+                    String.format("%.1f", q.totalNanos.sum() / 1e6),
+                    String.format("%.2f", q.percentile(0.50) / 1e6),
+                    String.format("%.2f", q.percentile(0.95) / 1e6),
+                    String.format("%.2f", q.percentile(0.99) / 1e6),
+                    String.format("%.2f", q.maxNanos.get() / 1e6),
+                    String.format("%.1f", calls == 0 ? 0.0 : (double) q.rows.sum() / calls),
+                    q.slowCalls.sum(), QueryMetrics.abbreviate(q.sql)});
+            }
+        };
+        refresh.run();
+        Timer timer = new Timer(1000, e -> refresh.run());
+        timer.start();
+        
+        JButton resetButton = createStyledButton("Reset", null);
+        resetButton.addActionListener(e -> {
+            QueryMetrics.reset();
+            refresh.run();
+        });
+        // UI responsiveness: event handling percentiles and recent EDT stalls, as JSON
+        JButton exportEdtButton = createStyledButton("Export UI Stalls", null);
+        exportEdtButton.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Export UI Stalls");
+            fileChooser.setSelectedFile(new File("edt-stalls.json"));
+            if (fileChooser.showSaveDialog(dialog) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    EdtWatchdog.export(fileChooser.getSelectedFile());
+                    showNotification("Exported UI stall report to " + fileChooser.getSelectedFile().getName(), SECONDARY_COLOR);
+                } catch (IOException ex) {
+                    showNotification("Error exporting UI stall report: " + ex.getMessage(), ERROR_COLOR);
+                }
+            }
+        });
+        JButton closeButton = createStyledButton("Close", null);
+        closeButton.addActionListener(e -> dialog.dispose());
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, PADDING, 0));
+        buttonPanel.setBackground(BACKGROUND_COLOR);
+        buttonPanel.add(exportEdtButton);
+        buttonPanel.add(resetButton);
+        buttonPanel.add(closeButton);
+        
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+        dialog.add(new JScrollPane(statsTable), BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.setVisible(true);
+    }
+
     private static void connectToDatabase() {
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:bookstore.db");
-            System.out.println("Connected to SQLite database");
-            
-            // Enable foreign key constraints
-            Statement stmt = connection.createStatement();
-            stmt.execute("PRAGMA foreign_keys = ON");
-            stmt.close();
+            // WAL-mode writer connection; foreign keys and timeouts are configured there
+            connection = Database.open("bookstore.db");
+            log.info("Connected to SQLite database bookstore.db");
+            StartupTimer.phase("DB connect");
             
             // Create tables if they do not exist
             createTables();
+            StartupTimer.phase("Schema check");
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Error connecting to database: " + e.getMessage(), 
                 "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -161,18 +403,8 @@ public class BookstoreManagementSystem {
 
     private static void createTables() {
         try {
-            Statement stmt = connection.createStatement();
-            // Create authors table
-            stmt.execute("CREATE TABLE IF NOT EXISTS authors (author_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, birth_date TEXT)");
-            // Create books table
-            stmt.execute("CREATE TABLE IF NOT EXISTS books (book_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, author_id INTEGER, genre TEXT, price REAL, publication_date TEXT, FOREIGN KEY (author_id) REFERENCES authors(author_id))");
-            // Create customers table
-            stmt.execute("CREATE TABLE IF NOT EXISTS customers (customer_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, email TEXT, phone TEXT)");
-            // Create orders table
-            stmt.execute("CREATE TABLE IF NOT EXISTS orders (order_id INTEGER PRIMARY KEY AUTOINCREMENT, customer_id INTEGER, order_date TEXT, total_amount REAL, FOREIGN KEY (customer_id) REFERENCES customers(customer_id))");
-            // Create order_items table
-            stmt.execute("CREATE TABLE IF NOT EXISTS order_items (order_item_id INTEGER PRIMARY KEY AUTOINCREMENT, order_id INTEGER, book_id INTEGER, quantity INTEGER, unit_price REAL, FOREIGN KEY (order_id) REFERENCES orders(order_id), FOREIGN KEY (book_id) REFERENCES books(book_id))");
-            stmt.close();
+            // Create or upgrade the schema to the latest version
+            SchemaMigrations.migrate(connection);
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error creating tables: " + e.getMessage(), 
                 "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -210,23 +442,15 @@ public class BookstoreManagementSystem {
         
         panel.add(headerPanel, BorderLayout.NORTH);
         
-        DefaultTableModel booksModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        PagedTableModel booksModel = createBooksModel();
+        
+        // Patch single rows as books are saved; an author rename shows in any loaded row
+        ChangeEvents.subscribe(ChangeEvents.BookChanged.class, e -> booksModel.upsert(e.id));
+        ChangeEvents.subscribe(ChangeEvents.BookDeleted.class, e -> booksModel.remove(e.id));
+        ChangeEvents.subscribe(ChangeEvents.AuthorChanged.class, e -> booksModel.refreshLoadedRows());
         
         JTable booksTable = new JTable(booksModel);
         applyTableStyle(booksTable);
-        
-        // Add columns
-        booksModel.addColumn("ID");
-        booksModel.addColumn("Title");
-        booksModel.addColumn("Author");
-        booksModel.addColumn("Genre");
-        booksModel.addColumn("Price");
-        booksModel.addColumn("Publication Date");
 
         // Make table responsive
         booksTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
@@ -241,6 +465,29 @@ public class BookstoreManagementSystem {
                 }
             }
         });
+        
+        // Double-click or Enter opens the edit dialog for the selected book
+        booksTable.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                if (evt.getClickCount() == 2) { // Double-click
+                    int row = booksTable.getSelectedRow();
+                    if (row >= 0) {
+                        showEditBookDialog(booksModel, row);
+                    }
+                }
+            }
+        });
+        booksTable.registerKeyboardAction(
+            e -> {
+                int selectedRow = booksTable.getSelectedRow();
+                if (selectedRow >= 0) {
+                    showEditBookDialog(booksModel, selectedRow);
+                }
+            },
+            KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0),
+            JComponent.WHEN_FOCUSED
+        );
 
         JScrollPane scrollPane = new JScrollPane(booksTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(SECONDARY_COLOR));
@@ -269,7 +516,7 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         refreshButton.addActionListener(e -> refreshBooksTable(booksModel));
-        addButton.addActionListener(e -> showAddBookDialog(booksModel));
+        addButton.addActionListener(e -> showAddBookDialog());
         editButton.addActionListener(e -> {
             int selectedRow = booksTable.getSelectedRow();
             if (selectedRow >= 0) {
@@ -281,17 +528,27 @@ public class BookstoreManagementSystem {
         deleteButton.addActionListener(e -> {
             int selectedRow = booksTable.getSelectedRow();
             if (selectedRow >= 0) {
-                int bookId = (int) booksModel.getValueAt(selectedRow, 0);
-                deleteBook(bookId, booksModel);
+                int bookId = booksModel.getKeyAt(selectedRow);
+                deleteBook(bookId);
             } else {
                 showNotification("Please select a book to delete", WARNING_COLOR);
             }
         });
 
+        JButton exportButton = createStyledButton("Export", null);
+        exportButton.setToolTipText("Export the listed books to CSV (.csv or .csv.gz)");
+        exportButton.addActionListener(e -> exportTable("Books", booksModel));
+
         buttonPanel.add(refreshButton);
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(exportButton);
+
+        JButton importButton = createStyledButton("Import", null);
+        importButton.setToolTipText("Import books from CSV or JSONL; unknown authors are created");
+        importButton.addActionListener(e -> importFromFile("Books", BulkImporter.Kind.BOOKS, () -> refreshBooksTable(booksModel)));
+        buttonPanel.add(importButton);
         
         // Add search panel
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, PADDING, PADDING));
@@ -299,13 +556,55 @@ public class BookstoreManagementSystem {
         
         JTextField searchField = createStyledTextField();
         searchField.setPreferredSize(new Dimension(200, COMPONENT_HEIGHT));
-        searchField.setToolTipText("Search books");
+        searchField.setToolTipText("Search title, author and genre; use \"quotes\" for an exact phrase");
+        
+        // Typed range filters for price and publication date
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, PADDING, 0));
+        filterPanel.setBackground(Color.WHITE);
+        
+        JTextField minPriceField = createStyledTextField();
+        JTextField maxPriceField = createStyledTextField();
+        JTextField fromDateField = createStyledTextField();
+        JTextField toDateField = createStyledTextField();
+        minPriceField.setPreferredSize(new Dimension(80, COMPONENT_HEIGHT));
+        maxPriceField.setPreferredSize(new Dimension(80, COMPONENT_HEIGHT));
+        fromDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        toDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        fromDateField.setToolTipText("From date (YYYY-MM-DD)");
+        toDateField.setToolTipText("To date (YYYY-MM-DD)");
+        
+        filterPanel.add(new JLabel("Price:"));
+        filterPanel.add(minPriceField);
+        filterPanel.add(new JLabel("to"));
+        filterPanel.add(maxPriceField);
+        filterPanel.add(new JLabel("Published:"));
+        filterPanel.add(fromDateField);
+        filterPanel.add(new JLabel("to"));
+        filterPanel.add(toDateField);
         
         JButton searchButton = createStyledButton("Search", null);
         searchButton.addActionListener(e -> {
             String searchText = searchField.getText().trim();
-            if (!searchText.isEmpty()) {
-                searchBooks(booksModel, searchText);
+            BookSearchIndex.Filters filters = new BookSearchIndex.Filters();
+            
+            // Validate the range filters
+            try {
+                filters.minPriceCents = parseOptionalPrice(minPriceField.getText());
+                filters.maxPriceCents = parseOptionalPrice(maxPriceField.getText());
+            } catch (NumberFormatException ex) {
+                showNotification("Price must be an amount like 12.99", WARNING_COLOR);
+                return;
+            }
+            try {
+                filters.fromDate = parseOptionalDate(fromDateField.getText());
+                filters.toDate = parseOptionalDate(toDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                return;
+            }
+            
+            if (!searchText.isEmpty() || !filters.isEmpty()) {
+                searchBooks(booksModel, searchText, filters);
             } else {
                 refreshBooksTable(booksModel);
             }
@@ -320,43 +619,28 @@ public class BookstoreManagementSystem {
         bottomPanel.setBackground(Color.WHITE);
         bottomPanel.add(buttonPanel, BorderLayout.WEST);
         bottomPanel.add(searchPanel, BorderLayout.EAST);
+        bottomPanel.add(filterPanel, BorderLayout.SOUTH);
         
         panel.add(bottomPanel, BorderLayout.SOUTH);
 
-        // Load initial data
-        refreshBooksTable(booksModel);
+        // Load initial data once the tab is on screen
+        loadWhenShown(panel, () -> refreshBooksTable(booksModel));
 
         return panel;
     }
 
-    private static void refreshBooksTable(DefaultTableModel model) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT b.book_id, b.title, a.name, b.genre, b.price, b.publication_date " +
-                           "FROM books b JOIN authors a ON b.author_id = a.author_id";
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("book_id"));
-                row.add(rs.getString("title"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("genre"));
-                row.add(rs.getDouble("price"));
-                row.add(rs.getString("publication_date"));
-                model.addRow(row);
-            }
-            
-            rs.close();
-            stmt.close();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading books: " + e.getMessage(), 
-                "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+    static PagedTableModel createBooksModel() {
+        return new PagedTableModel("books", BookstoreService.BOOK_COLUMNS, BookstoreService.BOOK_SELECT,
+            BookstoreService.BOOK_FROM, BookstoreService.BOOK_KEY, BookstoreService::bookRow,
+            e -> JOptionPane.showMessageDialog(null, "Error loading books: " + e.getMessage(), 
+                "Database Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private static void refreshBooksTable(PagedTableModel model) {
+        model.setFilter(null);
     }
 
-    private static void showAddBookDialog(DefaultTableModel booksModel) {
+    private static void showAddBookDialog() {
         JDialog dialog = createStyledDialog("Add New Book", 500, 400);
         
         // Main content panel with responsive layout
@@ -371,7 +655,7 @@ public class BookstoreManagementSystem {
 
         // Create styled form fields
         JTextField titleField = createStyledTextField();
-        JComboBox<String> authorCombo = createStyledComboBox();
+        JComboBox<LookupItem> authorCombo = createStyledComboBox();
         JTextField genreField = createStyledTextField();
         JTextField priceField = createStyledTextField();
         JTextField dateField = createStyledTextField();
@@ -408,52 +692,88 @@ public class BookstoreManagementSystem {
 
         // Add action listeners
         saveButton.addActionListener(e -> {
+            // Validate inputs
+            if (titleField.getText().trim().isEmpty()) {
+                showNotification("Title is required", WARNING_COLOR);
+                titleField.requestFocus();
+                return;
+            }
+            
+            LookupItem author = EntityCache.resolve(EntityCache.Kind.AUTHOR, authorCombo.getSelectedItem());
+            if (author == null) {
+                showNotification("Please select an existing author", WARNING_COLOR);
+                authorCombo.requestFocus();
+                return;
+            }
+            
+            long priceCents;
             try {
-                // Validate inputs
-                if (titleField.getText().trim().isEmpty()) {
-                    showNotification("Title is required", WARNING_COLOR);
-                    titleField.requestFocus();
-                    return;
-                }
-                
-                if (authorCombo.getSelectedItem() == null) {
-                    showNotification("Author is required", WARNING_COLOR);
-                    authorCombo.requestFocus();
-                    return;
-                }
-                
+                priceCents = Money.parseCents(priceField.getText());
+            } catch (NumberFormatException ex) {
+                showNotification("Price must be an amount like 12.99", WARNING_COLOR);
+                priceField.requestFocus();
+                return;
+            }
+            
+            String publicationDate;
+            try {
+                publicationDate = parseOptionalDate(dateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                dateField.requestFocus();
+                return;
+            }
+            
+            // Read the form on the EDT before handing the write to the data thread
+            String title = titleField.getText().trim();
+            int authorId = author.id;
+            String genre = genreField.getText().trim();
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving book", context -> {
                 try {
-                    Double.parseDouble(priceField.getText().trim());
-                } catch (NumberFormatException ex) {
-                    showNotification("Price must be a valid number", WARNING_COLOR);
-                    priceField.requestFocus();
-                    return;
+                    // Start transaction
+                    connection.setAutoCommit(false);
+                    
+                    // Insert the book
+                    String query = "INSERT INTO books (title, author_id, genre, price_cents, publication_date) VALUES (?, ?, ?, ?, ?)";
+                    PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                    pstmt.setString(1, title);
+                    pstmt.setInt(2, authorId);
+                    pstmt.setString(3, genre);
+                    pstmt.setLong(4, priceCents);
+                    pstmt.setString(5, publicationDate);
+                    
+                    pstmt.executeUpdate();
+                    ResultSet generatedKeys = pstmt.getGeneratedKeys();
+                    int bookId = -1;
+                    if (generatedKeys.next()) {
+                        bookId = generatedKeys.getInt(1);
+                    }
+                    pstmt.close();
+                    
+                    // Commit the transaction
+                    connection.commit();
+                    EntityCache.put(LookupItem.book(bookId, title, priceCents, authorId));
+                    return bookId;
+                } catch (SQLException ex) {
+                    // Rollback the transaction in case of error
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    // Reset auto-commit
+                    connection.setAutoCommit(true);
                 }
-                
-                // Get author ID from selected name
-                int authorId = getAuthorId(authorCombo.getSelectedItem().toString());
-                
-                // Insert the book
-                String query = "INSERT INTO books (title, author_id, genre, price, publication_date) VALUES (?, ?, ?, ?, ?)";
-                PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, titleField.getText().trim());
-                pstmt.setInt(2, authorId);
-                pstmt.setString(3, genreField.getText().trim());
-                pstmt.setDouble(4, Double.parseDouble(priceField.getText().trim()));
-                pstmt.setString(5, dateField.getText().trim());
-                
-                pstmt.executeUpdate();
-                pstmt.close();
-                
-                // Refresh the table and close dialog
-                refreshBooksTable(booksModel);
+            }, bookId -> {
+                ChangeEvents.publish(new ChangeEvents.BookChanged(bookId));
                 dialog.dispose();
                 
                 // Show success notification
                 showNotification("Book added successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
                 showNotification("Error adding book: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -479,16 +799,37 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void showEditBookDialog(DefaultTableModel booksModel, int selectedRow) {
+    // Whether the selected row can be opened for editing: its page has loaded and the
+    // row still exists. Otherwise the dialog would start from empty fields and version -1.
+    private static boolean editableRow(PagedTableModel model, int row, String noun) {
+        if (model.isRowDeleted(row)) {
+            // Found by the search, deleted at another terminal since
+            showNotification("This " + noun + " no longer exists", WARNING_COLOR);
+            model.remove(model.getKeyAt(row));
+            return false;
+        }
+        if (!model.isRowLoaded(row)) {
+            showNotification("The " + noun + " is still loading, please try again in a moment", WARNING_COLOR);
+            return false;
+        }
+        return true;
+    }
+
+    private static void showEditBookDialog(PagedTableModel booksModel, int selectedRow) {
+        if (!editableRow(booksModel, selectedRow, "book")) {
+            return;
+        }
         JDialog dialog = createStyledDialog("Edit Book", 500, 400);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         
-        int bookId = (int) booksModel.getValueAt(selectedRow, 0);
+        int bookId = booksModel.getKeyAt(selectedRow);
         String currentTitle = (String) booksModel.getValueAt(selectedRow, 1);
         String currentAuthor = (String) booksModel.getValueAt(selectedRow, 2);
         String currentGenre = (String) booksModel.getValueAt(selectedRow, 3);
-        double currentPrice = (double) booksModel.getValueAt(selectedRow, 4);
+        Money currentPrice = (Money) booksModel.getValueAt(selectedRow, 4);
         String currentDate = (String) booksModel.getValueAt(selectedRow, 5);
+        LoadedVersion loaded = new LoadedVersion(new Object[] {currentTitle, currentAuthor,
+            Objects.toString(currentGenre, ""), currentPrice, currentDate}, booksModel.getVersionAt(selectedRow));
         
         // Main content panel with responsive layout
         JPanel contentPanel = new JPanel(new GridBagLayout());
@@ -504,15 +845,17 @@ public class BookstoreManagementSystem {
         JTextField titleField = createStyledTextField();
         titleField.setText(currentTitle);
         
-        JComboBox<String> authorCombo = createStyledComboBox();
+        JComboBox<LookupItem> authorCombo = createStyledComboBox();
         loadAuthorsIntoComboBox(authorCombo);
-        authorCombo.setSelectedItem(currentAuthor);
+        LookupItem cachedBook = EntityCache.cached(EntityCache.Kind.BOOK, bookId);
+        LookupItem cachedAuthor = cachedBook == null ? null : EntityCache.cached(EntityCache.Kind.AUTHOR, cachedBook.authorId);
+        authorCombo.setSelectedItem(cachedAuthor != null ? cachedAuthor : currentAuthor);
         
         JTextField genreField = createStyledTextField();
         genreField.setText(currentGenre);
         
         JTextField priceField = createStyledTextField();
-        priceField.setText(String.valueOf(currentPrice));
+        priceField.setText(currentPrice.plain());
         
         JTextField dateField = createStyledTextField();
         dateField.setText(currentDate);
@@ -543,53 +886,107 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         saveButton.addActionListener(e -> {
+            // Validate inputs
+            if (titleField.getText().trim().isEmpty()) {
+                showNotification("Title is required", WARNING_COLOR);
+                titleField.requestFocus();
+                return;
+            }
+            
+            LookupItem author = EntityCache.resolve(EntityCache.Kind.AUTHOR, authorCombo.getSelectedItem());
+            if (author == null) {
+                showNotification("Please select an existing author", WARNING_COLOR);
+                authorCombo.requestFocus();
+                return;
+            }
+            
+            long priceCents;
             try {
-                // Validate inputs
-                if (titleField.getText().trim().isEmpty()) {
-                    showNotification("Title is required", WARNING_COLOR);
-                    titleField.requestFocus();
-                    return;
-                }
-                
-                if (authorCombo.getSelectedItem() == null) {
-                    showNotification("Author is required", WARNING_COLOR);
-                    authorCombo.requestFocus();
-                    return;
-                }
-                
+                priceCents = Money.parseCents(priceField.getText());
+            } catch (NumberFormatException ex) {
+                showNotification("Price must be an amount like 12.99", WARNING_COLOR);
+                priceField.requestFocus();
+                return;
+            }
+            
+            String publicationDate;
+            try {
+                publicationDate = parseOptionalDate(dateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                dateField.requestFocus();
+                return;
+            }
+            
+            // Read the form on the EDT before handing the write to the data thread
+            String title = titleField.getText().trim();
+            int authorId = author.id;
+            String genre = genreField.getText().trim();
+            Object[] mine = {title, author.name, genre, Money.ofCents(priceCents), publicationDate};
+            int expectedVersion = loaded.version;
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving book", context -> {
                 try {
-                    Double.parseDouble(priceField.getText().trim());
-                } catch (NumberFormatException ex) {
-                    showNotification("Price must be a valid number", WARNING_COLOR);
-                    priceField.requestFocus();
-                    return;
+                    // Start transaction
+                    connection.setAutoCommit(false);
+                    
+                    // Update the book, unless it was saved elsewhere since the form loaded it
+                    String query = "UPDATE books SET title=?, author_id=?, genre=?, price_cents=?, publication_date=?, " +
+                                   "version=version+1 WHERE book_id=? AND version=?";
+                    PreparedStatement pstmt = connection.prepareStatement(query);
+                    pstmt.setString(1, title);
+                    pstmt.setInt(2, authorId);
+                    pstmt.setString(3, genre);
+                    pstmt.setLong(4, priceCents);
+                    pstmt.setString(5, publicationDate);
+                    pstmt.setInt(6, bookId);
+                    pstmt.setInt(7, expectedVersion);
+                    
+                    int updated = pstmt.executeUpdate();
+                    pstmt.close();
+                    if (updated == 0) {
+                        throw RowVersions.conflict(connection, "books", bookId, expectedVersion, BOOK_FORM_QUERY,
+                            rs -> new Object[] {rs.getString("title"), rs.getString("name"),
+                                Objects.toString(rs.getString("genre"), ""), Money.ofCents(rs.getLong("price_cents")),
+                                rs.getString("publication_date")});
+                    }
+                    
+                    // Commit the transaction
+                    connection.commit();
+                    EntityCache.put(LookupItem.book(bookId, title, priceCents, authorId));
+                    return null;
+                } catch (SQLException ex) {
+                    // Rollback the transaction in case of error
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    // Reset auto-commit
+                    connection.setAutoCommit(true);
                 }
-                
-                // Get author ID from selected name
-                int authorId = getAuthorId(authorCombo.getSelectedItem().toString());
-                
-                // Update the book
-                String query = "UPDATE books SET title=?, author_id=?, genre=?, price=?, publication_date=? WHERE book_id=?";
-                PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, titleField.getText().trim());
-                pstmt.setInt(2, authorId);
-                pstmt.setString(3, genreField.getText().trim());
-                pstmt.setDouble(4, Double.parseDouble(priceField.getText().trim()));
-                pstmt.setString(5, dateField.getText().trim());
-                pstmt.setInt(6, bookId);
-                
-                pstmt.executeUpdate();
-                pstmt.close();
-                
-                // Refresh the table and close dialog
-                refreshBooksTable(booksModel);
+            }, result -> {
+                ChangeEvents.publish(new ChangeEvents.BookChanged(bookId));
                 dialog.dispose();
                 
                 // Show success notification
                 showNotification("Book updated successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
+                if (ex instanceof RowVersions.ConflictException) {
+                    Object[] values = resolveConflict(dialog, (RowVersions.ConflictException) ex, BOOK_FORM_FIELDS,
+                                                      loaded, mine);
+                    if (values != null) {
+                        titleField.setText((String) values[0]);
+                        LookupItem storedAuthor = EntityCache.resolve(EntityCache.Kind.AUTHOR, values[1]);
+                        authorCombo.setSelectedItem(storedAuthor != null ? storedAuthor : values[1]);
+                        genreField.setText((String) values[2]);
+                        priceField.setText(((Money) values[3]).plain());
+                        dateField.setText(Objects.toString(values[4], ""));
+                    }
+                    return;
+                }
                 showNotification("Error updating book: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -615,51 +1012,47 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void deleteBook(int bookId, DefaultTableModel booksModel) {
+    private static void deleteBook(int bookId) {
         int confirm = showConfirmDialog("Are you sure you want to delete this book?", "Confirm Deletion");
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                // Start transaction
-                connection.setAutoCommit(false);
-                
-                // First delete order items for this book
-                String deleteOrderItemsQuery = "DELETE FROM order_items WHERE book_id=?";
-                PreparedStatement deleteOrderItemsStmt = connection.prepareStatement(deleteOrderItemsQuery);
-                deleteOrderItemsStmt.setInt(1, bookId);
-                deleteOrderItemsStmt.executeUpdate();
-                deleteOrderItemsStmt.close();
-                
-                // Then delete the book
-                String deleteBookQuery = "DELETE FROM books WHERE book_id=?";
-                PreparedStatement deleteBookStmt = connection.prepareStatement(deleteBookQuery);
-                deleteBookStmt.setInt(1, bookId);
-                
-                int rowsAffected = deleteBookStmt.executeUpdate();
-                deleteBookStmt.close();
-                
-                // Commit the transaction
-                connection.commit();
-                
-                if (rowsAffected > 0) {
-                    showNotification("Book deleted successfully", SECONDARY_COLOR);
-                    refreshBooksTable(booksModel);
-                }
-            } catch (SQLException e) {
+            DataAccessExecutor.submit(null, "Deleting book", context -> {
                 try {
+                    // Start transaction
+                    connection.setAutoCommit(false);
+                    
+                    // First delete order items for this book
+                    String deleteOrderItemsQuery = "DELETE FROM order_items WHERE book_id=?";
+                    PreparedStatement deleteOrderItemsStmt = connection.prepareStatement(deleteOrderItemsQuery);
+                    deleteOrderItemsStmt.setInt(1, bookId);
+                    deleteOrderItemsStmt.executeUpdate();
+                    deleteOrderItemsStmt.close();
+                    
+                    // Then delete the book
+                    String deleteBookQuery = "DELETE FROM books WHERE book_id=?";
+                    PreparedStatement deleteBookStmt = connection.prepareStatement(deleteBookQuery);
+                    deleteBookStmt.setInt(1, bookId);
+                    
+                    int rowsAffected = deleteBookStmt.executeUpdate();
+                    deleteBookStmt.close();
+                    
+                    // Commit the transaction
+                    connection.commit();
+                    EntityCache.remove(EntityCache.Kind.BOOK, bookId);
+                    return rowsAffected;
+                } catch (SQLException e) {
                     // Rollback the transaction in case of error
                     connection.rollback();
-                } catch (SQLException rollbackEx) {
-                    showNotification("Error rolling back transaction: " + rollbackEx.getMessage(), ERROR_COLOR);
-                }
-                showNotification("Error deleting book: " + e.getMessage(), ERROR_COLOR);
-            } finally {
-                try {
+                    throw e;
+                } finally {
                     // Reset auto-commit
                     connection.setAutoCommit(true);
-                } catch (SQLException autoCommitEx) {
-                    showNotification("Error resetting auto-commit: " + autoCommitEx.getMessage(), ERROR_COLOR);
                 }
-            }
+            }, rowsAffected -> {
+                if (rowsAffected > 0) {
+                    showNotification("Book deleted successfully", SECONDARY_COLOR);
+                    ChangeEvents.publish(new ChangeEvents.BookDeleted(bookId));
+                }
+            }, e -> showNotification("Error deleting book: " + e.getMessage(), ERROR_COLOR));
         }
     }
 
@@ -695,16 +1088,10 @@ public class BookstoreManagementSystem {
         panel.add(headerPanel, BorderLayout.NORTH);
         
         // Table to display authors
-        DefaultTableModel authorsModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        PagedTableModel authorsModel = createAuthorsModel();
+        ChangeEvents.subscribe(ChangeEvents.AuthorChanged.class, e -> authorsModel.upsert(e.id));
+        ChangeEvents.subscribe(ChangeEvents.AuthorDeleted.class, e -> authorsModel.remove(e.id));
         JTable authorsTable = new JTable(authorsModel);
-        authorsModel.addColumn("ID");
-        authorsModel.addColumn("Name");
-        authorsModel.addColumn("Birth Date");
         
         applyTableStyle(authorsTable);
         
@@ -717,36 +1104,33 @@ public class BookstoreManagementSystem {
         
         panel.add(bottomPanel, BorderLayout.SOUTH);
         
-        // Load initial data
-        refreshAuthorsTable(authorsModel);
+        // Load initial data once the tab is on screen
+        loadWhenShown(panel, () -> refreshAuthorsTable(authorsModel));
         
         return panel;
     }
 
-    private static void refreshAuthorsTable(DefaultTableModel model) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT * FROM authors";
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("author_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("birth_date"));
-                model.addRow(row);
-            }
-            
-            rs.close();
-            stmt.close();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading authors: " + e.getMessage(), 
-                "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+    private static PagedTableModel createAuthorsModel() {
+        return new PagedTableModel("authors",
+            new String[] {"ID", "Name", "Birth Date"},
+            "author_id, name, birth_date, version",
+            "authors",
+            "author_id",
+            rs -> new Object[] {
+                rs.getInt("author_id"),
+                rs.getString("name"),
+                rs.getString("birth_date"),
+                rs.getInt("version")
+            },
+            e -> JOptionPane.showMessageDialog(null, "Error loading authors: " + e.getMessage(), 
+                "Database Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private static void refreshAuthorsTable(PagedTableModel model) {
+        model.setFilter(null);
     }
 
-    private static void showAddAuthorDialog(DefaultTableModel authorsModel) {
+    private static void showAddAuthorDialog() {
         JDialog dialog = createStyledDialog("Add New Author", 500, 400);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         
@@ -787,41 +1171,51 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         saveButton.addActionListener(e -> {
+            // Validate inputs
+            if (nameField.getText().trim().isEmpty()) {
+                showNotification("Name is required", WARNING_COLOR);
+                nameField.requestFocus();
+                return;
+            }
+            
+            // Validate the date if provided; it is stored as YYYY-MM-DD, or NULL when blank
+            String birthDate;
             try {
-                // Validate inputs
-                if (nameField.getText().trim().isEmpty()) {
-                    showNotification("Name is required", WARNING_COLOR);
-                    nameField.requestFocus();
-                    return;
-                }
-                
-                // Validate date format if provided
-                if (!birthDateField.getText().trim().isEmpty()) {
-                    try {
-                        new SimpleDateFormat("yyyy-MM-dd").parse(birthDateField.getText().trim());
-                    } catch (Exception ex) {
-                        showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
-                        birthDateField.requestFocus();
-                        return;
-                    }
-                }
-                
-                // Insert the author
-                String query = "INSERT INTO authors (name, birth_date) VALUES (?, ?)";
-                PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, nameField.getText().trim());
-                pstmt.setString(2, birthDateField.getText().trim());
+                birthDate = parseOptionalDate(birthDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                birthDateField.requestFocus();
+                return;
+            }
+            
+            String name = nameField.getText().trim();
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving author", context -> {
+                // Insert the author
+                String query = "INSERT INTO authors (name, birth_date) VALUES (?, ?)";
+                PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                pstmt.setString(1, name);
+                pstmt.setString(2, birthDate);
                 
                 pstmt.executeUpdate();
+                ResultSet generatedKeys = pstmt.getGeneratedKeys();
+                int authorId = -1;
+                if (generatedKeys.next()) {
+                    authorId = generatedKeys.getInt(1);
+                    EntityCache.put(LookupItem.author(authorId, name));
+                }
                 pstmt.close();
-                
-                refreshAuthorsTable(authorsModel);
+                return authorId;
+            }, authorId -> {
+                ChangeEvents.publish(new ChangeEvents.AuthorChanged(authorId));
                 dialog.dispose();
                 
                 showNotification("Author added successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
                 showNotification("Error adding author: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -847,13 +1241,18 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void showEditAuthorDialog(DefaultTableModel authorsModel, int selectedRow) {
+    private static void showEditAuthorDialog(PagedTableModel authorsModel, int selectedRow) {
+        if (!editableRow(authorsModel, selectedRow, "author")) {
+            return;
+        }
         JDialog dialog = createStyledDialog("Edit Author", 500, 400);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         
-        int authorId = (int) authorsModel.getValueAt(selectedRow, 0);
+        int authorId = authorsModel.getKeyAt(selectedRow);
         String currentName = (String) authorsModel.getValueAt(selectedRow, 1);
         String currentBirthDate = (String) authorsModel.getValueAt(selectedRow, 2);
+        LoadedVersion loaded = new LoadedVersion(new Object[] {currentName, currentBirthDate},
+                                                 authorsModel.getVersionAt(selectedRow));
         
         // Main content panel with responsive layout
         JPanel contentPanel = new JPanel(new GridBagLayout());
@@ -895,42 +1294,64 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         saveButton.addActionListener(e -> {
+            // Validate inputs
+            if (nameField.getText().trim().isEmpty()) {
+                showNotification("Name is required", WARNING_COLOR);
+                nameField.requestFocus();
+                return;
+            }
+            
+            // Validate the date if provided; it is stored as YYYY-MM-DD, or NULL when blank
+            String birthDate;
             try {
-                // Validate inputs
-                if (nameField.getText().trim().isEmpty()) {
-                    showNotification("Name is required", WARNING_COLOR);
-                    nameField.requestFocus();
-                    return;
-                }
-                
-                // Validate date format if provided
-                if (!birthDateField.getText().trim().isEmpty()) {
-                    try {
-                        new SimpleDateFormat("yyyy-MM-dd").parse(birthDateField.getText().trim());
-                    } catch (Exception ex) {
-                        showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
-                        birthDateField.requestFocus();
-                        return;
-                    }
-                }
-                
-                // Update the author
-                String query = "UPDATE authors SET name=?, birth_date=? WHERE author_id=?";
+                birthDate = parseOptionalDate(birthDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                birthDateField.requestFocus();
+                return;
+            }
+            
+            String name = nameField.getText().trim();
+            Object[] mine = {name, birthDate};
+            int expectedVersion = loaded.version;
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving author", context -> {
+                // Update the author, unless it was saved elsewhere since the form loaded it
+                String query = "UPDATE authors SET name=?, birth_date=?, version=version+1 WHERE author_id=? AND version=?";
                 PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, nameField.getText().trim());
-                pstmt.setString(2, birthDateField.getText().trim());
+                pstmt.setString(1, name);
+                pstmt.setString(2, birthDate);
                 pstmt.setInt(3, authorId);
+                pstmt.setInt(4, expectedVersion);
                 
-                pstmt.executeUpdate();
+                int updated = pstmt.executeUpdate();
                 pstmt.close();
+                if (updated == 0) {
+                    throw RowVersions.conflict(connection, "authors", authorId, expectedVersion, AUTHOR_FORM_QUERY,
+                        rs -> new Object[] {rs.getString("name"), rs.getString("birth_date")});
+                }
                 
-                refreshAuthorsTable(authorsModel);
+                EntityCache.put(LookupItem.author(authorId, name));
+                return null;
+            }, result -> {
+                ChangeEvents.publish(new ChangeEvents.AuthorChanged(authorId));
                 dialog.dispose();
                 
                 showNotification("Author updated successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
+                if (ex instanceof RowVersions.ConflictException) {
+                    Object[] values = resolveConflict(dialog, (RowVersions.ConflictException) ex, AUTHOR_FORM_FIELDS,
+                                                      loaded, mine);
+                    if (values != null) {
+                        nameField.setText((String) values[0]);
+                        birthDateField.setText(Objects.toString(values[1], ""));
+                    }
+                    return;
+                }
                 showNotification("Error updating author: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -956,24 +1377,38 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void deleteAuthor(int authorId, DefaultTableModel authorsModel) {
+    private static void deleteAuthor(int authorId) {
         int confirm = showConfirmDialog("Are you sure you want to delete this author?", "Confirm Deletion");
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
+            DataAccessExecutor.submit(null, "Deleting author", context -> {
+                // Foreign keys are enforced, so an author with books cannot go; the count is
+                // read in the delete's transaction and returned negated
+                try (PreparedStatement books = connection.prepareStatement(
+                        "SELECT COUNT(*) FROM books WHERE author_id=?")) {
+                    books.setInt(1, authorId);
+                    try (ResultSet rs = books.executeQuery()) {
+                        if (rs.next() && rs.getInt(1) > 0) {
+                            return -rs.getInt(1);
+                        }
+                    }
+                }
                 String query = "DELETE FROM authors WHERE author_id=?";
                 PreparedStatement pstmt = connection.prepareStatement(query);
                 pstmt.setInt(1, authorId);
                 
                 int rowsAffected = pstmt.executeUpdate();
                 pstmt.close();
-                
-                if (rowsAffected > 0) {
+                EntityCache.remove(EntityCache.Kind.AUTHOR, authorId);
+                return rowsAffected;
+            }, rowsAffected -> {
+                if (rowsAffected < 0) {
+                    showNotification("This author still has " + -rowsAffected + (rowsAffected == -1 ? " book" : " books") +
+                                     "; delete them or give them another author first", WARNING_COLOR);
+                } else if (rowsAffected > 0) {
                     showNotification("Author deleted successfully", SECONDARY_COLOR);
-                    refreshAuthorsTable(authorsModel);
+                    ChangeEvents.publish(new ChangeEvents.AuthorDeleted(authorId));
                 }
-            } catch (SQLException e) {
-                showNotification("Error deleting author: " + e.getMessage(), ERROR_COLOR);
-            }
+            }, e -> showNotification("Error deleting author: " + e.getMessage(), ERROR_COLOR));
         }
     }
 
@@ -1009,17 +1444,10 @@ public class BookstoreManagementSystem {
         panel.add(headerPanel, BorderLayout.NORTH);
         
         // Table to display customers
-        DefaultTableModel customersModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        PagedTableModel customersModel = createCustomersModel();
+        ChangeEvents.subscribe(ChangeEvents.CustomerChanged.class, e -> customersModel.upsert(e.id));
+        ChangeEvents.subscribe(ChangeEvents.CustomerDeleted.class, e -> customersModel.remove(e.id));
         JTable customersTable = new JTable(customersModel);
-        customersModel.addColumn("ID");
-        customersModel.addColumn("Name");
-        customersModel.addColumn("Email");
-        customersModel.addColumn("Phone");
         
         applyTableStyle(customersTable);
         
@@ -1032,37 +1460,34 @@ public class BookstoreManagementSystem {
         
         panel.add(bottomPanel, BorderLayout.SOUTH);
         
-        // Load initial data
-        refreshCustomersTable(customersModel);
+        // Load initial data once the tab is on screen
+        loadWhenShown(panel, () -> refreshCustomersTable(customersModel));
         
         return panel;
     }
 
-    private static void refreshCustomersTable(DefaultTableModel model) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT * FROM customers";
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("customer_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("email"));
-                row.add(rs.getString("phone"));
-                model.addRow(row);
-            }
-            
-            rs.close();
-            stmt.close();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading customers: " + e.getMessage(), 
-                "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+    private static PagedTableModel createCustomersModel() {
+        return new PagedTableModel("customers",
+            new String[] {"ID", "Name", "Email", "Phone"},
+            "customer_id, name, email, phone, version",
+            "customers",
+            "customer_id",
+            rs -> new Object[] {
+                rs.getInt("customer_id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getString("phone"),
+                rs.getInt("version")
+            },
+            e -> JOptionPane.showMessageDialog(null, "Error loading customers: " + e.getMessage(), 
+                "Database Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private static void refreshCustomersTable(PagedTableModel model) {
+        model.setFilter(null);
     }
 
-    private static void showAddCustomerDialog(DefaultTableModel customersModel) {
+    private static void showAddCustomerDialog() {
         JDialog dialog = createStyledDialog("Add New Customer", 500, 400);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         
@@ -1105,24 +1530,37 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         saveButton.addActionListener(e -> {
-            try {
+            String name = nameField.getText().trim();
+            String email = emailField.getText().trim();
+            String phone = phoneField.getText().trim();
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving customer", context -> {
                 String query = "INSERT INTO customers (name, email, phone) VALUES (?, ?, ?)";
-                PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, nameField.getText().trim());
-                pstmt.setString(2, emailField.getText().trim());
-                pstmt.setString(3, phoneField.getText().trim());
+                PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                pstmt.setString(1, name);
+                pstmt.setString(2, email);
+                pstmt.setString(3, phone);
                 
                 pstmt.executeUpdate();
+                ResultSet generatedKeys = pstmt.getGeneratedKeys();
+                int customerId = -1;
+                if (generatedKeys.next()) {
+                    customerId = generatedKeys.getInt(1);
+                    EntityCache.put(LookupItem.customer(customerId, name));
+                }
                 pstmt.close();
-                
-                refreshCustomersTable(customersModel);
+                return customerId;
+            }, customerId -> {
+                ChangeEvents.publish(new ChangeEvents.CustomerChanged(customerId));
                 dialog.dispose();
                 
                 // Show success notification
                 showNotification("Customer added successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
                 showNotification("Error adding customer: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -1148,14 +1586,19 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void showEditCustomerDialog(DefaultTableModel customersModel, int selectedRow) {
+    private static void showEditCustomerDialog(PagedTableModel customersModel, int selectedRow) {
+        if (!editableRow(customersModel, selectedRow, "customer")) {
+            return;
+        }
         JDialog dialog = createStyledDialog("Edit Customer", 500, 400);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         
-        int customerId = (int) customersModel.getValueAt(selectedRow, 0);
+        int customerId = customersModel.getKeyAt(selectedRow);
         String currentName = (String) customersModel.getValueAt(selectedRow, 1);
         String currentEmail = (String) customersModel.getValueAt(selectedRow, 2);
         String currentPhone = (String) customersModel.getValueAt(selectedRow, 3);
+        LoadedVersion loaded = new LoadedVersion(new Object[] {currentName, Objects.toString(currentEmail, ""),
+            Objects.toString(currentPhone, "")}, customersModel.getVersionAt(selectedRow));
         
         // Main content panel with responsive layout
         JPanel contentPanel = new JPanel(new GridBagLayout());
@@ -1201,25 +1644,53 @@ public class BookstoreManagementSystem {
         
         // Add action listeners
         saveButton.addActionListener(e -> {
-            try {
-                String query = "UPDATE customers SET name=?, email=?, phone=? WHERE customer_id=?";
+            String name = nameField.getText().trim();
+            String email = emailField.getText().trim();
+            String phone = phoneField.getText().trim();
+            Object[] mine = {name, email, phone};
+            int expectedVersion = loaded.version;
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving customer", context -> {
+                // Update the customer, unless it was saved elsewhere since the form loaded it
+                String query = "UPDATE customers SET name=?, email=?, phone=?, version=version+1 " +
+                               "WHERE customer_id=? AND version=?";
                 PreparedStatement pstmt = connection.prepareStatement(query);
-                pstmt.setString(1, nameField.getText().trim());
-                pstmt.setString(2, emailField.getText().trim());
-                pstmt.setString(3, phoneField.getText().trim());
+                pstmt.setString(1, name);
+                pstmt.setString(2, email);
+                pstmt.setString(3, phone);
                 pstmt.setInt(4, customerId);
+                pstmt.setInt(5, expectedVersion);
                 
-                pstmt.executeUpdate();
+                int updated = pstmt.executeUpdate();
                 pstmt.close();
-                
-                refreshCustomersTable(customersModel);
+                if (updated == 0) {
+                    throw RowVersions.conflict(connection, "customers", customerId, expectedVersion, CUSTOMER_FORM_QUERY,
+                        rs -> new Object[] {rs.getString("name"), Objects.toString(rs.getString("email"), ""),
+                            Objects.toString(rs.getString("phone"), "")});
+                }
+                EntityCache.put(LookupItem.customer(customerId, name));
+                return null;
+            }, result -> {
+                ChangeEvents.publish(new ChangeEvents.CustomerChanged(customerId));
                 dialog.dispose();
                 
                 // Show success notification
                 showNotification("Customer updated successfully", SECONDARY_COLOR);
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
+                if (ex instanceof RowVersions.ConflictException) {
+                    Object[] values = resolveConflict(dialog, (RowVersions.ConflictException) ex, CUSTOMER_FORM_FIELDS,
+                                                      loaded, mine);
+                    if (values != null) {
+                        nameField.setText((String) values[0]);
+                        emailField.setText((String) values[1]);
+                        phoneField.setText((String) values[2]);
+                    }
+                    return;
+                }
                 showNotification("Error updating customer: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -1245,58 +1716,54 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static void deleteCustomer(int customerId, DefaultTableModel customersModel) {
+    private static void deleteCustomer(int customerId) {
         int confirm = showConfirmDialog("Are you sure you want to delete this customer?", "Confirm Deletion");
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                // Start transaction
-                connection.setAutoCommit(false);
-                
-                // First delete order items for all orders of this customer
-                String deleteOrderItemsQuery = "DELETE FROM order_items WHERE order_id IN (SELECT order_id FROM orders WHERE customer_id=?)";
-                PreparedStatement deleteOrderItemsStmt = connection.prepareStatement(deleteOrderItemsQuery);
-                deleteOrderItemsStmt.setInt(1, customerId);
-                deleteOrderItemsStmt.executeUpdate();
-                deleteOrderItemsStmt.close();
-                
-                // Then delete orders for this customer
-                String deleteOrdersQuery = "DELETE FROM orders WHERE customer_id=?";
-                PreparedStatement deleteOrdersStmt = connection.prepareStatement(deleteOrdersQuery);
-                deleteOrdersStmt.setInt(1, customerId);
-                deleteOrdersStmt.executeUpdate();
-                deleteOrdersStmt.close();
-                
-                // Finally delete the customer
-                String deleteCustomerQuery = "DELETE FROM customers WHERE customer_id=?";
-                PreparedStatement deleteCustomerStmt = connection.prepareStatement(deleteCustomerQuery);
-                deleteCustomerStmt.setInt(1, customerId);
-                
-                int rowsAffected = deleteCustomerStmt.executeUpdate();
-                deleteCustomerStmt.close();
-                
-                // Commit the transaction
-                connection.commit();
-                
-                if (rowsAffected > 0) {
-                    showNotification("Customer deleted successfully", SECONDARY_COLOR);
-                    refreshCustomersTable(customersModel);
-                }
-            } catch (SQLException e) {
+            DataAccessExecutor.submit(null, "Deleting customer", context -> {
                 try {
+                    // Start transaction
+                    connection.setAutoCommit(false);
+                    
+                    // First delete order items for all orders of this customer
+                    String deleteOrderItemsQuery = "DELETE FROM order_items WHERE order_id IN (SELECT order_id FROM orders WHERE customer_id=?)";
+                    PreparedStatement deleteOrderItemsStmt = connection.prepareStatement(deleteOrderItemsQuery);
+                    deleteOrderItemsStmt.setInt(1, customerId);
+                    deleteOrderItemsStmt.executeUpdate();
+                    deleteOrderItemsStmt.close();
+                    
+                    // Then delete orders for this customer
+                    String deleteOrdersQuery = "DELETE FROM orders WHERE customer_id=?";
+                    PreparedStatement deleteOrdersStmt = connection.prepareStatement(deleteOrdersQuery);
+                    deleteOrdersStmt.setInt(1, customerId);
+                    deleteOrdersStmt.executeUpdate();
+                    deleteOrdersStmt.close();
+                    
+                    // Finally delete the customer
+                    String deleteCustomerQuery = "DELETE FROM customers WHERE customer_id=?";
+                    PreparedStatement deleteCustomerStmt = connection.prepareStatement(deleteCustomerQuery);
+                    deleteCustomerStmt.setInt(1, customerId);
+                    
+                    int rowsAffected = deleteCustomerStmt.executeUpdate();
+                    deleteCustomerStmt.close();
+                    
+                    // Commit the transaction
+                    connection.commit();
+                    EntityCache.remove(EntityCache.Kind.CUSTOMER, customerId);
+                    return rowsAffected > 0;
+                } catch (SQLException e) {
                     // Rollback the transaction in case of error
                     connection.rollback();
-                } catch (SQLException rollbackEx) {
-                    showNotification("Error rolling back transaction: " + rollbackEx.getMessage(), ERROR_COLOR);
-                }
-                showNotification("Error deleting customer: " + e.getMessage(), ERROR_COLOR);
-            } finally {
-                try {
+                    throw e;
+                } finally {
                     // Reset auto-commit
                     connection.setAutoCommit(true);
-                } catch (SQLException autoCommitEx) {
-                    showNotification("Error resetting auto-commit: " + autoCommitEx.getMessage(), ERROR_COLOR);
                 }
-            }
+            }, deleted -> {
+                if (deleted) {
+                    showNotification("Customer deleted successfully", SECONDARY_COLOR);
+                    ChangeEvents.publish(new ChangeEvents.CustomerDeleted(customerId));
+                }
+            }, e -> showNotification("Error deleting customer: " + e.getMessage(), ERROR_COLOR));
         }
     }
 
@@ -1332,17 +1799,15 @@ public class BookstoreManagementSystem {
         panel.add(headerPanel, BorderLayout.NORTH);
         
         // Table to display orders
-        DefaultTableModel ordersModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        PagedTableModel ordersModel = createOrdersModel();
+        
+        // Orders show the customer's name, so a customer rename refreshes the loaded rows
+        ChangeEvents.subscribe(ChangeEvents.OrderChanged.class, e -> ordersModel.upsert(e.id));
+        ChangeEvents.subscribe(ChangeEvents.OrderDeleted.class, e -> ordersModel.remove(e.id));
+        ChangeEvents.subscribe(ChangeEvents.CustomerChanged.class, e -> ordersModel.refreshLoadedRows());
+        // The customer's orders went with them: one reload instead of a removal per order
+        ChangeEvents.subscribe(ChangeEvents.CustomerDeleted.class, e -> ordersModel.reload());
         JTable ordersTable = new JTable(ordersModel);
-        ordersModel.addColumn("Order ID");
-        ordersModel.addColumn("Customer");
-        ordersModel.addColumn("Order Date");
-        ordersModel.addColumn("Total Amount");
         
         applyTableStyle(ordersTable);
         
@@ -1355,38 +1820,24 @@ public class BookstoreManagementSystem {
         
         panel.add(bottomPanel, BorderLayout.SOUTH);
         
-        // Load initial data
-        refreshOrdersTable(ordersModel);
+        // Load initial data once the tab is on screen
+        loadWhenShown(panel, () -> refreshOrdersTable(ordersModel));
         
         return panel;
     }
 
-    private static void refreshOrdersTable(DefaultTableModel model) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT o.order_id, c.name, o.order_date, o.total_amount " +
-                         "FROM orders o JOIN customers c ON o.customer_id = c.customer_id";
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("order_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("order_date"));
-                row.add(rs.getDouble("total_amount"));
-                model.addRow(row);
-            }
-            
-            rs.close();
-            stmt.close();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading orders: " + e.getMessage(), 
-                "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+    private static PagedTableModel createOrdersModel() {
+        return new PagedTableModel("orders", BookstoreService.ORDER_COLUMNS, BookstoreService.ORDER_SELECT,
+            BookstoreService.ORDER_FROM, BookstoreService.ORDER_KEY, BookstoreService::orderRow,
+            e -> JOptionPane.showMessageDialog(null, "Error loading orders: " + e.getMessage(), 
+                "Database Error", JOptionPane.ERROR_MESSAGE));
     }
 
-    private static void showAddOrderDialog(DefaultTableModel ordersModel) {
+    private static void refreshOrdersTable(PagedTableModel model) {
+        model.setFilter(null);
+    }
+
+    private static void showAddOrderDialog() {
         JDialog dialog = createStyledDialog("Add New Order", 700, 600);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
 
@@ -1404,7 +1855,7 @@ public class BookstoreManagementSystem {
         customerLabel.setFont(REGULAR_FONT);
         
         // Create an editable combo box for customer selection with search functionality
-        JComboBox<String> customerCombo = new JComboBox<>();
+        JComboBox<LookupItem> customerCombo = new JComboBox<>();
         customerCombo.setEditable(true);
         customerCombo.setFont(REGULAR_FONT);
         customerCombo.setPreferredSize(new Dimension(200, COMPONENT_HEIGHT));
@@ -1425,37 +1876,6 @@ public class BookstoreManagementSystem {
         // Load customers into combo box
         loadCustomersIntoComboBox(customerCombo);
         
-        // Add document listener for search functionality
-        JTextField editor = (JTextField) customerCombo.getEditor().getEditorComponent();
-        editor.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String searchText = editor.getText().toLowerCase();
-                customerCombo.removeAllItems();
-                
-                try {
-                    String query = "SELECT name FROM customers WHERE LOWER(name) LIKE ?";
-                    PreparedStatement pstmt = connection.prepareStatement(query);
-                    pstmt.setString(1, "%" + searchText + "%");
-                    ResultSet rs = pstmt.executeQuery();
-                    
-                    while (rs.next()) {
-                        customerCombo.addItem(rs.getString("name"));
-                    }
-                    
-                    rs.close();
-                    pstmt.close();
-                    
-                    // Show dropdown when typing
-                    if (!searchText.isEmpty()) {
-                        customerCombo.showPopup();
-                    }
-                } catch (SQLException ex) {
-                    showNotification("Error searching customers: " + ex.getMessage(), ERROR_COLOR);
-                }
-            }
-        });
-        
         JLabel dateLabel = new JLabel("Order Date:");
         dateLabel.setFont(REGULAR_FONT);
         JTextField dateField = createStyledTextField();
@@ -1497,16 +1917,12 @@ public class BookstoreManagementSystem {
         JButton addItemButton = createStyledButton("Add Book", null);
         JButton removeItemButton = createStyledButton("Remove Book", null);
         
-        addItemButton.addActionListener(e -> {
-            showAddOrderItemDialog(itemsModel);
-            updateTotalAmount(itemsModel, dialog);
-        });
+        addItemButton.addActionListener(e -> showAddOrderItemDialog(itemsModel));
         
         removeItemButton.addActionListener(e -> {
             int selectedRow = itemsTable.getSelectedRow();
             if (selectedRow >= 0) {
                 itemsModel.removeRow(selectedRow);
-                updateTotalAmount(itemsModel, dialog);
             }
         });
         
@@ -1522,6 +1938,10 @@ public class BookstoreManagementSystem {
         totalLabel.setFont(REGULAR_FONT);
         savePanel.add(totalLabel);
         
+        // Keep the total in step with every item added, removed or edited
+        itemsModel.addTableModelListener(e ->
+            totalLabel.setText("Total: " + Money.format(calculateTotalAmount(itemsModel))));
+        
         JButton saveButton = createStyledButton("Save Order", null);
         JButton cancelButton = createStyledButton("Cancel", null);
         
@@ -1534,42 +1954,36 @@ public class BookstoreManagementSystem {
         cancelButton.setToolTipText("Cancel (Ctrl+C)");
         
         saveButton.addActionListener(e -> {
-            try {
-                if (itemsModel.getRowCount() == 0) {
-                    showNotification("Please add at least one book to the order", WARNING_COLOR);
-                    return;
-                }
+            if (itemsModel.getRowCount() == 0) {
+                showNotification("Please add at least one book to the order", WARNING_COLOR);
+                return;
+            }
 
-                int customerId = getCustomerId(customerCombo.getSelectedItem().toString());
-                double totalAmount = calculateTotalAmount(itemsModel);
+            LookupItem customer = EntityCache.resolve(EntityCache.Kind.CUSTOMER, customerCombo.getSelectedItem());
+            if (customer == null) {
+                showNotification("Please select an existing customer", WARNING_COLOR);
+                return;
+            }
 
-                // Save the order
-                String orderQuery = "INSERT INTO orders (customer_id, order_date, total_amount) VALUES (?, ?, ?)";
-                PreparedStatement orderStmt = connection.prepareStatement(orderQuery, 
-                    Statement.RETURN_GENERATED_KEYS);
-                orderStmt.setInt(1, customerId);
-                orderStmt.setString(2, dateField.getText());
-                orderStmt.setDouble(3, totalAmount);
-                
-                orderStmt.executeUpdate();
-                
-                ResultSet generatedKeys = orderStmt.getGeneratedKeys();
-                int orderId = -1;
-                if (generatedKeys.next()) {
-                    orderId = generatedKeys.getInt(1);
-                }
-                
-                // Save order items
-                insertOrderItems(itemsModel, orderId);
-                
-                refreshOrdersTable(ordersModel);
+            String orderDate = parseRequiredDate(dateField, "Order date");
+            if (orderDate == null) {
+                return;
+            }
+            List<Object[]> items = orderItemRows(itemsModel);
+            saveButton.setEnabled(false);
+
+            DataAccessExecutor.submit(null, "Saving order", context -> {
+                // Save the order and its items in one transaction
+                return BookstoreService.placeOrder(connection, customer.id, orderDate, items);
+            }, orderId -> {
+                ChangeEvents.publish(new ChangeEvents.OrderChanged(orderId));
                 dialog.dispose();
                 
                 showNotification("Order saved successfully", SECONDARY_COLOR);
-                
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
                 showNotification("Error saving order: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -1612,7 +2026,7 @@ public class BookstoreManagementSystem {
         
         JLabel bookLabel = new JLabel("Book:");
         bookLabel.setFont(REGULAR_FONT);
-        JComboBox<String> bookCombo = createStyledComboBox();
+        JComboBox<LookupItem> bookCombo = createStyledComboBox();
         loadBooksIntoComboBox(bookCombo);
         
         JLabel quantityLabel = new JLabel("Quantity:");
@@ -1641,13 +2055,17 @@ public class BookstoreManagementSystem {
         cancelButton.setToolTipText("Cancel (Ctrl+C)");
         
         addButton.addActionListener(e -> {
-            String bookTitle = (String) bookCombo.getSelectedItem();
+            LookupItem book = EntityCache.resolve(EntityCache.Kind.BOOK, bookCombo.getSelectedItem());
+            if (book == null) {
+                showNotification("Please select an existing book", WARNING_COLOR);
+                return;
+            }
             int quantity = (int) quantitySpinner.getValue();
-            double unitPrice = getBookPrice(bookTitle);
-            double subtotal = quantity * unitPrice;
+            Money unitPrice = Money.ofCents(book.priceCents);
+            Money subtotal = unitPrice.times(quantity);
             
             Vector<Object> row = new Vector<>();
-            row.add(bookTitle);
+            row.add(book);
             row.add(quantity);
             row.add(unitPrice);
             row.add(subtotal);
@@ -1693,25 +2111,7 @@ public class BookstoreManagementSystem {
         JTextField dateField = createStyledTextField();
         JTextField totalField = createStyledTextField();
         
-        try {
-            String query = "SELECT o.order_id, c.name, o.order_date, o.total_amount " +
-                         "FROM orders o JOIN customers c ON o.customer_id = c.customer_id " +
-                         "WHERE o.order_id=?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, orderId);
-            
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                customerField.setText(rs.getString("name"));
-                dateField.setText(rs.getString("order_date"));
-                totalField.setText(String.format("%.2f", rs.getDouble("total_amount")));
-                totalField.setEditable(false); // Total amount should not be editable directly
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error loading order details: " + e.getMessage(), ERROR_COLOR);
-        }
+        totalField.setEditable(false); // Total amount should not be editable directly
         
         // Add form fields with labels
         addFormField(infoPanel, "Order ID:", new JLabel(String.valueOf(orderId)), new GridBagConstraints(), 0);
@@ -1735,9 +2135,9 @@ public class BookstoreManagementSystem {
                         int newQuantity = Integer.parseInt(value.toString());
                         if (newQuantity > 0) {
                             super.setValueAt(newQuantity, row, column);
-                            // Update subtotal
-                            double unitPrice = (double) getValueAt(row, 2);
-                            setValueAt(newQuantity * unitPrice, row, 3);
+                            // Update subtotal (through super, as this override only accepts quantities)
+                            Money unitPrice = (Money) getValueAt(row, 2);
+                            super.setValueAt(unitPrice.times(newQuantity), row, 3);
                             updateOrderTotal(this, totalField);
                         }
                     } catch (NumberFormatException e) {
@@ -1752,30 +2152,84 @@ public class BookstoreManagementSystem {
         itemsModel.addColumn("Quantity");
         itemsModel.addColumn("Unit Price");
         itemsModel.addColumn("Subtotal");
+        // Stored lines keep their order_item_id so a save writes only what changed; new lines have none
+        itemsModel.addColumn("Item ID");
         
         applyTableStyle(itemsTable);
+        itemsTable.removeColumn(itemsTable.getColumnModel().getColumn(4));
         
-        try {
-            String query = "SELECT b.title, oi.quantity, oi.unit_price " +
-                          "FROM order_items oi JOIN books b ON oi.book_id = b.book_id " +
-                          "WHERE oi.order_id=?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, orderId);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getString("title"));
-                row.add(rs.getInt("quantity"));
-                row.add(rs.getDouble("unit_price"));
-                row.add(rs.getInt("quantity") * rs.getDouble("unit_price"));
-                itemsModel.addRow(row);
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error loading order items: " + e.getMessage(), ERROR_COLOR);
-        }
+        JButton addItemButton = createStyledButton("Add Book", null);
+        JButton removeItemButton = createStyledButton("Remove Book", null);
+        JButton saveButton = createStyledButton("Save Changes", null);
+        JButton closeButton = createStyledButton("Close", null);
+        // Off while the order loads: the load replaces the lines, and a save before it has
+        // run would be checked against no version at all and always conflict
+        JButton[] editButtons = {addItemButton, removeItemButton, saveButton};
+        
+        // The order as the dialog loaded it: its date and version, and each stored line's
+        // quantity. A save is checked against the version; after a conflict they are the
+        // base that the dialog's edits are merged against.
+        LoadedVersion loaded = new LoadedVersion(new Object[] {null}, -1);
+        Map<Integer, Integer> loadedQuantities = new HashMap<>();
+        // Read the stored order into the dialog. Given the dialog's date and lines from before
+        // a conflict, those edits are merged into the stored order rather than discarded.
+        BiConsumer<String, List<Object[]>> load = (editedDate, editedLines) -> {
+            for (JButton button : editButtons) {
+                button.setEnabled(false);
+            }
+            DataAccessExecutor.submitRead("order-details", "Loading order", context -> {
+                // The header first (null once the order is gone), then the lines, read after it so
+                // they are never older than the version
+                List<Object[]> order = new ArrayList<>();
+                order.add(BookstoreService.order(context.connection(), orderId));
+                // Lines are {orderItemId, bookId, title, quantity, unitPrice}
+                for (Object[] line : BookstoreService.orderItems(context.connection(), orderId)) {
+                    LookupItem book = EntityCache.get(context.connection(), EntityCache.Kind.BOOK, (Integer) line[1]);
+                    Money unitPrice = (Money) line[4];
+                    int quantity = (Integer) line[3];
+                    order.add(new Object[] {
+                        book != null ? book : line[2],
+                        quantity,
+                        unitPrice,
+                        unitPrice.times(quantity),
+                        line[0]
+                    });
+                }
+                return order;
+            }, order -> {
+                Object[] header = order.get(0);
+                if (header == null) {
+                    showNotification("This order was deleted at another terminal", WARNING_COLOR);
+                    dialog.dispose();
+                    return;
+                }
+                List<Object[]> lines = order.subList(1, order.size());
+                String orderDate = (String) header[2];
+                if (editedLines != null) {
+                    orderDate = (String) RowVersions.merge(loaded.values, new Object[] {editedDate},
+                                                           new Object[] {orderDate})[0];
+                    lines = mergeOrderLines(loadedQuantities, editedLines, lines);
+                }
+                loaded.values = new Object[] {header[2]};
+                loaded.version = (Integer) header[4];
+                loadedQuantities.clear();
+                for (Object[] line : order.subList(1, order.size())) {
+                    loadedQuantities.put((Integer) line[4], (Integer) line[1]);
+                }
+                
+                customerField.setText((String) header[1]);
+                dateField.setText(orderDate);
+                itemsModel.setRowCount(0);
+                for (Object[] line : lines) {
+                    itemsModel.addRow(line);
+                }
+                updateOrderTotal(itemsModel, totalField);
+                for (JButton button : editButtons) {
+                    button.setEnabled(true);
+                }
+            }, e -> showNotification("Error loading order details: " + e.getMessage(), ERROR_COLOR));
+        };
+        load.accept(null, null);
         
         JScrollPane itemsScrollPane = new JScrollPane(itemsTable);
         itemsScrollPane.setBorder(BorderFactory.createLineBorder(SECONDARY_COLOR));
@@ -1785,11 +2239,6 @@ public class BookstoreManagementSystem {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, PADDING, PADDING));
         buttonPanel.setBackground(Color.WHITE);
         
-        JButton addItemButton = createStyledButton("Add Book", null);
-        JButton removeItemButton = createStyledButton("Remove Book", null);
-        JButton saveButton = createStyledButton("Save Changes", null);
-        JButton closeButton = createStyledButton("Close", null);
-        
         addItemButton.addActionListener(e -> {
             showAddOrderItemDialog(itemsModel);
             updateOrderTotal(itemsModel, totalField);
@@ -1806,54 +2255,39 @@ public class BookstoreManagementSystem {
         });
         
         saveButton.addActionListener(e -> {
-            try {
-                // Update order details
-                String updateOrderQuery = "UPDATE orders SET order_date = ?, total_amount = ? WHERE order_id = ?";
-                PreparedStatement orderStmt = connection.prepareStatement(updateOrderQuery);
-                orderStmt.setString(1, dateField.getText());
-                orderStmt.setDouble(2, Double.parseDouble(totalField.getText()));
-                orderStmt.setInt(3, orderId);
-                orderStmt.executeUpdate();
-                orderStmt.close();
-                
-                // Delete existing order items
-                String deleteItemsQuery = "DELETE FROM order_items WHERE order_id = ?";
-                PreparedStatement deleteStmt = connection.prepareStatement(deleteItemsQuery);
-                deleteStmt.setInt(1, orderId);
-                deleteStmt.executeUpdate();
-                deleteStmt.close();
-                
-                // Insert updated order items
-                insertOrderItems(itemsModel, orderId);
-                
+            String orderDate = parseRequiredDate(dateField, "Order date");
+            if (orderDate == null) {
+                return;
+            }
+            // Summed from the lines rather than re-parsed from the total field
+            long totalCents = calculateTotalAmount(itemsModel);
+            List<Object[]> items = orderItemRows(itemsModel);
+            int expectedVersion = loaded.version;
+            saveButton.setEnabled(false);
+            
+            DataAccessExecutor.submit(null, "Saving order", context -> {
+                // Write the changed header fields and item lines in one transaction, unless the
+                // order was saved elsewhere since the dialog loaded it
+                return OrderWriter.updateOrder(connection, orderId, expectedVersion, orderDate, totalCents, items);
+            }, changes -> {
                 dialog.dispose();
-                showNotification("Order updated successfully", SECONDARY_COLOR);
-                
-                // Refresh the orders table
-                for (int i = 0; i < tabbedPane.getTabCount(); i++) {
-                    if (tabbedPane.getTitleAt(i).equals("Orders")) {
-                        Component comp = tabbedPane.getComponentAt(i);
-                        if (comp instanceof JPanel) {
-                            JPanel panel = (JPanel) comp;
-                            for (Component innerComp : panel.getComponents()) {
-                                if (innerComp instanceof JScrollPane) {
-                                    JScrollPane scrollPane = (JScrollPane) innerComp;
-                                    JTable table = (JTable) scrollPane.getViewport().getView();
-                                    if (table != null) {
-                                        DefaultTableModel model = (DefaultTableModel) table.getModel();
-                                        refreshOrdersTable(model);
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                        break;
+                showNotification("Order updated successfully (" + changes + ")", SECONDARY_COLOR);
+                
+                ChangeEvents.publish(new ChangeEvents.OrderChanged(orderId));
+            }, ex -> {
+                saveButton.setEnabled(true);
+                if (ex instanceof RowVersions.ConflictException) {
+                    int choice = askConflict(dialog, (RowVersions.ConflictException) ex, new String[] {"Order Date"},
+                                             loaded.values, new Object[] {orderDate});
+                    if (choice == CONFLICT_MERGE) {
+                        load.accept(orderDate, items);
+                    } else if (choice == CONFLICT_RELOAD) {
+                        load.accept(null, null);
                     }
+                    return;
                 }
-                
-            } catch (SQLException ex) {
                 showNotification("Error updating order: " + ex.getMessage(), ERROR_COLOR);
-            }
+            });
         });
         
         closeButton.addActionListener(e -> dialog.dispose());
@@ -1870,17 +2304,13 @@ public class BookstoreManagementSystem {
     }
 
     private static void updateOrderTotal(DefaultTableModel itemsModel, JTextField totalField) {
-        double total = 0;
-        for (int i = 0; i < itemsModel.getRowCount(); i++) {
-            total += (double) itemsModel.getValueAt(i, 3); // Subtotal column
-        }
-        totalField.setText(String.format("%.2f", total));
+        totalField.setText(Money.plain(calculateTotalAmount(itemsModel)));
     }
 
-    private static void deleteOrder(int orderId, DefaultTableModel ordersModel) {
+    private static void deleteOrder(int orderId) {
         int confirm = showConfirmDialog("Are you sure you want to delete this order?", "Confirm Deletion");
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
+            DataAccessExecutor.submit(null, "Deleting order", context -> {
                 // First delete order items (due to foreign key constraint)
                 String deleteItemsQuery = "DELETE FROM order_items WHERE order_id=?";
                 PreparedStatement deleteItemsStmt = connection.prepareStatement(deleteItemsQuery);
@@ -1895,14 +2325,13 @@ public class BookstoreManagementSystem {
                 
                 int rowsAffected = deleteOrderStmt.executeUpdate();
                 deleteOrderStmt.close();
-                
+                return rowsAffected;
+            }, rowsAffected -> {
                 if (rowsAffected > 0) {
                     showNotification("Order deleted successfully", SECONDARY_COLOR);
-                    refreshOrdersTable(ordersModel);
+                    ChangeEvents.publish(new ChangeEvents.OrderDeleted(orderId));
                 }
-            } catch (SQLException e) {
-                showNotification("Error deleting order: " + e.getMessage(), ERROR_COLOR);
-            }
+            }, e -> showNotification("Error deleting order: " + e.getMessage(), ERROR_COLOR));
         }
     }
 
@@ -1945,11 +2374,11 @@ public class BookstoreManagementSystem {
         reportLabel.setFont(REGULAR_FONT);
         
         JComboBox<String> reportCombo = createStyledComboBox();
-        reportCombo.setModel(new DefaultComboBoxModel<>(new String[] {
-            "Sales by Genre",
-            "Top Selling Books",
-            "Customer Spending"
-        }));
+        DefaultComboBoxModel<String> reportNames = new DefaultComboBoxModel<>();
+        for (BookstoreService.Report report : BookstoreService.Report.values()) {
+            reportNames.addElement(report.title);
+        }
+        reportCombo.setModel(reportNames);
         
         // Create the report table model
         final DefaultTableModel reportModel = new DefaultTableModel() {
@@ -1961,32 +2390,54 @@ public class BookstoreManagementSystem {
         JTable reportTable = new JTable(reportModel);
         applyTableStyle(reportTable);
         
+        // Optional period of order dates; blank bounds are open
+        JTextField fromDateField = createStyledTextField();
+        JTextField toDateField = createStyledTextField();
+        fromDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        toDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        fromDateField.setToolTipText("From order date (YYYY-MM-DD)");
+        toDateField.setToolTipText("To order date (YYYY-MM-DD)");
+        
         JButton generateButton = createStyledButton("Generate", null);
         generateButton.addActionListener(e -> {
-            String selectedReport = (String) reportCombo.getSelectedItem();
+            BookstoreService.Report report = BookstoreService.Report.byTitle((String) reportCombo.getSelectedItem());
+            Object[] period;
+            try {
+                period = BookstoreService.period(fromDateField.getText(), toDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                return;
+            }
             reportModel.setRowCount(0);
             reportModel.setColumnCount(0);
-            
+            for (String column : report.columns) {
+                reportModel.addColumn(column);
+            }
+            runReport(reportModel, report, period);
+        });
+        
+        JButton exportButton = createStyledButton("Export", null);
+        exportButton.setToolTipText("Export the selected report to CSV (.csv or .csv.gz)");
+        exportButton.addActionListener(e -> {
+            BookstoreService.Report report = BookstoreService.Report.byTitle((String) reportCombo.getSelectedItem());
+            Object[] period;
             try {
-                switch (selectedReport) {
-                    case "Sales by Genre":
-                        generateSalesByGenreReport(reportModel);
-                        break;
-                    case "Top Selling Books":
-                        generateTopSellingBooksReport(reportModel);
-                        break;
-                    case "Customer Spending":
-                        generateCustomerSpendingReport(reportModel);
-                        break;
-                }
-            } catch (SQLException ex) {
-                showNotification("Error generating report: " + ex.getMessage(), ERROR_COLOR);
+                period = BookstoreService.period(fromDateField.getText(), toDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                return;
             }
+            exportToFile(report.title, report.columns, report.query(period), period);
         });
         
         reportSelectionPanel.add(reportLabel);
         reportSelectionPanel.add(reportCombo);
+        reportSelectionPanel.add(new JLabel("Ordered:"));
+        reportSelectionPanel.add(fromDateField);
+        reportSelectionPanel.add(new JLabel("to"));
+        reportSelectionPanel.add(toDateField);
         reportSelectionPanel.add(generateButton);
+        reportSelectionPanel.add(exportButton);
         
         panel.add(reportSelectionPanel, BorderLayout.NORTH);
         
@@ -1998,405 +2449,212 @@ public class BookstoreManagementSystem {
         return panel;
     }
 
-    private static void generateSalesByGenreReport(DefaultTableModel model) throws SQLException {
-        model.addColumn("Genre");
-        model.addColumn("Total Quantity Sold");
-        
-        String query = "SELECT b.genre, SUM(oi.quantity) AS total_quantity " +
-                     "FROM books b JOIN order_items oi ON b.book_id = oi.book_id " +
-                     "GROUP BY b.genre " +
-                     "ORDER BY total_quantity DESC";
-        
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(query);
-        
-        while (rs.next()) {
-            Vector<Object> row = new Vector<>();
-            row.add(rs.getString("genre"));
-            row.add(rs.getInt("total_quantity"));
-            model.addRow(row);
-        }
-        
-        rs.close();
-        stmt.close();
-    }
-
-    private static void generateTopSellingBooksReport(DefaultTableModel model) throws SQLException {
-        model.addColumn("Book Title");
-        model.addColumn("Author");
-        model.addColumn("Total Quantity Sold");
-        
-        String query = "SELECT b.title, a.name, SUM(oi.quantity) AS total_quantity " +
-                     "FROM books b " +
-                     "JOIN order_items oi ON b.book_id = oi.book_id " +
-                     "JOIN authors a ON b.author_id = a.author_id " +
-                     "GROUP BY b.book_id, b.title, a.name " +
-                     "ORDER BY total_quantity DESC " +
-                     "LIMIT 10";
-        
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(query);
-        
-        while (rs.next()) {
-            Vector<Object> row = new Vector<>();
-            row.add(rs.getString("title"));
-            row.add(rs.getString("name"));
-            row.add(rs.getInt("total_quantity"));
-            model.addRow(row);
-        }
-        
-        rs.close();
-        stmt.close();
-    }
-
-    private static void generateCustomerSpendingReport(DefaultTableModel model) throws SQLException {
-        model.addColumn("Customer Name");
-        model.addColumn("Total Amount Spent");
-        
-        String query = "SELECT c.name, SUM(o.total_amount) AS total_spent " +
-                     "FROM customers c JOIN orders o ON c.customer_id = o.customer_id " +
-                     "GROUP BY c.customer_id, c.name " +
-                     "ORDER BY total_spent DESC";
-        
-        Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(query);
-        
-        while (rs.next()) {
-            Vector<Object> row = new Vector<>();
-            row.add(rs.getString("name"));
-            row.add(rs.getDouble("total_spent"));
-            model.addRow(row);
-        }
-        
-        rs.close();
-        stmt.close();
+    // Run a report on a read thread, streaming its rows into the model in chunks
+    // as BookstoreService.report publishes them; nothing is left to do at the end
+    private static void runReport(DefaultTableModel model, BookstoreService.Report report, Object[] period) {
+        Consumer<List<Object[]>> addRows = rows -> {
+            for (Object[] row : rows) {
+                model.addRow(row);
+            }
+        };
+        DataAccessExecutor.submitRead("reports", "Generating report",
+            context -> BookstoreService.report(context.connection(), report, period, -1, context),
+            addRows, null, e -> showNotification("Error generating report: " + e.getMessage(), ERROR_COLOR));
     }
 
     // Helper methods
-    private static int getAuthorId(String authorName) throws SQLException {
-        String query = "SELECT author_id FROM authors WHERE name=?";
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        pstmt.setString(1, authorName);
-        
-        ResultSet rs = pstmt.executeQuery();
-        int authorId = -1;
-        if (rs.next()) {
-            authorId = rs.getInt("author_id");
-        }
-        
-        rs.close();
-        pstmt.close();
-        
-        return authorId;
-    }
-
-    private static int getCustomerId(String customerName) throws SQLException {
-        String query = "SELECT customer_id FROM customers WHERE name=?";
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        pstmt.setString(1, customerName);
-        
-        ResultSet rs = pstmt.executeQuery();
-        int customerId = -1;
-        if (rs.next()) {
-            customerId = rs.getInt("customer_id");
-        }
-        
-        rs.close();
-        pstmt.close();
-        
-        return customerId;
-    }
-
-    private static int getBookId(String bookTitle) throws SQLException {
-        String query = "SELECT book_id FROM books WHERE title=?";
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        pstmt.setString(1, bookTitle);
-        
-        ResultSet rs = pstmt.executeQuery();
-        int bookId = -1;
-        if (rs.next()) {
-            bookId = rs.getInt("book_id");
-        }
+    private static void loadAuthorsIntoComboBox(JComboBox<LookupItem> authorCombo) {
+        // Make the combo box editable
+        authorCombo.setEditable(true);
+        authorCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
+        
+        // Get the editor component (the text field)
+        JTextField editor = (JTextField) authorCombo.getEditor().getEditorComponent();
+        editor.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BORDER_COLOR),
+            BorderFactory.createEmptyBorder(5, 10, 5, 10)
+        ));
         
-        rs.close();
-        pstmt.close();
-        return bookId;
-    }
-
-    private static void loadAuthorsIntoComboBox(JComboBox<String> authorCombo) {
-        try {
-            // Make the combo box editable
-            authorCombo.setEditable(true);
-            authorCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
-            
-            // Get the editor component (the text field)
-            JTextField editor = (JTextField) authorCombo.getEditor().getEditorComponent();
-            editor.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(BORDER_COLOR),
-                BorderFactory.createEmptyBorder(5, 10, 5, 10)
-            ));
-            
-            // Add focus listener for better UX
-            editor.addFocusListener(new FocusAdapter() {
-                @Override
-                public void focusGained(FocusEvent e) {
-                    editor.setBorder(BorderFactory.createCompoundBorder(
-                        BorderFactory.createLineBorder(ACCENT_COLOR, 2),
-                        BorderFactory.createEmptyBorder(5, 10, 5, 10)
-                    ));
-                    // Show dropdown when focused
-                    authorCombo.showPopup();
-                }
-                
-                @Override
-                public void focusLost(FocusEvent e) {
-                    editor.setBorder(BorderFactory.createCompoundBorder(
-                        BorderFactory.createLineBorder(BORDER_COLOR),
-                        BorderFactory.createEmptyBorder(5, 10, 5, 10)
-                    ));
-                }
-            });
+        // Add focus listener for better UX
+        editor.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                editor.setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(ACCENT_COLOR, 2),
+                    BorderFactory.createEmptyBorder(5, 10, 5, 10)
+                ));
+                // Show dropdown when focused
+                authorCombo.showPopup();
+            }
             
-            // Add key listener for filtering and navigation
-            editor.addKeyListener(new KeyAdapter() {
-                @Override
-                public void keyPressed(KeyEvent e) {
-                    // Handle navigation keys
-                    switch (e.getKeyCode()) {
-                        case KeyEvent.VK_UP:
-                        case KeyEvent.VK_DOWN:
-                            if (!authorCombo.isPopupVisible()) {
-                                authorCombo.showPopup();
-                            }
-                            break;
-                        case KeyEvent.VK_ENTER:
-                            if (authorCombo.isPopupVisible()) {
+            @Override
+            public void focusLost(FocusEvent e) {
+                editor.setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(BORDER_COLOR),
+                    BorderFactory.createEmptyBorder(5, 10, 5, 10)
+                ));
+            }
+        });
+        
+        // Add key listener for navigation
+        editor.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                // Handle navigation keys
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_UP:
+                    case KeyEvent.VK_DOWN:
+                        if (!authorCombo.isPopupVisible()) {
+                            authorCombo.showPopup();
+                        }
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (authorCombo.isPopupVisible()) {
+                            // Keep the highlighted author (and its id) unless the text was edited
+                            Object selected = authorCombo.getSelectedItem();
+                            if (!(selected instanceof LookupItem) || !selected.toString().equals(editor.getText())) {
                                 authorCombo.setSelectedItem(editor.getText());
-                                authorCombo.hidePopup();
                             }
-                            break;
-                        case KeyEvent.VK_ESCAPE:
                             authorCombo.hidePopup();
-                            break;
-                    }
-                }
-                
-                @Override
-                public void keyReleased(KeyEvent e) {
-                    // Don't filter on navigation keys
-                    if (e.getKeyCode() == KeyEvent.VK_UP || 
-                        e.getKeyCode() == KeyEvent.VK_DOWN || 
-                        e.getKeyCode() == KeyEvent.VK_ENTER || 
-                        e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-                        return;
-                    }
-                    
-                    String searchText = editor.getText().toLowerCase();
-                    authorCombo.removeAllItems();
-                    
-                    try {
-                        String query = "SELECT name FROM authors WHERE LOWER(name) LIKE ? ORDER BY name";
-                        PreparedStatement pstmt = connection.prepareStatement(query);
-                        pstmt.setString(1, "%" + searchText + "%");
-                        ResultSet rs = pstmt.executeQuery();
-                        
-                        while (rs.next()) {
-                            String name = rs.getString("name");
-                            authorCombo.addItem(name);
-                        }
-                        
-                        // Show dropdown when typing
-                        if (!searchText.isEmpty()) {
-                            authorCombo.showPopup();
                         }
-                        
-                        rs.close();
-                        pstmt.close();
-                    } catch (SQLException ex) {
-                        showNotification("Error searching authors: " + ex.getMessage(), ERROR_COLOR);
-                    }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        authorCombo.hidePopup();
+                        break;
                 }
-            });
-            
-            // Load initial authors
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT name FROM authors ORDER BY name");
-            while (rs.next()) {
-                authorCombo.addItem(rs.getString("name"));
-            }
-            rs.close();
-            stmt.close();
-            
-            // Set custom renderer for better appearance
-            authorCombo.setRenderer(new DefaultListCellRenderer() {
-                @Override
-                public Component getListCellRendererComponent(JList<?> list, Object value, 
-                        int index, boolean isSelected, boolean cellHasFocus) {
-                    JLabel label = (JLabel) super.getListCellRendererComponent(
-                        list, value, index, isSelected, cellHasFocus);
+            }
+        });
+        
+        // Load initial authors and filter them as the user types
+        installSuggestions(authorCombo, EntityCache.Kind.AUTHOR);
+        
+        // Set custom renderer for better appearance
+        authorCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, 
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                JLabel label = (JLabel) super.getListCellRendererComponent(
+                    list, value, index, isSelected, cellHasFocus);
+                
+                if (value != null) {
+                    label.setText(value.toString());
+                    label.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
                     
-                    if (value != null) {
-                        label.setText(value.toString());
-                        label.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-                        
-                        if (isSelected) {
-                            label.setBackground(ACCENT_COLOR);
-                            label.setForeground(Color.WHITE);
-                        } else {
-                            label.setBackground(Color.WHITE);
-                            label.setForeground(TEXT_COLOR);
-                        }
+                    if (isSelected) {
+                        label.setBackground(ACCENT_COLOR);
+                        label.setForeground(Color.WHITE);
+                    } else {
+                        label.setBackground(Color.WHITE);
+                        label.setForeground(TEXT_COLOR);
                     }
-                    
-                    return label;
                 }
-            });
-            
-        } catch (SQLException e) {
-            showNotification("Error loading authors: " + e.getMessage(), ERROR_COLOR);
-        }
+                
+                return label;
+            }
+        });
+        
     }
 
-    private static void loadCustomersIntoComboBox(JComboBox<String> customerCombo) {
-        try {
-            // Make the combo box editable
-            customerCombo.setEditable(true);
-            customerCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
-            
-            // Get the editor component (the text field)
-            JTextField editor = (JTextField) customerCombo.getEditor().getEditorComponent();
-            editor.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(BORDER_COLOR),
-                BorderFactory.createEmptyBorder(5, 10, 5, 10)
-            ));
-            
-            // Add key listener for filtering
-            editor.addKeyListener(new KeyAdapter() {
-                @Override
-                public void keyReleased(KeyEvent e) {
-                    String searchText = editor.getText().toLowerCase();
-                    customerCombo.removeAllItems();
-                    
-                    try {
-                        String query = "SELECT name FROM customers WHERE LOWER(name) LIKE ? ORDER BY name";
-                        PreparedStatement pstmt = connection.prepareStatement(query);
-                        pstmt.setString(1, "%" + searchText + "%");
-                        ResultSet rs = pstmt.executeQuery();
-                        
-                        while (rs.next()) {
-                            String name = rs.getString("name");
-                            customerCombo.addItem(name);
-                        }
-                        
-                        // Show dropdown when typing
-                        if (!searchText.isEmpty()) {
-                            customerCombo.showPopup();
-                        }
-                        
-                        rs.close();
-                        pstmt.close();
-                    } catch (SQLException ex) {
-                        showNotification("Error searching customers: " + ex.getMessage(), ERROR_COLOR);
-                    }
-                }
-            });
-            
-            // Load initial customers
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT name FROM customers ORDER BY name");
-            while (rs.next()) {
-                customerCombo.addItem(rs.getString("name"));
-            }
-            rs.close();
-            stmt.close();
-            
-            // Set custom renderer for better appearance
-            customerCombo.setRenderer(new DefaultListCellRenderer() {
-                @Override
-                public Component getListCellRendererComponent(JList<?> list, Object value, 
-                        int index, boolean isSelected, boolean cellHasFocus) {
-                    JLabel label = (JLabel) super.getListCellRendererComponent(
-                        list, value, index, isSelected, cellHasFocus);
+    private static void loadCustomersIntoComboBox(JComboBox<LookupItem> customerCombo) {
+        // Make the combo box editable
+        customerCombo.setEditable(true);
+        customerCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
+        
+        // Get the editor component (the text field)
+        JTextField editor = (JTextField) customerCombo.getEditor().getEditorComponent();
+        editor.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BORDER_COLOR),
+            BorderFactory.createEmptyBorder(5, 10, 5, 10)
+        ));
+        
+        // Load initial customers and filter them as the user types
+        installSuggestions(customerCombo, EntityCache.Kind.CUSTOMER);
+        
+        // Set custom renderer for better appearance
+        customerCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, 
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                JLabel label = (JLabel) super.getListCellRendererComponent(
+                    list, value, index, isSelected, cellHasFocus);
+                
+                if (value != null) {
+                    label.setText(value.toString());
+                    label.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
                     
-                    if (value != null) {
-                        label.setText(value.toString());
-                        label.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-                        
-                        if (isSelected) {
-                            label.setBackground(ACCENT_COLOR);
-                            label.setForeground(Color.WHITE);
-                        } else {
-                            label.setBackground(Color.WHITE);
-                            label.setForeground(TEXT_COLOR);
-                        }
+                    if (isSelected) {
+                        label.setBackground(ACCENT_COLOR);
+                        label.setForeground(Color.WHITE);
+                    } else {
+                        label.setBackground(Color.WHITE);
+                        label.setForeground(TEXT_COLOR);
                     }
-                    
-                    return label;
                 }
-            });
-            
-        } catch (SQLException e) {
-            showNotification("Error loading customers: " + e.getMessage(), ERROR_COLOR);
-        }
+                
+                return label;
+            }
+        });
+        
     }
 
-    private static void loadBooksIntoComboBox(JComboBox<String> bookCombo) {
-        try {
-            // Make the combo box editable
-            bookCombo.setEditable(true);
-            bookCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
+    private static void loadBooksIntoComboBox(JComboBox<LookupItem> bookCombo) {
+        // Make the combo box editable
+        bookCombo.setEditable(true);
+        bookCombo.setMaximumRowCount(10); // Show max 10 items in dropdown
+        
+        // Get the editor component (the text field)
+        JTextField editor = (JTextField) bookCombo.getEditor().getEditorComponent();
+        editor.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BORDER_COLOR),
+            BorderFactory.createEmptyBorder(5, 10, 5, 10)
+        ));
+        
+        // Load initial books and filter them as the user types
+        installSuggestions(bookCombo, EntityCache.Kind.BOOK);
+        
+        // Set custom renderer for better appearance
+    }
+
+    // Autocomplete for an editable lookup combo. Keystrokes restart a short timer; once
+    // typing pauses, the top suggestions from the in-memory index replace the combo's
+    // model in a single swap instead of one addItem (and one model event) per entry.
+    private static void installSuggestions(JComboBox<LookupItem> combo, EntityCache.Kind kind) {
+        JTextField editor = (JTextField) combo.getEditor().getEditorComponent();
+        
+        Timer debounce = new Timer(SUGGESTION_DELAY_MS, e -> {
+            String searchText = editor.getText();
+            int caret = editor.getCaretPosition();
             
-            // Get the editor component (the text field)
-            JTextField editor = (JTextField) bookCombo.getEditor().getEditorComponent();
-            editor.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(BORDER_COLOR),
-                BorderFactory.createEmptyBorder(5, 10, 5, 10)
-            ));
+            DefaultComboBoxModel<LookupItem> model = new DefaultComboBoxModel<>(
+                new Vector<>(EntityCache.suggest(kind, searchText, SUGGESTION_LIMIT)));
+            // Keep the typed text in the editor instead of jumping to the first suggestion
+            model.setSelectedItem(searchText);
+            combo.setModel(model);
+            editor.setCaretPosition(Math.min(caret, editor.getText().length()));
             
-            // Add key listener for filtering
-            editor.addKeyListener(new KeyAdapter() {
-                @Override
-                public void keyReleased(KeyEvent e) {
-                    String searchText = editor.getText().toLowerCase();
-                    bookCombo.removeAllItems();
-                    
-                    try {
-                        String query = "SELECT title FROM books WHERE LOWER(title) LIKE ? ORDER BY title";
-                        PreparedStatement pstmt = connection.prepareStatement(query);
-                        pstmt.setString(1, "%" + searchText + "%");
-                        ResultSet rs = pstmt.executeQuery();
-                        
-                        while (rs.next()) {
-                            String title = rs.getString("title");
-                            bookCombo.addItem(title);
-                        }
-                        
-                        // Show dropdown when typing
-                        if (!searchText.isEmpty()) {
-                            bookCombo.showPopup();
-                        }
-                        
-                        rs.close();
-                        pstmt.close();
-                    } catch (SQLException ex) {
-                        showNotification("Error searching books: " + ex.getMessage(), ERROR_COLOR);
-                    }
+            // Show dropdown when typing
+            if (!searchText.isEmpty() && combo.isShowing()) {
+                combo.showPopup();
+            }
+        });
+        debounce.setRepeats(false);
+        
+        editor.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyReleased(KeyEvent e) {
+                // Don't filter on navigation keys
+                if (e.getKeyCode() == KeyEvent.VK_UP || 
+                    e.getKeyCode() == KeyEvent.VK_DOWN || 
+                    e.getKeyCode() == KeyEvent.VK_ENTER || 
+                    e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    return;
                 }
-            });
-            
-            // Load initial books
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT title FROM books ORDER BY title");
-            while (rs.next()) {
-                bookCombo.addItem(rs.getString("title"));
-            }
-            rs.close();
-            stmt.close();
-            
-            // Set custom renderer for better appearance
-        } catch (SQLException e) {
-            showNotification("Error loading books: " + e.getMessage(), ERROR_COLOR);
-        }
+                debounce.restart();
+            }
+        });
+        
+        combo.setModel(new DefaultComboBoxModel<>(
+            new Vector<>(EntityCache.suggest(kind, "", SUGGESTION_LIMIT))));
     }
 
     // Helper method to create styled buttons
@@ -2470,6 +2728,7 @@ public class BookstoreManagementSystem {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value,
                     boolean isSelected, boolean hasFocus, int row, int column) {
+                // Money cells show Money.toString(), formatted once per value rather than per paint
                 Component comp = super.getTableCellRendererComponent(table, value, isSelected,
                         hasFocus, row, column);
                 
@@ -2484,11 +2743,6 @@ public class BookstoreManagementSystem {
                 // Center align all cells
                 setHorizontalAlignment(JLabel.CENTER);
                 
-                // Format specific column types
-                if (value instanceof Double) {
-                    setText(String.format("$%.2f", (Double) value));
-                }
-                
                 return comp;
             }
         };
@@ -2498,35 +2752,8 @@ public class BookstoreManagementSystem {
         // Add shadow to table
         table.setBorder(BorderFactory.createLineBorder(SHADOW_COLOR, 1));
         
-        // Add mouse listener for better UX
-        table.addMouseListener(new java.awt.event.MouseAdapter() {
-            @Override
-            public void mouseClicked(java.awt.event.MouseEvent evt) {
-                if (evt.getClickCount() == 2) { // Double-click
-                    int row = table.getSelectedRow();
-                    if (row >= 0) {
-                        // Get the model from the table
-                        DefaultTableModel model = (DefaultTableModel) table.getModel();
-                        // Show edit dialog for the selected row
-                        showEditBookDialog(model, row);
-                    }
-                }
-            }
-        });
-        
         // Add keyboard navigation
         table.setFocusTraversalKeysEnabled(false);
-        table.registerKeyboardAction(
-            e -> {
-                int selectedRow = table.getSelectedRow();
-                if (selectedRow >= 0) {
-                    DefaultTableModel model = (DefaultTableModel) table.getModel();
-                    showEditBookDialog(model, selectedRow);
-                }
-            },
-            KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0),
-            JComponent.WHEN_FOCUSED
-        );
     }
 
     // Add this method to create consistent panel styling
@@ -2618,40 +2845,39 @@ public class BookstoreManagementSystem {
     }
     
     // Add this method to search books
-    private static void searchBooks(DefaultTableModel model, String searchText) {
-        model.setRowCount(0);
+    private static void searchBooks(PagedTableModel model, String searchText, BookSearchIndex.Filters filters) {
+        if (BookSearchIndex.toMatchQuery(searchText).isEmpty()) {
+            // Range filters only: keep key order and let the books table serve the predicate
+            List<Object> params = new ArrayList<>();
+            String clause = filters.clause(params);
+            model.setFilter(clause, params.toArray());
+        } else {
+            model.setKeys(context -> BookSearchIndex.search(context.connection(), searchText, filters, context));
+        }
+    }
+
+    private static Long parseOptionalPrice(String text) {
+        return text.trim().isEmpty() ? null : Money.parseCents(text);
+    }
+
+    // The date as stored (ISO yyyy-MM-dd), or null when blank
+    private static String parseOptionalDate(String text) throws java.text.ParseException {
+        return IsoDates.normalize(text);
+    }
+
+    // The field's date as stored; null, after a warning, when it is blank or not a date
+    private static String parseRequiredDate(JTextField field, String label) {
         try {
-            String query = "SELECT b.book_id, b.title, a.name, b.genre, b.price, b.publication_date " +
-                           "FROM books b JOIN authors a ON b.author_id = a.author_id " +
-                           "WHERE LOWER(b.title) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(b.genre) LIKE ? " +
-                           "OR CAST(b.price AS TEXT) LIKE ? OR b.publication_date LIKE ? " +
-                           "ORDER BY b.title";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            String searchPattern = "%" + searchText.toLowerCase() + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            pstmt.setString(4, searchPattern);
-            pstmt.setString(5, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("book_id"));
-                row.add(rs.getString("title"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("genre"));
-                row.add(rs.getDouble("price"));
-                row.add(rs.getString("publication_date"));
-                model.addRow(row);
+            String date = IsoDates.normalize(field.getText());
+            if (date != null) {
+                return date;
             }
-            
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error searching books: " + e.getMessage(), ERROR_COLOR);
+        } catch (java.text.ParseException ex) {
+            // Warned below
         }
+        showNotification(label + " must be a date in YYYY-MM-DD form", WARNING_COLOR);
+        field.requestFocus();
+        return null;
     }
 
     // Add these helper methods
@@ -2686,8 +2912,8 @@ public class BookstoreManagementSystem {
         return field;
     }
 
-    private static JComboBox<String> createStyledComboBox() {
-        JComboBox<String> combo = new JComboBox<>();
+    private static <T> JComboBox<T> createStyledComboBox() {
+        JComboBox<T> combo = new JComboBox<>();
         combo.setFont(REGULAR_FONT);
         combo.setPreferredSize(new Dimension(200, COMPONENT_HEIGHT));
         combo.setBackground(Color.WHITE);
@@ -2707,22 +2933,67 @@ public class BookstoreManagementSystem {
         return combo;
     }
 
-    private static double getBookPrice(String bookTitle) {
-        double price = 0.0;
-        try {
-            String query = "SELECT price FROM books WHERE title=?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setString(1, bookTitle);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                price = rs.getDouble("price");
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error getting book price: " + e.getMessage(), ERROR_COLOR);
+    // An edit form's values as it loaded them and the row version they came from; a save is
+    // checked against the version, and after a conflict the values are the base of the merge
+    private static final class LoadedVersion {
+        Object[] values;
+        int version;
+
+        LoadedVersion(Object[] values, int version) {
+            this.values = values;
+            this.version = version;
+        }
+    }
+
+    // A save lost to one made at another terminal. Lists what the other terminal changed and
+    // asks whether to merge (keep this form's changes, take the stored values for the rest) or
+    // reload; returns CONFLICT_MERGE, CONFLICT_RELOAD or -1 to go back to the form unchanged.
+    // When the row is gone there is nothing to save, and the dialog is closed.
+    private static int askConflict(JDialog dialog, RowVersions.ConflictException conflict, String[] labels,
+                                   Object[] base, Object[] mine) {
+        if (conflict.deleted()) {
+            JOptionPane.showMessageDialog(dialog, conflict.getMessage() + ".", "Edit Conflict",
+                JOptionPane.WARNING_MESSAGE);
+            dialog.dispose();
+            return -1;
+        }
+        StringBuilder message = new StringBuilder(conflict.getMessage()).append(".\n");
+        for (int i = 0; i < labels.length; i++) {
+            if (!Objects.equals(base[i], conflict.current[i])) {
+                message.append("\n").append(labels[i]).append(": now ").append(formValue(conflict.current[i]));
+                if (RowVersions.overlapping(base, mine, conflict.current).contains(i)) {
+                    message.append(" (merging keeps yours, ").append(formValue(mine[i])).append(")");
+                }
+            }
+        }
+        message.append("\n\nMerge keeps your changes and takes the other terminal's for everything else;")
+               .append("\nReload discards your changes. Either way, check the form and save again.");
+        Object[] options = {"Merge", "Reload", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(dialog, message.toString(), "Edit Conflict",
+            JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[0]);
+        return choice == CONFLICT_MERGE || choice == CONFLICT_RELOAD ? choice : -1;
+    }
+
+    // askConflict for a form whose fields are all in the conflicting row: returns the values
+    // to put in the form, now based on the stored row, or null to leave the form as it is
+    private static Object[] resolveConflict(JDialog dialog, RowVersions.ConflictException conflict, String[] labels,
+                                            LoadedVersion loaded, Object[] mine) {
+        int choice = askConflict(dialog, conflict, labels, loaded.values, mine);
+        if (choice < 0) {
+            return null;
+        }
+        Object[] values = choice == CONFLICT_MERGE ? RowVersions.merge(loaded.values, mine, conflict.current)
+                                                   : conflict.current;
+        loaded.values = conflict.current;
+        loaded.version = conflict.currentVersion;
+        return values;
+    }
+
+    private static String formValue(Object value) {
+        if (value == null || "".equals(value)) {
+            return "(empty)";
         }
-        return price;
+        return value instanceof Money ? ((Money) value).plain() : "\"" + value + "\"";
     }
 
     private static int showConfirmDialog(String message, String title) {
@@ -2772,8 +3043,16 @@ public class BookstoreManagementSystem {
         return result[0];
     }
 
-    private static void exportReport(String title, DefaultTableModel model, String[] columnNames) {
-        JDialog dialog = new JDialog(frame, "Export Report", true);
+    // Export everything a table model currently shows, straight from the database
+    private static void exportTable(String title, PagedTableModel model) {
+        List<Object> params = new ArrayList<>();
+        String query = model.exportQuery(params);
+        exportToFile(title, model.getColumnNames(), query, params.toArray());
+    }
+
+    // Ask for a target file, then stream the query's rows into it on the data thread
+    private static void exportToFile(String title, String[] columnNames, String query, Object[] params) {
+        JDialog dialog = new JDialog(frame, "Export " + title, true);
         dialog.setLayout(new BorderLayout(PADDING, PADDING));
         dialog.getContentPane().setBackground(BACKGROUND_COLOR);
         
@@ -2788,18 +3067,19 @@ public class BookstoreManagementSystem {
         JButton browseButton = createStyledButton("Browse", null);
         browseButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Export Report");
+            fileChooser.setDialogTitle("Export " + title);
             
-            // Create a custom file filter for CSV
+            // Create a custom file filter for CSV, optionally gzip-compressed
             fileChooser.setFileFilter(new FileFilter() {
                 @Override
                 public boolean accept(File f) {
-                    return f.isDirectory() || f.getName().toLowerCase().endsWith(".csv");
+                    String name = f.getName().toLowerCase();
+                    return f.isDirectory() || name.endsWith(".csv") || name.endsWith(".csv.gz");
                 }
                 
                 @Override
                 public String getDescription() {
-                    return "CSV Files (*.csv)";
+                    return "CSV Files (*.csv, *.csv.gz)";
                 }
             });
             
@@ -2809,7 +3089,7 @@ public class BookstoreManagementSystem {
                 String filePath = file.getAbsolutePath();
                 
                 // Add extension if not provided
-                if (!filePath.toLowerCase().endsWith(".csv")) {
+                if (!filePath.toLowerCase().endsWith(".csv") && !filePath.toLowerCase().endsWith(".csv.gz")) {
                     filePath += ".csv";
                 }
                 
@@ -2835,13 +3115,11 @@ public class BookstoreManagementSystem {
                 return;
             }
             
-            try {
-                exportToCSV(new File(filePath), model, columnNames);
-                showNotification("Report exported successfully", SECONDARY_COLOR);
-                dialog.dispose();
-            } catch (IOException ex) {
-                showNotification("Error exporting report: " + ex.getMessage(), ERROR_COLOR);
-            }
+            dialog.dispose();
+            DataAccessExecutor.submitRead("export", "Exporting " + title,
+                context -> CsvExporter.export(context.connection(), query, params, columnNames, new File(filePath), context),
+                rows -> showNotification("Exported " + rows + " rows to " + new File(filePath).getName(), SECONDARY_COLOR),
+                ex -> showNotification("Error exporting " + title + ": " + ex.getMessage(), ERROR_COLOR));
         });
         
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -2859,7 +3137,45 @@ public class BookstoreManagementSystem {
         dialog.setVisible(true);
     }
 
-    private static JPanel createBottomPanel(DefaultTableModel model, JTable table, String type) {
+    // Pick a CSV or JSONL file and bulk-import it on the data thread; rejected rows
+    // are listed in a .rejects.csv file next to it
+    private static void importFromFile(String title, BulkImporter.Kind kind, Runnable onImported) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import " + title);
+        fileChooser.setFileFilter(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                String name = f.getName().toLowerCase();
+                if (name.endsWith(".gz")) {
+                    name = name.substring(0, name.length() - 3);
+                }
+                return f.isDirectory() || name.endsWith(".csv") || name.endsWith(".jsonl") || name.endsWith(".ndjson");
+            }
+
+            @Override
+            public String getDescription() {
+                return "CSV or JSON Lines Files (*.csv, *.jsonl, optionally .gz)";
+            }
+        });
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = fileChooser.getSelectedFile();
+        DataAccessExecutor.submit("import", "Importing " + title,
+            context -> {
+                return BulkImporter.importFile(connection, kind, file, BulkImporter.DEFAULT_COMMIT_SIZE, context);
+            },
+            result -> {
+                onImported.run();
+                // New authors, customers and books must show up in the combo boxes
+                reloadLookups(() -> { });
+                showNotification(result.toString(), result.rejected > 0 ? WARNING_COLOR : SECONDARY_COLOR);
+            },
+            ex -> showNotification("Error importing " + title + ": " + ex.getMessage(), ERROR_COLOR));
+    }
+
+    private static JPanel createBottomPanel(PagedTableModel model, JTable table, String type) {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(Color.WHITE);
         panel.setBorder(BorderFactory.createEmptyBorder(PADDING, PADDING, PADDING, PADDING));
@@ -2872,6 +3188,9 @@ public class BookstoreManagementSystem {
         JButton addButton = createStyledButton("Add " + type.substring(0, 1).toUpperCase() + type.substring(1), null);
         JButton editButton = createStyledButton("Edit " + type.substring(0, 1).toUpperCase() + type.substring(1), null);
         JButton deleteButton = createStyledButton("Delete " + type.substring(0, 1).toUpperCase() + type.substring(1), null);
+        JButton exportButton = createStyledButton("Export", null);
+        exportButton.setToolTipText("Export the listed " + type + "s to CSV (.csv or .csv.gz)");
+        exportButton.addActionListener(e -> exportTable(type.substring(0, 1).toUpperCase() + type.substring(1) + "s", model));
 
         // Add action listeners
         refreshButton.addActionListener(e -> {
@@ -2891,13 +3210,13 @@ public class BookstoreManagementSystem {
         addButton.addActionListener(e -> {
             switch (type) {
                 case "author":
-                    showAddAuthorDialog(model);
+                    showAddAuthorDialog();
                     break;
                 case "customer":
-                    showAddCustomerDialog(model);
+                    showAddCustomerDialog();
                     break;
                 case "order":
-                    showAddOrderDialog(model);
+                    showAddOrderDialog();
                     break;
             }
         });
@@ -2913,7 +3232,7 @@ public class BookstoreManagementSystem {
                         showEditCustomerDialog(model, selectedRow);
                         break;
                     case "order":
-                        int orderId = (int) model.getValueAt(selectedRow, 0);
+                        int orderId = model.getKeyAt(selectedRow);
                         showOrderDetailsDialog(orderId);
                         break;
                 }
@@ -2925,16 +3244,16 @@ public class BookstoreManagementSystem {
         deleteButton.addActionListener(e -> {
             int selectedRow = table.getSelectedRow();
             if (selectedRow >= 0) {
-                int id = (int) model.getValueAt(selectedRow, 0);
+                int id = model.getKeyAt(selectedRow);
                 switch (type) {
                     case "author":
-                        deleteAuthor(id, model);
+                        deleteAuthor(id);
                         break;
                     case "customer":
-                        deleteCustomer(id, model);
+                        deleteCustomer(id);
                         break;
                     case "order":
-                        deleteOrder(id, model);
+                        deleteOrder(id);
                         break;
                 }
             } else {
@@ -2946,6 +3265,21 @@ public class BookstoreManagementSystem {
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(exportButton);
+
+        // Bulk import for customers and orders; authors are created by book imports
+        if (!type.equals("author")) {
+            JButton importButton = createStyledButton("Import", null);
+            importButton.setToolTipText("Import " + type + "s from CSV or JSONL");
+            importButton.addActionListener(e -> {
+                if (type.equals("customer")) {
+                    importFromFile("Customers", BulkImporter.Kind.CUSTOMERS, () -> refreshCustomersTable(model));
+                } else {
+                    importFromFile("Orders", BulkImporter.Kind.ORDERS, () -> refreshOrdersTable(model));
+                }
+            });
+            buttonPanel.add(importButton);
+        }
 
         panel.add(buttonPanel, BorderLayout.WEST);
 
@@ -2957,10 +3291,27 @@ public class BookstoreManagementSystem {
         searchField.setPreferredSize(new Dimension(200, COMPONENT_HEIGHT));
         searchField.setToolTipText("Search " + type + "s");
 
+        // Orders can also be limited to a period of order dates
+        JTextField fromDateField = createStyledTextField();
+        JTextField toDateField = createStyledTextField();
+        fromDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        toDateField.setPreferredSize(new Dimension(110, COMPONENT_HEIGHT));
+        fromDateField.setToolTipText("From order date (YYYY-MM-DD)");
+        toDateField.setToolTipText("To order date (YYYY-MM-DD)");
+
         JButton searchButton = createStyledButton("Search", null);
         searchButton.addActionListener(e -> {
             String searchText = searchField.getText().trim();
-            if (!searchText.isEmpty()) {
+            String fromDate;
+            String toDate;
+            try {
+                fromDate = parseOptionalDate(fromDateField.getText());
+                toDate = parseOptionalDate(toDateField.getText());
+            } catch (java.text.ParseException ex) {
+                showNotification("Invalid date format. Please use YYYY-MM-DD", WARNING_COLOR);
+                return;
+            }
+            if (!searchText.isEmpty() || fromDate != null || toDate != null) {
                 switch (type) {
                     case "author":
                         searchAuthors(model, searchText);
@@ -2969,7 +3320,7 @@ public class BookstoreManagementSystem {
                         searchCustomers(model, searchText);
                         break;
                     case "order":
-                        searchOrders(model, searchText);
+                        searchOrders(model, searchText, fromDate, toDate);
                         break;
                 }
             } else {
@@ -2987,6 +3338,12 @@ public class BookstoreManagementSystem {
             }
         });
 
+        if (type.equals("order")) {
+            searchPanel.add(new JLabel("Ordered:"));
+            searchPanel.add(fromDateField);
+            searchPanel.add(new JLabel("to"));
+            searchPanel.add(toDateField);
+        }
         searchPanel.add(new JLabel("Search:"));
         searchPanel.add(searchField);
         searchPanel.add(searchButton);
@@ -2996,159 +3353,77 @@ public class BookstoreManagementSystem {
         return panel;
     }
 
-    private static void updateTotalAmount(DefaultTableModel model, JDialog dialog) {
-        double total = 0;
+    // Order total in cents
+    private static long calculateTotalAmount(DefaultTableModel model) {
+        long total = 0;
         for (int i = 0; i < model.getRowCount(); i++) {
-            total += (double) model.getValueAt(i, 3); // Subtotal column
-        }
-        
-        // Find the total label in the dialog
-        for (Component comp : dialog.getContentPane().getComponents()) {
-            if (comp instanceof JPanel) {
-                JPanel panel = (JPanel) comp;
-                for (Component innerComp : panel.getComponents()) {
-                    if (innerComp instanceof JPanel) {
-                        JPanel buttonPanel = (JPanel) innerComp;
-                        for (Component buttonComp : buttonPanel.getComponents()) {
-                            if (buttonComp instanceof JLabel) {
-                                JLabel label = (JLabel) buttonComp;
-                                if (label.getText().startsWith("Total:")) {
-                                    label.setText(String.format("Total: $%.2f", total));
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+            total += ((Money) model.getValueAt(i, 3)).cents; // Subtotal column
         }
+        return total;
     }
 
-    private static double calculateTotalAmount(DefaultTableModel model) {
-        double total = 0;
+    // Snapshot of a dialog's item rows as {book, quantity, unitPrice, orderItemId} that the data
+    // thread can read safely; the id is null for lines not yet stored
+    private static List<Object[]> orderItemRows(DefaultTableModel model) {
+        List<Object[]> rows = new ArrayList<>();
         for (int i = 0; i < model.getRowCount(); i++) {
-            total += (double) model.getValueAt(i, 3); // Subtotal column
+            Object itemId = model.getColumnCount() > 4 ? model.getValueAt(i, 4) : null;
+            rows.add(new Object[] {model.getValueAt(i, 0), model.getValueAt(i, 1), model.getValueAt(i, 2), itemId});
         }
-        return total;
+        return rows;
     }
 
-    private static void insertOrderItems(DefaultTableModel model, int orderId) throws SQLException {
-        String query = "INSERT INTO order_items (order_id, book_id, quantity, unit_price) VALUES (?, ?, ?, ?)";
-        PreparedStatement pstmt = connection.prepareStatement(query);
-
-        for (int i = 0; i < model.getRowCount(); i++) {
-            String bookTitle = (String) model.getValueAt(i, 0);
-            int quantity = (int) model.getValueAt(i, 1);
-            double unitPrice = (double) model.getValueAt(i, 2);
-
-            int bookId = getBookId(bookTitle);
-            pstmt.setInt(1, orderId);
-            pstmt.setInt(2, bookId);
-            pstmt.setInt(3, quantity);
-            pstmt.setDouble(4, unitPrice);
-            pstmt.executeUpdate();
+    // Re-apply a dialog's line edits ({book, quantity, unitPrice, orderItemId}, as orderItemRows
+    // gives them), relative to the quantities it loaded, to the order's stored lines (item model
+    // rows): lines it removed stay removed, quantities it changed win and lines it added are
+    // appended. Lines deleted at the other terminal stay deleted.
+    private static List<Object[]> mergeOrderLines(Map<Integer, Integer> loadedQuantities, List<Object[]> edited,
+                                                  List<Object[]> stored) {
+        Map<Integer, Integer> editedQuantities = new HashMap<>();
+        for (Object[] line : edited) {
+            if (line[3] != null) {
+                editedQuantities.put((Integer) line[3], ((Number) line[1]).intValue());
+            }
         }
-        pstmt.close();
-    }
-
-    private static void exportToCSV(File file, DefaultTableModel model, String[] columnNames) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-            // Write header
-            writer.println(String.join(",", columnNames));
-
-            // Write data
-            for (int i = 0; i < model.getRowCount(); i++) {
-                StringBuilder row = new StringBuilder();
-                for (int j = 0; j < model.getColumnCount(); j++) {
-                    if (j > 0) row.append(",");
-                    Object value = model.getValueAt(i, j);
-                    if (value instanceof String) {
-                        row.append("\"").append(value).append("\"");
-                    } else {
-                        row.append(value);
-                    }
-                }
-                writer.println(row.toString());
+        List<Object[]> merged = new ArrayList<>();
+        for (Object[] line : stored) {
+            Integer itemId = (Integer) line[4];
+            Integer loadedQuantity = loadedQuantities.get(itemId);
+            Integer editedQuantity = editedQuantities.get(itemId);
+            if (loadedQuantity != null && editedQuantity == null) {
+                continue;
+            }
+            if (editedQuantity != null && !editedQuantity.equals(loadedQuantity)) {
+                Money unitPrice = (Money) line[2];
+                line = new Object[] {line[0], editedQuantity, unitPrice, unitPrice.times(editedQuantity), itemId};
+            }
+            merged.add(line);
+        }
+        for (Object[] line : edited) {
+            if (line[3] == null) {
+                Money unitPrice = (Money) line[2];
+                int quantity = ((Number) line[1]).intValue();
+                merged.add(new Object[] {line[0], quantity, unitPrice, unitPrice.times(quantity), null});
             }
         }
+        return merged;
     }
 
-    private static void searchAuthors(DefaultTableModel model, String searchText) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT * FROM authors WHERE LOWER(name) LIKE ? OR LOWER(birth_date) LIKE ?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            String searchPattern = "%" + searchText.toLowerCase() + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("author_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("birth_date"));
-                model.addRow(row);
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error searching authors: " + e.getMessage(), ERROR_COLOR);
-        }
+    private static void searchAuthors(PagedTableModel model, String searchText) {
+        String searchPattern = "%" + searchText.toLowerCase() + "%";
+        model.setFilter("LOWER(name) LIKE ? OR LOWER(birth_date) LIKE ?", searchPattern, searchPattern);
     }
 
-    private static void searchCustomers(DefaultTableModel model, String searchText) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT * FROM customers WHERE LOWER(name) LIKE ? OR LOWER(email) LIKE ? OR LOWER(phone) LIKE ?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            String searchPattern = "%" + searchText.toLowerCase() + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("customer_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("email"));
-                row.add(rs.getString("phone"));
-                model.addRow(row);
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error searching customers: " + e.getMessage(), ERROR_COLOR);
-        }
+    private static void searchCustomers(PagedTableModel model, String searchText) {
+        String searchPattern = "%" + searchText.toLowerCase() + "%";
+        model.setFilter("LOWER(name) LIKE ? OR LOWER(email) LIKE ? OR LOWER(phone) LIKE ?",
+                        searchPattern, searchPattern, searchPattern);
     }
 
-    private static void searchOrders(DefaultTableModel model, String searchText) {
-        model.setRowCount(0);
-        try {
-            String query = "SELECT o.order_id, c.name, o.order_date, o.total_amount " +
-                         "FROM orders o JOIN customers c ON o.customer_id = c.customer_id " +
-                         "WHERE LOWER(c.name) LIKE ? OR LOWER(o.order_date) LIKE ? " +
-                         "OR CAST(o.total_amount AS TEXT) LIKE ?";
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            String searchPattern = "%" + searchText.toLowerCase() + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("order_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("order_date"));
-                row.add(rs.getDouble("total_amount"));
-                model.addRow(row);
-            }
-            rs.close();
-            pstmt.close();
-        } catch (SQLException e) {
-            showNotification("Error searching orders: " + e.getMessage(), ERROR_COLOR);
-        }
+    // Text matches the customer, date or total; null date bounds are open
+    private static void searchOrders(PagedTableModel model, String searchText, String fromDate, String toDate) {
+        List<Object> params = new ArrayList<>();
+        String clause = BookstoreService.orderFilter(searchText, fromDate, toDate, params);
+        model.setFilter(clause, params.toArray());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,354 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import Book.EntityCache.LookupItem;
+
+// Bookstore operations shared by the Swing client and the HTTP API (ApiServer):
+// the book and order lists, search, placing an order and the sales reports.
+// Like the rest of the data layer every method runs on the connection it is
+// given and knows nothing about threads; the UI passes its DataAccessExecutor
+// context's connection, the API a pooled reader or the writer. Bad input
+// (an unknown book, a malformed date) raises IllegalArgumentException.
+final class BookstoreService {
+    static final int MAX_PAGE = 500;
+
+    // The book list: the Books tab's PagedTableModel and the catalog endpoint. Rows end
+    // with the row version (see RowVersions), after the columns shown.
+    static final String[] BOOK_COLUMNS = {"ID", "Title", "Author", "Genre", "Price", "Publication Date"};
+    static final String BOOK_SELECT = "b.book_id, b.title, a.name, b.genre, b.price_cents, b.publication_date, b.version";
+    static final String BOOK_FROM = "books b JOIN authors a ON b.author_id = a.author_id";
+    static final String BOOK_KEY = "b.book_id";
+
+    // The order list, likewise
+    static final String[] ORDER_COLUMNS = {"Order ID", "Customer", "Order Date", "Total Amount"};
+    static final String ORDER_SELECT = "o.order_id, c.name, o.order_date, o.total_cents, o.version";
+    static final String ORDER_FROM = "orders o JOIN customers c ON o.customer_id = c.customer_id";
+    static final String ORDER_KEY = "o.order_id";
+
+    private static final String ORDER_ITEMS_QUERY =
+        "SELECT oi.order_item_id, b.book_id, b.title, oi.quantity, oi.unit_price_cents " +
+        "FROM order_items oi JOIN books b ON oi.book_id = b.book_id WHERE oi.order_id = ? ORDER BY oi.order_item_id";
+
+    // The sales reports. Over all history they read the running totals in SalesSummary;
+    // for a period of order dates they aggregate that period's orders.
+    enum Report {
+        SALES_BY_GENRE("Sales by Genre", "sales-by-genre",
+            new String[] {"Genre", "Total Quantity Sold"}, new String[] {"genre", "quantity"},
+            SalesSummary.SALES_BY_GENRE_QUERY, SalesSummary.SALES_BY_GENRE_PERIOD_QUERY,
+            rs -> new Object[] {rs.getString("genre"), rs.getInt("total_quantity")}),
+        TOP_SELLING_BOOKS("Top Selling Books", "top-selling-books",
+            new String[] {"Book Title", "Author", "Total Quantity Sold"}, new String[] {"title", "author", "quantity"},
+            SalesSummary.TOP_SELLING_BOOKS_QUERY, SalesSummary.TOP_SELLING_BOOKS_PERIOD_QUERY,
+            rs -> new Object[] {rs.getString("title"), rs.getString("name"), rs.getInt("total_quantity")}),
+        CUSTOMER_SPENDING("Customer Spending", "customer-spending",
+            new String[] {"Customer Name", "Total Amount Spent"}, new String[] {"customer", "totalSpentCents"},
+            SalesSummary.CUSTOMER_SPENDING_QUERY, SalesSummary.CUSTOMER_SPENDING_PERIOD_QUERY,
+            rs -> new Object[] {rs.getString("name"), Money.ofCents(rs.getLong("total_spent_cents"))});
+
+        final String title;
+        final String path;
+        final String[] columns;
+        final String[] fields; // JSON field names
+        private final String allQuery;
+        private final String periodQuery;
+        final PagedTableModel.RowMapper mapper;
+
+        Report(String title, String path, String[] columns, String[] fields, String allQuery, String periodQuery,
+               PagedTableModel.RowMapper mapper) {
+            this.title = title;
+            this.path = path;
+            this.columns = columns;
+            this.fields = fields;
+            this.allQuery = allQuery;
+            this.periodQuery = periodQuery;
+            this.mapper = mapper;
+        }
+
+        // The statement for the given period() parameters
+        String query(Object[] period) {
+            return period.length == 0 ? allQuery : periodQuery;
+        }
+
+        static Report byTitle(String title) {
+            for (Report report : values()) {
+                if (report.title.equals(title)) {
+                    return report;
+                }
+            }
+            throw new IllegalArgumentException("Unknown report: " + title);
+        }
+
+        static Report byPath(String path) {
+            for (Report report : values()) {
+                if (report.path.equals(path)) {
+                    return report;
+                }
+            }
+            throw new IllegalArgumentException("Unknown report: " + path);
+        }
+    }
+
+    private BookstoreService() {
+    }
+
+    static Object[] bookRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+            rs.getInt("book_id"),
+            rs.getString("title"),
+            rs.getString("name"),
+            rs.getString("genre"),
+            Money.ofCents(rs.getLong("price_cents")),
+            rs.getString("publication_date"),
+            rs.getInt("version")
+        };
+    }
+
+    static Object[] orderRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+            rs.getInt("order_id"),
+            rs.getString("name"),
+            rs.getString("order_date"),
+            Money.ofCents(rs.getLong("total_cents")),
+            rs.getInt("version")
+        };
+    }
+
+    // Up to limit books with ids above afterId, in id order
+    static List<Object[]> books(Connection connection, int afterId, int limit) throws SQLException {
+        return query(connection, "SELECT " + BOOK_SELECT + " FROM " + BOOK_FROM + " WHERE " + BOOK_KEY + " > ?" +
+                     " ORDER BY " + BOOK_KEY + " LIMIT ?", BookstoreService::bookRow, afterId, pageSize(limit));
+    }
+
+    // One book row, or null if there is no such book
+    static Object[] book(Connection connection, int bookId) throws SQLException {
+        List<Object[]> rows = query(connection, "SELECT " + BOOK_SELECT + " FROM " + BOOK_FROM +
+                                    " WHERE " + BOOK_KEY + " = ?", BookstoreService::bookRow, bookId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Books matching the text, best match first, within the filters' ranges. Blank text
+    // lists the books in the ranges in id order.
+    static List<Object[]> searchBooks(Connection connection, String text, BookSearchIndex.Filters filters,
+                                      int limit, DataAccessExecutor.Context context) throws SQLException {
+        if (BookSearchIndex.toMatchQuery(text).isEmpty()) {
+            List<Object> params = new ArrayList<>();
+            String clause = filters.clause(params);
+            params.add(pageSize(limit));
+            return query(connection, "SELECT " + BOOK_SELECT + " FROM " + BOOK_FROM +
+                         (clause.isEmpty() ? "" : " WHERE " + clause) + " ORDER BY " + BOOK_KEY + " LIMIT ?",
+                         BookstoreService::bookRow, params.toArray());
+        }
+        int[] ids = BookSearchIndex.search(connection, text, filters, pageSize(limit), context);
+        return rowsByKey(connection, BOOK_SELECT, BOOK_FROM, BOOK_KEY, ids, BookstoreService::bookRow);
+    }
+
+    // Predicate over the order list: text matches the customer, date or total; the date bounds
+    // (null for open) are an index range over order_date, as ISO dates compare in date order
+    static String orderFilter(String text, String fromDate, String toDate, List<Object> params) {
+        List<String> predicates = new ArrayList<>();
+        if (text != null && !text.isEmpty()) {
+            String pattern = "%" + text.toLowerCase() + "%";
+            predicates.add("(LOWER(c.name) LIKE ? OR o.order_date LIKE ? " +
+                           "OR printf('%.2f', o.total_cents / 100.0) LIKE ?)");
+            params.add(pattern);
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (fromDate != null) {
+            predicates.add("o.order_date >= ?");
+            params.add(fromDate);
+        }
+        if (toDate != null) {
+            predicates.add("o.order_date <= ?");
+            params.add(toDate);
+        }
+        return String.join(" AND ", predicates);
+    }
+
+    // Up to limit orders dated fromDate..toDate (null for open) matching orderFilter's text, in
+    // order of date then id, after the (afterDate, afterId) position of the previous page's last
+    // row (afterDate null for the first page). Bounding order_date on both ends makes every page
+    // a range walk over idx_orders_order_date that LIMIT stops early; pages keyed by id would
+    // sort the whole date range first. Orders without a date are not listed.
+    static List<Object[]> ordersByDate(Connection connection, String afterDate, int afterId, int limit,
+                                       String text, String fromDate, String toDate) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        params.add(fromDate != null ? fromDate : IsoDates.MIN);
+        params.add(toDate != null ? toDate : IsoDates.MAX);
+        String cursor = "";
+        if (afterDate != null) {
+            cursor = " AND (o.order_date, o.order_id) > (?, ?)";
+            params.add(afterDate);
+            params.add(afterId);
+        }
+        String clause = orderFilter(text, null, null, params);
+        params.add(pageSize(limit));
+        return query(connection, "SELECT " + ORDER_SELECT + " FROM " + ORDER_FROM +
+                     " WHERE o.order_date >= ? AND o.order_date <= ?" + cursor +
+                     (clause.isEmpty() ? "" : " AND " + clause) + " ORDER BY o.order_date, " + ORDER_KEY + " LIMIT ?",
+                     BookstoreService::orderRow, params.toArray());
+    }
+
+    // One order row, or null if there is no such order
+    static Object[] order(Connection connection, int orderId) throws SQLException {
+        List<Object[]> rows = query(connection, "SELECT " + ORDER_SELECT + " FROM " + ORDER_FROM +
+                                    " WHERE " + ORDER_KEY + " = ?", BookstoreService::orderRow, orderId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // An order's lines as {orderItemId, bookId, title, quantity, unitPrice}
+    static List<Object[]> orderItems(Connection connection, int orderId) throws SQLException {
+        return query(connection, ORDER_ITEMS_QUERY, rs -> new Object[] {
+            rs.getInt("order_item_id"),
+            rs.getInt("book_id"),
+            rs.getString("title"),
+            rs.getInt("quantity"),
+            Money.ofCents(rs.getLong("unit_price_cents"))
+        }, orderId);
+    }
+
+    // Lines for books at their current catalog prices, as {book, quantity, unitPrice}. Prices
+    // are read from the database, not the lookup cache, since another terminal may have
+    // changed them; call it inside the transaction that saves the order.
+    static List<Object[]> catalogLines(Connection connection, int[] bookIds, int[] quantities) throws SQLException {
+        List<Object[]> lines = new ArrayList<>(bookIds.length);
+        for (int i = 0; i < bookIds.length; i++) {
+            LookupItem book = EntityCache.current(connection, EntityCache.Kind.BOOK, bookIds[i]);
+            if (book == null) {
+                throw new IllegalArgumentException("Unknown book: " + bookIds[i]);
+            }
+            lines.add(new Object[] {book, quantities[i], Money.ofCents(book.priceCents)});
+        }
+        return lines;
+    }
+
+    // Order total in cents of lines {book, quantity, unitPrice}
+    static long total(List<Object[]> lines) {
+        long total = 0;
+        for (Object[] line : lines) {
+            total = Math.addExact(total, ((Money) line[2]).times(((Number) line[1]).intValue()).cents);
+        }
+        return total;
+    }
+
+    // Store a new order of lines {book, quantity, unitPrice} in one transaction on the writer;
+    // the total is computed from the lines. Returns the new order id.
+    static int placeOrder(Connection writer, int customerId, String orderDate, List<Object[]> lines)
+            throws SQLException {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("An order needs at least one book");
+        }
+        for (Object[] line : lines) {
+            if (((Number) line[1]).intValue() <= 0) {
+                throw new IllegalArgumentException("Quantities must be positive");
+            }
+        }
+        if (orderDate == null || !IsoDates.isIso(orderDate)) {
+            throw new IllegalArgumentException("Order date must be a date in YYYY-MM-DD form");
+        }
+        // Checked in the order's transaction: the customer may have been deleted elsewhere
+        if (EntityCache.current(writer, EntityCache.Kind.CUSTOMER, customerId) == null) {
+            throw new IllegalArgumentException("Unknown customer: " + customerId);
+        }
+        return OrderWriter.insertOrder(writer, customerId, orderDate, total(lines), lines);
+    }
+
+    // {from, to} for a report limited to order dates, or no parameters for all history;
+    // blank bounds are open
+    static Object[] period(String fromDate, String toDate) throws ParseException {
+        String from = IsoDates.normalize(fromDate);
+        String to = IsoDates.normalize(toDate);
+        if (from == null && to == null) {
+            return new Object[0];
+        }
+        return new Object[] {from != null ? from : IsoDates.MIN, to != null ? to : IsoDates.MAX};
+    }
+
+    // A report's leading rows for the period (all of them for a negative limit). Results are
+    // kept in ReportCache until the next commit, so asking again on unchanged data replays rows
+    // instead of querying. The context (may be null) receives each row as it is read and can cancel.
+    static List<Object[]> report(Connection connection, Report report, Object[] period, int limit,
+                                 DataAccessExecutor.Context context) throws SQLException {
+        long dataVersion = Database.dataVersion();
+        Object[] key = Arrays.copyOf(period, period.length + 1);
+        key[period.length] = limit;
+        ReportCache.ReportResult cached = ReportCache.get(report.title, key, dataVersion);
+        if (cached != null) {
+            if (context != null) {
+                for (Object[] row : cached.rows) {
+                    context.publish(row);
+                }
+            }
+            return cached.rows;
+        }
+
+        long start = System.nanoTime();
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(report.query(period))) {
+            if (context != null) {
+                context.setStatement(pstmt);
+            }
+            for (int i = 0; i < period.length; i++) {
+                pstmt.setObject(i + 1, period[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // The summary reports come off an index in order, so stopping early skips the rest
+                while ((limit < 0 || rows.size() < limit) && rs.next()) {
+                    if (context != null && context.isCancelled()) {
+                        return rows;
+                    }
+                    Object[] row = report.mapper.map(rs);
+                    rows.add(row);
+                    if (context != null) {
+                        context.publish(row);
+                    }
+                }
+            }
+        }
+        ReportCache.put(report.title, key, new ReportCache.ReportResult(dataVersion, rows, System.nanoTime() - start));
+        return rows;
+    }
+
+    // The number of rows a page with the requested limit holds
+    static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE));
+    }
+
+    // Rows for exactly these keys, in the order given
+    private static List<Object[]> rowsByKey(Connection connection, String select, String from, String key,
+                                            int[] keys, PagedTableModel.RowMapper mapper) throws SQLException {
+        if (keys.length == 0) {
+            return new ArrayList<>();
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < keys.length; i++) {
+            json.append(i == 0 ? "" : ",").append(keys[i]);
+        }
+        return query(connection, "SELECT " + select + " FROM " + from + " JOIN json_each(?) ranked ON " + key +
+                     " = ranked.value ORDER BY ranked.key", mapper, json.append(']').toString());
+    }
+
+    private static List<Object[]> query(Connection connection, String sql, PagedTableModel.RowMapper mapper,
+                                        Object... params) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,906 @@
+package Book;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+// Imports books, customers or orders from CSV (RFC 4180, header row) or JSONL
+// files, optionally gzip-compressed. Three stages run concurrently, handing
+// chunks of records over bounded queues: a parser thread reads the file, a
+// validator thread checks and converts each record's fields, and the calling
+// thread resolves names to ids and writes batched inserts, committing every
+// commitSize rows. Invalid records go to <name>.rejects.csv with the reason
+// instead of stopping the import. Authors are matched by name (ignoring case)
+// and created when missing; orders must name existing customers and books.
+// Committed batches stay in place if the import fails or is cancelled part way.
+final class BulkImporter {
+    static final int DEFAULT_COMMIT_SIZE = 10_000;
+    private static final int CHUNK_SIZE = 1024;
+    private static final int QUEUE_CHUNKS = 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Import files are assumed to hold at least one row per this many bytes
+    private static final int MAX_BYTES_PER_ROW = 100;
+    // Smaller imports keep the indexes; rebuilding would not pay off
+    private static final long MIN_DEFERRED_INDEX_ROWS = 50_000;
+
+    enum Kind {
+        BOOKS(new String[] {"title", "author", "price"}, "books"),
+        CUSTOMERS(new String[] {"name"}, "customers"),
+        ORDERS(new String[] {"order_ref", "customer", "order_date", "title", "quantity"}, "orders", "order_items");
+
+        // Columns a CSV file must have; JSONL orders carry their lines in an "items" array instead
+        final String[] requiredColumns;
+        final String[] tables;
+
+        Kind(String[] requiredColumns, String... tables) {
+            this.requiredColumns = requiredColumns;
+            this.tables = tables;
+        }
+    }
+
+    static final class Result {
+        final Kind kind;
+        long read;
+        long imported;
+        long rejected;
+        long authorsCreated;
+        long elapsedNanos;
+        boolean indexesDeferred;
+        boolean cancelled;
+        File rejectsFile;
+
+        private Result(Kind kind) {
+            this.kind = kind;
+        }
+
+        double rowsPerSecond() {
+            return elapsedNanos > 0 ? imported * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %,d of %,d %s rows in %.2fs (%,.0f rows/s), %,d rejected%s%s",
+                                 cancelled ? "Cancelled after importing" : "Imported", imported, read,
+                                 kind.name().toLowerCase(), elapsedNanos / 1e9, rowsPerSecond(), rejected,
+                                 authorsCreated > 0 ? ", " + authorsCreated + " new authors" : "",
+                                 rejected > 0 ? " (see " + rejectsFile.getName() + ")" : "");
+        }
+    }
+
+    private BulkImporter() {
+    }
+
+    static Result importFile(Connection connection, Kind kind, File file, int commitSize,
+                             DataAccessExecutor.Context context) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Result result = new Result(kind);
+        result.rejectsFile = rejectsFile(file);
+
+        Pipe<Record> parsed = new Pipe<>();
+        Pipe<Validated> validated = new Pipe<>();
+        Parser parser = new Parser(file, kind, parsed);
+        Thread[] stages = {
+            new Thread(parser, "bulk-import-parser"),
+            new Thread(new Validator(kind, parsed, validated), "bulk-import-validator")
+        };
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        List<String> deferredIndexes = Collections.emptyList();
+        try (Rejects rejects = new Rejects(result)) {
+            connection.setAutoCommit(false);
+            deferredIndexes = dropIndexesForLargeImport(connection, kind, file);
+            result.indexesDeferred = !deferredIndexes.isEmpty();
+
+            BatchWriter writer = new BatchWriter(connection, kind, Math.max(1, commitSize), result);
+            try {
+                read:
+                for (List<Validated> chunk = validated.take(); chunk != null; chunk = validated.take()) {
+                    for (Validated item : chunk) {
+                        if (context != null && context.isCancelled()) {
+                            result.cancelled = true;
+                            break read;
+                        }
+                        result.read += item.records.size();
+                        try {
+                            if (item.error != null) {
+                                throw new Rejected(item.error);
+                            }
+                            writer.write(item);
+                        } catch (Rejected e) {
+                            rejects.write(item.records, e.getMessage());
+                        }
+                    }
+                    if (context != null) {
+                        context.progress(parser.input.count, parser.size);
+                    }
+                }
+
+                if (result.cancelled) {
+                    connection.rollback();
+                } else {
+                    writer.commit();
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                writer.close();
+            }
+        } finally {
+            for (Thread stage : stages) {
+                stage.interrupt();
+            }
+            try {
+                restoreIndexes(connection, deferredIndexes);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                result.elapsedNanos = System.nanoTime() - start;
+            }
+        }
+        return result;
+    }
+
+    // books.csv.gz -> books.rejects.csv next to the input
+    static File rejectsFile(File file) {
+        String name = file.getName();
+        if (name.toLowerCase().endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        int dot = name.lastIndexOf('.');
+        return new File(file.getAbsoluteFile().getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".rejects.csv");
+    }
+
+    // Maintaining secondary indexes row by row costs more than rebuilding them
+    // once, so when the file could at least double a target table the table's
+    // indexes are dropped here and recreated after the import.
+    // Returns the CREATE INDEX statements to restore.
+    private static List<String> dropIndexesForLargeImport(Connection connection, Kind kind, File file) throws SQLException {
+        List<String> indexes = new ArrayList<>();
+        long estimatedRows = file.length() / MAX_BYTES_PER_ROW;
+        try (Statement stmt = connection.createStatement()) {
+            for (String table : kind.tables) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    if (!rs.next() || estimatedRows < Math.max(rs.getLong(1), MIN_DEFERRED_INDEX_ROWS)) {
+                        continue;
+                    }
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(
+                        "SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL")) {
+                    pstmt.setString(1, table);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        List<String> names = new ArrayList<>();
+                        while (rs.next()) {
+                            names.add(rs.getString(1));
+                            indexes.add(rs.getString(2));
+                        }
+                        for (String name : names) {
+                            stmt.execute("DROP INDEX \"" + name + "\"");
+                        }
+                    }
+                }
+            }
+        }
+        connection.commit();
+        return indexes;
+    }
+
+    private static void restoreIndexes(Connection connection, List<String> indexes) throws SQLException {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : indexes) {
+                stmt.execute(sql);
+            }
+            stmt.execute("ANALYZE");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, Object> asFields(Map<?, ?> map) {
+        Map<String, Object> fields = new HashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            fields.put(String.valueOf(entry.getKey()).trim().toLowerCase(Locale.ROOT), entry.getValue());
+        }
+        return fields;
+    }
+
+    // One input row: a CSV record or a JSONL line, with its fields keyed by lower-cased name
+    private static final class Record {
+        final long line;
+        final String raw;
+        final Map<String, Object> fields;
+        final String error;
+
+        Record(long line, String raw, Map<String, Object> fields, String error) {
+            this.line = line;
+            this.raw = raw;
+            this.fields = fields;
+            this.error = error;
+        }
+
+        // Trimmed field value, or null when absent or blank
+        String text(String field) {
+            Object value = fields.get(field);
+            if (value == null) {
+                return null;
+            }
+            String text = value instanceof Double
+                ? BigDecimal.valueOf((Double) value).toPlainString() : value.toString().trim();
+            return text.isEmpty() ? null : text;
+        }
+    }
+
+    // Output of the validation stage: the records it came from, plus either typed
+    // insert values, an order whose names still need resolving, or the rejection reason
+    private static final class Validated {
+        final List<Record> records;
+        Object[] values;
+        OrderDraft order;
+        String error;
+
+        Validated(List<Record> records) {
+            this.records = records;
+        }
+    }
+
+    private static final class OrderDraft {
+        final String customer;
+        final String date;
+        final List<String> titles = new ArrayList<>();
+        final List<Integer> quantities = new ArrayList<>();
+        // null means the book's current price
+        final List<Long> unitPriceCents = new ArrayList<>();
+
+        OrderDraft(String customer, String date) {
+            this.customer = customer;
+            this.date = date;
+        }
+    }
+
+    // A record failed validation; carries only the reason, so no stack trace is captured
+    private static final class Rejected extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Rejected(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    // Bounded hand-over between two stages. take() returns null once the producer
+    // has finished, or rethrows the producer's failure.
+    private static final class Pipe<T> {
+        private static final List<Object> END = new ArrayList<>();
+        private final BlockingQueue<List<?>> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        private volatile IOException failure;
+
+        void put(List<T> chunk) throws InterruptedException {
+            if (!chunk.isEmpty()) {
+                queue.put(chunk);
+            }
+        }
+
+        void finish(IOException failure) {
+            this.failure = failure;
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+                // The consumer has stopped; nobody is waiting for the end marker
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> take() throws IOException {
+            try {
+                List<?> chunk = queue.take();
+                if (chunk == END) {
+                    queue.put(END); // Later calls see the end too
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return null;
+                }
+                return (List<T>) chunk;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import interrupted");
+            }
+        }
+    }
+
+    // Parsing stage: reads the file into chunks of records
+    private static final class Parser implements Runnable {
+        final File file;
+        final Kind kind;
+        final long size;
+        final CountingInputStream input;
+        private final Pipe<Record> out;
+
+        Parser(File file, Kind kind, Pipe<Record> out) throws IOException {
+            this.file = file;
+            this.kind = kind;
+            this.size = file.length();
+            this.input = new CountingInputStream(Files.newInputStream(file.toPath()));
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            IOException failure = null;
+            try (Reader reader = open()) {
+                String name = file.getName().toLowerCase();
+                if (name.endsWith(".jsonl") || name.endsWith(".ndjson") ||
+                    name.endsWith(".jsonl.gz") || name.endsWith(".ndjson.gz")) {
+                    parseJsonLines(new BufferedReader(reader, BUFFER_SIZE));
+                } else {
+                    parseCsv(new CsvReader(reader));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e.getMessage(), e);
+            } catch (InterruptedException e) {
+                return;
+            }
+            out.finish(failure);
+        }
+
+        private Reader open() throws IOException {
+            InputStream in = input;
+            if (file.getName().toLowerCase().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+
+        private void parseCsv(CsvReader reader) throws IOException, InterruptedException {
+            List<String> header = reader.next();
+            if (header == null) {
+                return;
+            }
+            String[] columns = new String[header.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            }
+            for (String required : kind.requiredColumns) {
+                if (!Arrays.asList(columns).contains(required)) {
+                    throw new IOException(file.getName() + " has no '" + required + "' column");
+                }
+            }
+
+            List<Record> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<String> values;
+            while ((values = reader.next()) != null) {
+                if (values.size() == 1 && values.get(0).isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> fields = new HashMap<>(columns.length * 2);
+                for (int i = 0; i < columns.length && i < values.size(); i++) {
+                    fields.put(columns[i], values.get(i));
+                }
+                String error = values.size() > columns.length
+                    ? "Expected " + columns.length + " fields but found " + values.size() : null;
+                chunk.add(new Record(reader.recordLine(), reader.rawRecord(), fields, error));
+                if (chunk.size() == CHUNK_SIZE) {
+                    out.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            out.put(chunk);
+        }
+
+        private void parseJsonLines(BufferedReader reader) throws IOException, InterruptedException {
+            List<Record> chunk = new ArrayList<>(CHUNK_SIZE);
+            String text;
+            long line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    chunk.add(new Record(line, text, asFields(Json.parseObject(text)), null));
+                } catch (IllegalArgumentException e) {
+                    chunk.add(new Record(line, text, Collections.emptyMap(), "Invalid JSON: " + e.getMessage()));
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    out.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            out.put(chunk);
+        }
+    }
+
+    // Validation stage: checks required fields, numbers and dates, and groups
+    // order lines. Everything that needs the database is left to the writer.
+    private static final class Validator implements Runnable {
+        private final Kind kind;
+        private final Pipe<Record> in;
+        private final Pipe<Validated> out;
+        private List<Validated> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        Validator(Kind kind, Pipe<Record> in, Pipe<Validated> out) {
+            this.kind = kind;
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            IOException failure = null;
+            try {
+                List<Record> order = new ArrayList<>();
+                for (List<Record> records = in.take(); records != null; records = in.take()) {
+                    for (Record record : records) {
+                        if (kind != Kind.ORDERS || record.error != null) {
+                            emit(Collections.singletonList(record));
+                            continue;
+                        }
+                        // Consecutive CSV lines sharing an order_ref form one order; a JSONL
+                        // record (no order_ref, lines in "items") is a whole order by itself
+                        String ref = record.text("order_ref");
+                        if (!order.isEmpty() && !order.get(0).text("order_ref").equals(ref)) {
+                            emit(order);
+                            order = new ArrayList<>();
+                        }
+                        order.add(record);
+                        if (ref == null) {
+                            emit(order);
+                            order = new ArrayList<>();
+                        }
+                    }
+                    out.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+                if (!order.isEmpty()) {
+                    emit(order);
+                }
+                out.put(chunk);
+            } catch (InterruptedIOException | InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e.getMessage(), e);
+            }
+            out.finish(failure);
+        }
+
+        private void emit(List<Record> records) throws InterruptedException {
+            Validated item = new Validated(records);
+            Record record = records.get(0);
+            try {
+                if (record.error != null) {
+                    throw new Rejected(record.error);
+                }
+                switch (kind) {
+                    case BOOKS:
+                        item.values = new Object[] {
+                            required(record, "title"), required(record, "author"), record.text("genre"),
+                            price(record, "price"), date(record, "publication_date", false)
+                        };
+                        break;
+                    case CUSTOMERS:
+                        String email = record.text("email");
+                        if (email != null && email.indexOf('@') <= 0) {
+                            throw new Rejected("Invalid email '" + email + "'");
+                        }
+                        item.values = new Object[] {required(record, "name"), email, record.text("phone")};
+                        break;
+                    case ORDERS:
+                        item.order = order(records);
+                        break;
+                }
+            } catch (Rejected e) {
+                item.error = e.getMessage();
+            }
+            chunk.add(item);
+            if (chunk.size() == CHUNK_SIZE) {
+                out.put(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+
+        private static OrderDraft order(List<Record> lines) throws Rejected {
+            Record header = lines.get(0);
+            OrderDraft order = new OrderDraft(required(header, "customer"), date(header, "order_date", true));
+
+            List<Record> items = new ArrayList<>();
+            Object jsonItems = header.fields.get("items");
+            if (jsonItems instanceof List) {
+                for (Object item : (List<?>) jsonItems) {
+                    if (!(item instanceof Map)) {
+                        throw new Rejected("Order items must be objects");
+                    }
+                    items.add(new Record(header.line, header.raw, asFields((Map<?, ?>) item), null));
+                }
+            } else if (header.text("order_ref") != null) {
+                items.addAll(lines);
+            }
+            if (items.isEmpty()) {
+                throw new Rejected("Order has no items");
+            }
+
+            for (Record item : items) {
+                order.titles.add(required(item, "title"));
+                String quantityText = required(item, "quantity");
+                int quantity;
+                try {
+                    quantity = Integer.parseInt(quantityText);
+                } catch (NumberFormatException e) {
+                    throw new Rejected("Invalid quantity '" + quantityText + "'");
+                }
+                if (quantity <= 0) {
+                    throw new Rejected("Quantity must be positive");
+                }
+                order.quantities.add(quantity);
+                order.unitPriceCents.add(item.text("unit_price") != null ? price(item, "unit_price") : null);
+            }
+            return order;
+        }
+
+        private static String required(Record record, String field) throws Rejected {
+            String value = record.text(field);
+            if (value == null) {
+                throw new Rejected("Missing " + field);
+            }
+            return value;
+        }
+
+        // Prices are read exactly, in cents; fractions of a cent are rejected
+        private static long price(Record record, String field) throws Rejected {
+            String text = required(record, field);
+            try {
+                long cents = Money.parseCents(text);
+                if (cents >= 0) {
+                    return cents;
+                }
+            } catch (NumberFormatException e) {
+                // Rejected below
+            }
+            throw new Rejected("Invalid " + field + " '" + text + "'");
+        }
+
+        // Accepts only yyyy-MM-dd; checked by hand because DateTimeFormatter is slow per row
+        private static String date(Record record, String field, boolean required) throws Rejected {
+            String text = required ? required(record, field) : record.text(field);
+            if (text == null) {
+                return null;
+            }
+            if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+                try {
+                    LocalDate.of(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10));
+                    return text;
+                } catch (DateTimeException | NumberFormatException e) {
+                    // Rejected below
+                }
+            }
+            throw new Rejected("Invalid " + field + " '" + text + "' (expected yyyy-MM-dd)");
+        }
+
+        private static int digits(String text, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException(text);
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+
+    // Write stage: resolves names to ids and batches inserts on the importer's
+    // connection, committing every commitSize rows
+    private static final class BatchWriter {
+        final Connection connection;
+        final Kind kind;
+        final int commitSize;
+        final Result result;
+        // Lower-cased name -> id; authors grow as new names are seen
+        final Map<String, Integer> authors = new HashMap<>();
+        final Map<String, Integer> customers = new HashMap<>();
+        // Lower-cased title -> {book_id, price in cents}
+        final Map<String, Object[]> books = new HashMap<>();
+        private final List<PreparedStatement> statements = new ArrayList<>();
+        private PreparedStatement insert;
+        private PreparedStatement insertItem;
+        private PreparedStatement insertAuthor;
+        private long nextOrderId;
+        private int pending;
+
+        BatchWriter(Connection connection, Kind kind, int commitSize, Result result) throws SQLException {
+            this.connection = connection;
+            this.kind = kind;
+            this.commitSize = commitSize;
+            this.result = result;
+            try {
+                switch (kind) {
+                    case BOOKS:
+                        loadIds("SELECT author_id, name FROM authors ORDER BY author_id", authors);
+                        insertAuthor = prepare("INSERT INTO authors (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+                        insert = prepare("INSERT INTO books (title, author_id, genre, price_cents, publication_date) " +
+                                         "VALUES (?, ?, ?, ?, ?)", Statement.NO_GENERATED_KEYS);
+                        break;
+                    case CUSTOMERS:
+                        insert = prepare("INSERT INTO customers (name, email, phone) VALUES (?, ?, ?)",
+                                         Statement.NO_GENERATED_KEYS);
+                        break;
+                    case ORDERS:
+                        loadIds("SELECT customer_id, name FROM customers ORDER BY customer_id", customers);
+                        try (Statement stmt = connection.createStatement();
+                             ResultSet rs = stmt.executeQuery("SELECT book_id, title, price_cents FROM books ORDER BY book_id")) {
+                            while (rs.next()) {
+                                books.putIfAbsent(key(rs.getString(2)), new Object[] {rs.getInt(1), rs.getLong(3)});
+                            }
+                        }
+                        insert = prepare("INSERT INTO orders (order_id, customer_id, order_date, total_cents) " +
+                                         "VALUES (?, ?, ?, ?)", Statement.NO_GENERATED_KEYS);
+                        insertItem = prepare("INSERT INTO order_items (order_id, book_id, quantity, unit_price_cents) " +
+                                             "VALUES (?, ?, ?, ?)", Statement.NO_GENERATED_KEYS);
+                        break;
+                }
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void write(Validated item) throws SQLException, Rejected {
+            Object[] row = item.values;
+            switch (kind) {
+                case BOOKS:
+                    insert.setString(1, (String) row[0]);
+                    insert.setInt(2, authorId((String) row[1]));
+                    insert.setString(3, (String) row[2]);
+                    insert.setLong(4, (Long) row[3]);
+                    insert.setString(5, (String) row[4]);
+                    insert.addBatch();
+                    added(1, 1);
+                    break;
+                case CUSTOMERS:
+                    insert.setString(1, (String) row[0]);
+                    insert.setString(2, (String) row[1]);
+                    insert.setString(3, (String) row[2]);
+                    insert.addBatch();
+                    added(1, 1);
+                    break;
+                case ORDERS:
+                    writeOrder(item.order, item.records.size());
+                    break;
+            }
+        }
+
+        // Records is the number of input rows the order came from: its CSV lines, or one JSONL object
+        private void writeOrder(OrderDraft order, int records) throws SQLException, Rejected {
+            Integer customerId = customers.get(key(order.customer));
+            if (customerId == null) {
+                throw new Rejected("Unknown customer '" + order.customer + "'");
+            }
+            int lines = order.titles.size();
+            int[] bookIds = new int[lines];
+            long[] unitPriceCents = new long[lines];
+            long totalCents = 0;
+            for (int i = 0; i < lines; i++) {
+                Object[] book = books.get(key(order.titles.get(i)));
+                if (book == null) {
+                    throw new Rejected("Unknown book '" + order.titles.get(i) + "'");
+                }
+                bookIds[i] = (Integer) book[0];
+                unitPriceCents[i] = order.unitPriceCents.get(i) != null ? order.unitPriceCents.get(i) : (Long) book[1];
+                totalCents += order.quantities.get(i) * unitPriceCents[i];
+            }
+
+            // Ids are assigned here so headers can be batched like their items
+            if (nextOrderId == 0) {
+                nextOrderId = nextOrderId();
+            }
+            long orderId = nextOrderId++;
+            insert.setLong(1, orderId);
+            insert.setInt(2, customerId);
+            insert.setString(3, order.date);
+            insert.setLong(4, totalCents);
+            insert.addBatch();
+            for (int i = 0; i < lines; i++) {
+                insertItem.setLong(1, orderId);
+                insertItem.setInt(2, bookIds[i]);
+                insertItem.setInt(3, order.quantities.get(i));
+                insertItem.setLong(4, unitPriceCents[i]);
+                insertItem.addBatch();
+            }
+            added(lines, records);
+        }
+
+        void commit() throws SQLException {
+            if (pending == 0) {
+                return;
+            }
+            insert.executeBatch();
+            if (kind == Kind.ORDERS) {
+                insertItem.executeBatch();
+                nextOrderId = 0;
+            }
+            connection.commit();
+            pending = 0;
+        }
+
+        void close() {
+            for (PreparedStatement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        private void added(int rows, int records) throws SQLException {
+            result.imported += records;
+            pending += rows;
+            if (pending >= commitSize) {
+                commit();
+            }
+        }
+
+        private int authorId(String name) throws SQLException {
+            String key = key(name);
+            Integer id = authors.get(key);
+            if (id == null) {
+                insertAuthor.setString(1, name);
+                insertAuthor.executeUpdate();
+                try (ResultSet keys = insertAuthor.getGeneratedKeys()) {
+                    keys.next();
+                    id = keys.getInt(1);
+                }
+                authors.put(key, id);
+                result.authorsCreated++;
+            }
+            return id;
+        }
+
+        private void loadIds(String query, Map<String, Integer> ids) throws SQLException {
+            try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    String name = rs.getString(2);
+                    if (name != null) {
+                        ids.putIfAbsent(key(name), rs.getInt(1));
+                    }
+                }
+            }
+        }
+
+        // First id past both the highest order and the AUTOINCREMENT sequence, so ids of
+        // deleted orders are never reused. Read inside the write transaction, which
+        // keeps other connections from committing orders until this batch commits.
+        private long nextOrderId() throws SQLException {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(
+                     "SELECT MAX(COALESCE((SELECT MAX(order_id) FROM orders), 0), " +
+                     "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'orders'), 0)) + 1")) {
+                return rs.next() ? rs.getLong(1) : 1;
+            }
+        }
+
+        private PreparedStatement prepare(String sql, int generatedKeys) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(sql, generatedKeys);
+            statements.add(statement);
+            return statement;
+        }
+    }
+
+    // Rejected records with their line number and reason; the file is only created on the first reject
+    private static final class Rejects implements AutoCloseable {
+        private final Result result;
+        private BufferedWriter writer;
+
+        Rejects(Result result) {
+            this.result = result;
+        }
+
+        void write(List<Record> records, String reason) throws IOException {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(result.rejectsFile.toPath()), StandardCharsets.UTF_8), 64 * 1024);
+                CsvExporter.writeRow(writer, new Object[] {"line", "reason", "record"});
+            }
+            for (Record record : records) {
+                CsvExporter.writeRow(writer, new Object[] {record.line, reason, record.raw});
+            }
+            result.rejected += records.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    // Headless import: java Book.BulkImporter books|customers|orders file [database] [commitSize]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java Book.BulkImporter books|customers|orders <file.csv|file.jsonl>[.gz] " +
+                               "[database] [commitSize]");
+            System.exit(2);
+        }
+        Kind kind = Kind.valueOf(args[0].toUpperCase(Locale.ROOT));
+        File file = new File(args[1]);
+        String path = args.length > 2 ? args[2] : "bookstore.db";
+        int commitSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_COMMIT_SIZE;
+
+        Class.forName("org.sqlite.JDBC");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            SchemaMigrations.migrate(connection, System.out);
+            Result result = importFile(connection, kind, file, commitSize, null);
+            System.out.println(result + (result.indexesDeferred ? " (indexes rebuilt after loading)" : ""));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// In-process notifications of committed changes, each carrying the id of the
+// affected row. Write paths publish once their transaction has committed; the
+// table models subscribe and update just the rows concerned, so a save never
+// needs to know which tabs are open or how their tables are built. Listeners
+// always run on the EDT, in subscription order.
+final class ChangeEvents {
+    private static final Logger log = LoggerFactory.getLogger(ChangeEvents.class);
+
+    abstract static class Event {
+        final int id;
+
+        Event(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + id + ")";
+        }
+    }
+
+    // Inserted or updated
+    static final class BookChanged extends Event {
+        BookChanged(int bookId) {
+            super(bookId);
+        }
+    }
+
+    static final class BookDeleted extends Event {
+        BookDeleted(int bookId) {
+            super(bookId);
+        }
+    }
+
+    static final class AuthorChanged extends Event {
+        AuthorChanged(int authorId) {
+            super(authorId);
+        }
+    }
+
+    static final class AuthorDeleted extends Event {
+        AuthorDeleted(int authorId) {
+            super(authorId);
+        }
+    }
+
+    static final class CustomerChanged extends Event {
+        CustomerChanged(int customerId) {
+            super(customerId);
+        }
+    }
+
+    // The customer's orders were deleted with it; no OrderDeleted is published for them
+    static final class CustomerDeleted extends Event {
+        CustomerDeleted(int customerId) {
+            super(customerId);
+        }
+    }
+
+    static final class OrderChanged extends Event {
+        OrderChanged(int orderId) {
+            super(orderId);
+        }
+    }
+
+    static final class OrderDeleted extends Event {
+        OrderDeleted(int orderId) {
+            super(orderId);
+        }
+    }
+
+    private static final Map<Class<? extends Event>, List<Consumer<? super Event>>> listeners = new HashMap<>();
+
+    private ChangeEvents() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static synchronized <E extends Event> void subscribe(Class<E> type, Consumer<? super E> listener) {
+        listeners.computeIfAbsent(type, t -> new ArrayList<>()).add((Consumer<? super Event>) listener);
+    }
+
+    // Deliver to every listener of the event's type; called off the EDT, delivery is queued onto it
+    static void publish(Event event) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> publish(event));
+            return;
+        }
+        List<Consumer<? super Event>> targets;
+        synchronized (ChangeEvents.class) {
+            List<Consumer<? super Event>> registered = listeners.get(event.getClass());
+            if (registered == null) {
+                return;
+            }
+            targets = new ArrayList<>(registered);
+        }
+        for (Consumer<? super Event> listener : targets) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                // One broken listener must not stop the others from seeing the change
+                log.error("Change listener failed for {}", event, e);
+            }
+        }
+    }
+}
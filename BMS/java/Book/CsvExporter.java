@@ -0,0 +1,162 @@
+package Book;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a query straight from the database to a CSV file (RFC 4180: CRLF line
+// endings, fields quoted when they contain a comma, quote or line break, quotes
+// doubled). Rows are read from a forward-only cursor and written through a 1 MB
+// buffer, so memory use does not grow with the export; a name ending in ".gz"
+// is gzip-compressed on the fly. Output goes to a temporary file that replaces
+// the target only once the export completes. Money columns (named *_cents) are
+// written as plain decimal amounts.
+final class CsvExporter {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 5000;
+
+    private CsvExporter() {
+    }
+
+    // Export the query's rows under the given header; returns the number of rows written.
+    // The context (may be null) receives progress and can cancel the export.
+    static long export(Connection connection, String query, Object[] params, String[] header, File file,
+                       DataAccessExecutor.Context context) throws SQLException, IOException {
+        long total = context != null ? countRows(connection, query, params, context) : -1;
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".part");
+        long rows = 0;
+        boolean complete = false;
+        try (Writer writer = open(temp, isGzip(file));
+             PreparedStatement pstmt = connection.prepareStatement(query,
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (context != null) {
+                context.setStatement(pstmt);
+            }
+            pstmt.setFetchSize(FETCH_SIZE);
+            bind(pstmt, params);
+
+            writeRow(writer, header);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Columns past the header, such as a row version, are not exported
+                int columns = Math.min(rs.getMetaData().getColumnCount(), header.length);
+                boolean[] cents = new boolean[columns];
+                for (int i = 0; i < columns; i++) {
+                    cents[i] = rs.getMetaData().getColumnLabel(i + 1).endsWith("_cents");
+                }
+                Object[] row = new Object[columns];
+                while (rs.next()) {
+                    if (context != null && context.isCancelled()) {
+                        return rows;
+                    }
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getObject(i + 1);
+                        if (cents[i] && row[i] != null) {
+                            row[i] = Money.plain(rs.getLong(i + 1));
+                        }
+                    }
+                    writeRow(writer, row);
+                    rows++;
+                    if (context != null && rows % PROGRESS_INTERVAL == 0) {
+                        context.progress(rows, total);
+                    }
+                }
+            }
+            complete = true;
+        } finally {
+            if (complete) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                temp.delete();
+            }
+        }
+        return rows;
+    }
+
+    static void writeRow(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    static void writeField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        // Plain notation: Double.toString switches to exponents at 10^7
+        String text = value instanceof Double ? BigDecimal.valueOf((Double) value).toPlainString() : value.toString();
+        if (!needsQuoting(text)) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                writer.write(text, start, i - start + 1);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(text, start, text.length() - start);
+        writer.write('"');
+    }
+
+    static boolean isGzip(File file) {
+        return file.getName().toLowerCase().endsWith(".gz");
+    }
+
+    private static boolean needsQuoting(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        // Leading or trailing spaces would be trimmed by many readers
+        return !text.isEmpty() && (text.charAt(0) == ' ' || text.charAt(text.length() - 1) == ' ');
+    }
+
+    private static Writer open(File file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file.toPath());
+        if (gzip) {
+            out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static long countRows(Connection connection, String query, Object[] params,
+                                  DataAccessExecutor.Context context) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT COUNT(*) FROM (" + query + ")")) {
+            context.setStatement(pstmt);
+            bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; params != null && i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
+        }
+    }
+}
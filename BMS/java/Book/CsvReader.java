@@ -0,0 +1,107 @@
+package Book;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 reader, the counterpart of CsvExporter: quoted fields may contain
+// commas, doubled quotes and line breaks. Accepts LF as well as CRLF endings.
+final class CsvReader {
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int length;
+    private int pos;
+    private long line = 1;
+    private long recordLine;
+    private final StringBuilder raw = new StringBuilder();
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Next record's fields, or null at end of input
+    List<String> next() throws IOException {
+        raw.setLength(0);
+        recordLine = line;
+        int c = read();
+        if (c < 0) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n' && following >= 0) {
+                        pos--; // A lone CR ends the record; keep the next character
+                        raw.setLength(raw.length() - 1);
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    // Line number where the last record returned by next() started
+    long recordLine() {
+        return recordLine;
+    }
+
+    // Text of the last record, without its line ending
+    String rawRecord() {
+        int end = raw.length();
+        while (end > 0 && (raw.charAt(end - 1) == '\n' || raw.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return raw.substring(0, end);
+    }
+
+    private int read() throws IOException {
+        if (pos == length) {
+            length = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (length <= 0) {
+                length = 0;
+                return -1;
+            }
+        }
+        char c = buffer[pos++];
+        raw.append(c);
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,310 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Runs JDBC work off the Event Dispatch Thread and hands results back to it.
+// Writes go to a single worker that owns the database's writer connection and
+// runs each one through WriteScheduler, in a transaction of its own; reads
+// (submitRead) go to a small pool whose threads each use their own read-only
+// connection, so reports and searches run alongside a save. Queues
+// are bounded so a stuck query cannot pile up an unbounded backlog. Tasks
+// submitted on a named channel cancel whatever task is still pending or
+// running on that channel, whichever pool it is in. A read given an onChunk
+// consumer (the reports tab) hands its rows to the EDT in chunks as it
+// publishes them, sized to keep each chunk's EDT time under EDT_BUDGET_NANOS.
+final class DataAccessExecutor {
+    private static final Logger log = LoggerFactory.getLogger(DataAccessExecutor.class);
+
+    // Budget for a single callback on the EDT; chunk sizes adapt to stay under it
+    static final long EDT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int MIN_CHUNK = 16;
+    private static final int MAX_CHUNK = 2048;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int READ_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    interface Task<T> {
+        T run(Context context) throws Exception;
+    }
+
+    interface ActivityListener {
+        // Called on the EDT; percent is -1 while the current task has not reported progress
+        void activityChanged(int activeTasks, String description, int percent);
+    }
+
+    // Platform threads: the build targets release 11 (see BMS/pom.xml), and the connections
+    // each allow one statement at a time, so virtual threads would only queue on them
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "data-access");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private static final AtomicInteger readThreadCount = new AtomicInteger();
+    private static final ThreadPoolExecutor readExecutor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS,
+        0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "data-read-" + readThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private static final Map<String, Context> channels = new ConcurrentHashMap<>();
+    private static final AtomicInteger activeTasks = new AtomicInteger();
+    private static volatile ActivityListener activityListener;
+    private static volatile int chunkSize = 256;
+
+    // EDT blocking statistics for everything delivered through this class
+    private static final AtomicLong edtCallbacks = new AtomicLong();
+    private static final AtomicLong edtNanosTotal = new AtomicLong();
+    private static final AtomicLong edtNanosMax = new AtomicLong();
+    private static final AtomicLong edtOverBudget = new AtomicLong();
+
+    private DataAccessExecutor() {
+    }
+
+    static void setActivityListener(ActivityListener listener) {
+        activityListener = listener;
+    }
+
+    static <T> Context submit(String channel, String description, Task<T> task,
+                              Consumer<T> onSuccess, Consumer<Exception> onError) {
+        return submit(executor, false, channel, description, task, null, onSuccess, onError);
+    }
+
+    // Submit a read-only task; it runs on a read thread and must use context.connection()
+    static <T> Context submitRead(String channel, String description, Task<T> task,
+                                  Consumer<T> onSuccess, Consumer<Exception> onError) {
+        return submitRead(channel, description, task, null, onSuccess, onError);
+    }
+
+    // Submit a read whose rows are published back to the EDT in chunks while it runs
+    static <T> Context submitRead(String channel, String description, Task<T> task, Consumer<List<Object[]>> onChunk,
+                                  Consumer<T> onSuccess, Consumer<Exception> onError) {
+        return submit(readExecutor, true, channel, description, task, onChunk, onSuccess, onError);
+    }
+
+    private static <T> Context submit(ThreadPoolExecutor pool, boolean readOnly, String channel, String description,
+                                      Task<T> task, Consumer<List<Object[]>> onChunk,
+                                      Consumer<T> onSuccess, Consumer<Exception> onError) {
+        Context context = new Context(channel, description, onChunk);
+        if (channel != null) {
+            Context previous = channels.put(channel, context);
+            if (previous != null) {
+                previous.cancel();
+            }
+        }
+
+        activityStarted(description);
+        try {
+            context.future = pool.submit(() -> {
+                T result = null;
+                Exception failure = null;
+                try {
+                    if (!context.isCancelled()) {
+                        if (readOnly) {
+                            context.connection = Database.reader();
+                            result = task.run(context);
+                        } else {
+                            context.connection = Database.writer();
+                            result = WriteScheduler.run(context.connection, connection -> task.run(context),
+                                                        context::isCancelled);
+                        }
+                        context.flush();
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    context.setStatement(null);
+                }
+
+                T value = result;
+                Exception error = failure;
+                onEdt(() -> {
+                    if (channel != null) {
+                        channels.remove(channel, context);
+                    }
+                    activityFinished();
+                    if (context.isCancelled()) {
+                        return;
+                    }
+                    if (error != null) {
+                        if (onError != null) {
+                            onError.accept(error);
+                        }
+                    } else if (onSuccess != null) {
+                        onSuccess.accept(value);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            if (channel != null) {
+                channels.remove(channel, context);
+            }
+            activityFinished();
+            if (onError != null) {
+                onError.accept(new SQLException("Too many pending database requests, please try again"));
+            }
+        }
+        return context;
+    }
+
+    static void cancel(String channel) {
+        Context context = channels.remove(channel);
+        if (context != null) {
+            context.cancel();
+        }
+    }
+
+    static String edtStats() {
+        long callbacks = edtCallbacks.get();
+        long average = callbacks == 0 ? 0 : edtNanosTotal.get() / callbacks;
+        return String.format("EDT callbacks=%d avg=%.2fms max=%.2fms overBudget=%d chunk=%d",
+            callbacks, average / 1e6, edtNanosMax.get() / 1e6, edtOverBudget.get(), chunkSize);
+    }
+
+    private static void onEdt(Runnable runnable) {
+        SwingUtilities.invokeLater(() -> {
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                recordEdtTime(System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static long recordEdtTime(long nanos) {
+        edtCallbacks.incrementAndGet();
+        edtNanosTotal.addAndGet(nanos);
+        edtNanosMax.accumulateAndGet(nanos, Math::max);
+        if (nanos > EDT_BUDGET_NANOS) {
+            edtOverBudget.incrementAndGet();
+        }
+        return nanos;
+    }
+
+    private static void activityStarted(String description) {
+        int active = activeTasks.incrementAndGet();
+        notifyActivity(active, description, -1);
+    }
+
+    private static void activityFinished() {
+        notifyActivity(activeTasks.decrementAndGet(), null, -1);
+    }
+
+    private static void notifyActivity(int active, String description, int percent) {
+        ActivityListener listener = activityListener;
+        if (listener != null) {
+            SwingUtilities.invokeLater(() -> listener.activityChanged(active, description, percent));
+        }
+    }
+
+    // Handle given to a running task for cancellation checks, progress and chunked publishing
+    static final class Context {
+        private final String channel;
+        private final String description;
+        private final Consumer<List<Object[]>> onChunk;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        private volatile Statement statement;
+        private Connection connection;
+        private List<Object[]> buffer = new ArrayList<>();
+        private long lastFlush = System.nanoTime();
+
+        private Context(String channel, String description, Consumer<List<Object[]>> onChunk) {
+            this.channel = channel;
+            this.description = description;
+            this.onChunk = onChunk;
+        }
+
+        // The connection this task runs on: read-only for submitRead tasks, the writer otherwise
+        Connection connection() {
+            return connection;
+        }
+
+        boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        // Register the statement currently executing so cancel() can interrupt it
+        void setStatement(Statement statement) {
+            this.statement = statement;
+        }
+
+        void progress(long done, long total) {
+            if (total > 0) {
+                notifyActivity(activeTasks.get(), description, (int) Math.min(100, done * 100 / total));
+            }
+        }
+
+        void publish(Object[] row) {
+            buffer.add(row);
+            if (buffer.size() >= chunkSize || System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                flush();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Statement running = statement;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException ignored) {
+                    // The statement finished or was closed in the meantime
+                }
+            }
+            Future<?> pending = future;
+            if (pending != null && pending.cancel(false)) {
+                // Never started, so its completion callback will not run either
+                activityFinished();
+            }
+        }
+
+        private void flush() {
+            lastFlush = System.nanoTime();
+            if (buffer.isEmpty() || onChunk == null || cancelled) {
+                buffer.clear();
+                return;
+            }
+            List<Object[]> chunk = buffer;
+            buffer = new ArrayList<>(chunkSize);
+            SwingUtilities.invokeLater(() -> {
+                if (cancelled) {
+                    return;
+                }
+                long start = System.nanoTime();
+                onChunk.accept(chunk);
+                long elapsed = recordEdtTime(System.nanoTime() - start);
+
+                // Keep each chunk's EDT time under budget by resizing the next chunks
+                if (elapsed > EDT_BUDGET_NANOS && chunkSize > MIN_CHUNK) {
+                    chunkSize = Math.max(MIN_CHUNK, chunkSize / 2);
+                    log.debug("Slow EDT update for {}: {} ms for {} rows; chunks now {} rows",
+                              channel, elapsed / 1_000_000, chunk.size(), chunkSize);
+                } else if (elapsed < EDT_BUDGET_NANOS / 4 && chunk.size() == chunkSize && chunkSize < MAX_CHUNK) {
+                    chunkSize = Math.min(MAX_CHUNK, chunkSize * 2);
+                }
+            });
+        }
+    }
+}
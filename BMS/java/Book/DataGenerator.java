@@ -0,0 +1,588 @@
+package Book;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Fills a new database with synthetic load data at a chosen scale. The same
+// options and seed always produce the same rows. Book sales follow a Zipf
+// distribution over a shuffled popularity ranking, so a few titles dominate
+// and most sell rarely; authors and repeat customers are skewed the same way,
+// more gently. Orders mostly hold one to three lines and are dated with a
+// seasonal curve (a December peak, a January dip, busier weekends and yearly
+// growth), with order ids increasing by date as they would in production.
+//
+// Rows are written through batched multi-row INSERTs in large transactions.
+// Secondary indexes and the sales-summary triggers are dropped while loading
+// and rebuilt once at the end, together with the search index and statistics.
+// The sales summaries are written from totals kept while generating: at this
+// scale SalesSummary.rebuild's GROUP BY sorts would take longer than the load.
+//
+// Usage: java Book.DataGenerator <new database> [--items N] [--seed N]
+//            [--books N] [--customers N] [--authors N] [--from yyyy-mm-dd] [--years N]
+// Table sizes default to a fixed ratio of --items (the number of order lines).
+final class DataGenerator {
+    static final long DEFAULT_ITEMS = 1_000_000;
+    // Rows bound into one INSERT statement, and statements queued per executeBatch
+    private static final int ROWS_PER_STATEMENT = 32;
+    private static final int STATEMENTS_PER_BATCH = 256;
+    private static final int COMMIT_SIZE = 500_000;
+
+    private static final double BOOK_POPULARITY_SKEW = 1.0;
+    private static final double AUTHOR_OUTPUT_SKEW = 0.8;
+    private static final double CUSTOMER_LOYALTY_SKEW = 0.6;
+    private static final int MAX_LINES_PER_ORDER = 25;
+    // One more line after each with this probability: a mean of about 2.5 lines
+    private static final double NEXT_LINE_PROBABILITY = 0.6;
+    private static final double YEARLY_GROWTH = 0.12;
+    // Relative order volume by month, January first
+    private static final double[] MONTH_WEIGHTS = {0.75, 0.8, 0.9, 0.95, 1.0, 1.0, 1.05, 1.1, 1.05, 1.0, 1.3, 1.9};
+
+    private static final String[] GENRES = {"Fiction", "Mystery", "Romance", "Fantasy", "Science Fiction", "Thriller",
+        "Biography", "History", "Children", "Young Adult", "Self-Help", "Cooking", "Travel", "Poetry", "Science",
+        "Business", "Horror", "Graphic Novel", "Religion", "Art"};
+    private static final double[] GENRE_WEIGHTS = {18, 11, 10, 8, 7, 7, 5, 5, 6, 5, 4, 3, 2, 1, 3, 3, 3, 2, 1.5, 1.5};
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+        "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah",
+        "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark", "Margaret", "Steven",
+        "Sandra", "Amir", "Fatima", "Wei", "Mei", "Raj", "Priya", "Carlos", "Lucia", "Kenji", "Yuki", "Olu", "Amara"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+        "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+        "Jackson", "Martin", "Lee", "Thompson", "White", "Harris", "Clark", "Lewis", "Walker", "Hall", "Young", "King",
+        "Wright", "Rahman", "Hossain", "Chen", "Wang", "Patel", "Singh", "Silva", "Tanaka", "Okafor", "Nguyen"};
+    private static final String[] TITLE_ADJECTIVES = {"Silent", "Hidden", "Broken", "Golden", "Last", "Forgotten",
+        "Crimson", "Distant", "Burning", "Quiet", "Wild", "Secret", "Hollow", "Endless", "Midnight", "Frozen",
+        "Little", "Lost", "Painted", "Iron", "Velvet", "Shattered", "Gentle", "Restless"};
+    private static final String[] TITLE_NOUNS = {"River", "Garden", "Kingdom", "Lantern", "Harbor", "Mirror",
+        "Orchard", "Storm", "Library", "Promise", "Shadow", "Compass", "Meadow", "Empire", "Letter", "Island",
+        "Bridge", "Winter", "Circle", "Crown", "Voyage", "Forest", "Signal", "Tide"};
+    private static final String[] TITLE_PLACES = {"", " of Ashes", " of the North", " at Dawn", " in Paris",
+        " Under Glass", " of Salt", " Beyond the Hills", " of Tomorrow", " by the Sea", " in Bloom", " of Kings"};
+
+    // Scale and randomness of one run
+    static final class Options {
+        long items = DEFAULT_ITEMS;
+        long seed = 1;
+        int books;
+        int customers;
+        int authors;
+        LocalDate from = LocalDate.of(2022, 1, 1);
+        int years = 3;
+
+        // Table sizes left unset scale with the number of order lines
+        void applyDefaults() {
+            if (books <= 0) {
+                books = (int) Math.max(100, Math.min(Integer.MAX_VALUE, items / 50));
+            }
+            if (customers <= 0) {
+                customers = (int) Math.max(50, Math.min(Integer.MAX_VALUE, items / 25));
+            }
+            if (authors <= 0) {
+                authors = Math.max(10, books / 8);
+            }
+        }
+    }
+
+    // Rows written, for the summary line
+    static final class Result {
+        int authors;
+        int books;
+        int customers;
+        long orders;
+        long items;
+        long elapsedNanos;
+
+        @Override
+        public String toString() {
+            return String.format("Generated %,d authors, %,d books, %,d customers, %,d orders and %,d order lines in %.1fs (%,.0f lines/s)",
+                                 authors, books, customers, orders, items, elapsedNanos / 1e9,
+                                 elapsedNanos > 0 ? items * 1e9 / elapsedNanos : 0);
+        }
+    }
+
+    private DataGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Usage: java Book.DataGenerator <new database> [--items N] [--seed N] [--books N] " +
+                               "[--customers N] [--authors N] [--from yyyy-mm-dd] [--years N]");
+            System.exit(2);
+        }
+        Options options = new Options();
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1].replace("_", "");
+            switch (args[i]) {
+                case "--items": options.items = Long.parseLong(value); break;
+                case "--seed": options.seed = Long.parseLong(value); break;
+                case "--books": options.books = Integer.parseInt(value); break;
+                case "--customers": options.customers = Integer.parseInt(value); break;
+                case "--authors": options.authors = Integer.parseInt(value); break;
+                case "--from": options.from = LocalDate.parse(value); break;
+                case "--years": options.years = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        File file = new File(args[0]);
+        if (file.exists()) {
+            // Dropping indexes and triggers on a live database is not something to do by accident
+            System.err.println(file + " already exists; the generator only fills new databases");
+            System.exit(1);
+        }
+        Class.forName("org.sqlite.JDBC");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            System.out.println(generate(connection, options));
+        }
+    }
+
+    // Create the schema on an empty database and fill it
+    static Result generate(Connection connection, Options options) throws SQLException {
+        long start = System.nanoTime();
+        options.applyDefaults();
+        SchemaMigrations.migrate(connection, null);
+        try (Statement stmt = connection.createStatement()) {
+            // A half-written load is thrown away, not recovered, so skip the journal
+            stmt.execute("PRAGMA journal_mode = OFF");
+            stmt.execute("PRAGMA synchronous = OFF");
+            stmt.execute("PRAGMA cache_size = -262144");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+        }
+
+        Result result = new Result();
+        Random random = new Random(options.seed);
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            List<String> deferred = dropIndexesAndTriggers(connection);
+            connection.commit();
+
+            Sales sales = new Sales(options);
+            writeAuthors(connection, random, options, result);
+            writeBooks(connection, random, options, sales, result);
+            writeCustomers(connection, random, options, result);
+            writeOrders(connection, random, options, sales, result);
+            writeSalesSummaries(connection, sales);
+            connection.commit();
+
+            long rebuildStart = System.nanoTime();
+            try (Statement stmt = connection.createStatement()) {
+                for (String sql : deferred) {
+                    stmt.execute(sql);
+                }
+                BookSearchIndex.rebuild(connection);
+                // Sampled statistics are as good for the planner and much quicker to gather
+                stmt.execute("PRAGMA analysis_limit = 1000");
+                stmt.execute("ANALYZE");
+            }
+            connection.commit();
+            System.out.printf("Rebuilt indexes, search index and statistics in %.1fs%n",
+                              (System.nanoTime() - rebuildStart) / 1e9);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = DELETE");
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Drops every secondary index and trigger on the five base tables; returns the statements to restore them
+    private static List<String> dropIndexesAndTriggers(Connection connection) throws SQLException {
+        List<String> restore = new ArrayList<>();
+        List<String> drops = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT type, name, sql FROM sqlite_master WHERE type IN ('index', 'trigger') AND sql IS NOT NULL " +
+                 "AND tbl_name IN ('authors', 'books', 'customers', 'orders', 'order_items')")) {
+            while (rs.next()) {
+                drops.add("DROP " + rs.getString(1).toUpperCase() + " \"" + rs.getString(2) + "\"");
+                restore.add(rs.getString(3));
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : drops) {
+                stmt.execute(sql);
+            }
+        }
+        return restore;
+    }
+
+    private static void writeAuthors(Connection connection, Random random, Options options, Result result)
+            throws SQLException {
+        try (Inserter authors = new Inserter(connection, "authors (author_id, name, birth_date)", 3)) {
+            LocalDate earliest = LocalDate.of(1920, 1, 1);
+            for (int id = 1; id <= options.authors; id++) {
+                authors.add(id, personName(id), earliest.plusDays(random.nextInt(365 * 80)).toString());
+            }
+        }
+        result.authors = options.authors;
+    }
+
+    private static void writeBooks(Connection connection, Random random, Options options, Sales sales,
+                                   Result result) throws SQLException {
+        Zipf authors = new Zipf(options.authors, AUTHOR_OUTPUT_SKEW, random);
+        double[] genres = cumulative(GENRE_WEIGHTS);
+        LocalDate earliest = LocalDate.of(1950, 1, 1);
+        int days = (int) (options.from.plusYears(options.years).toEpochDay() - earliest.toEpochDay());
+        try (Inserter books = new Inserter(connection,
+                "books (book_id, title, author_id, genre, price_cents, publication_date)", 6)) {
+            for (int id = 1; id <= options.books; id++) {
+                // Log-normal around $15, as list prices cluster with a long tail: 4.99 to 79.99
+                long priceCents = (long) Math.min(79, Math.max(4, Math.floor(15 * Math.exp(0.5 * random.nextGaussian())))) * 100 + 99;
+                int genre = pick(genres, random.nextDouble());
+                sales.bookPriceCents[id] = priceCents;
+                sales.bookGenre[id] = genre;
+                // Most of the catalogue is recent
+                String published = earliest.plusDays((long) (days * Math.sqrt(random.nextDouble()))).toString();
+                books.add(id, title(id), authors.next(), GENRES[genre], priceCents, published);
+            }
+        }
+        connection.commit();
+        result.books = options.books;
+    }
+
+    private static void writeCustomers(Connection connection, Random random, Options options, Result result)
+            throws SQLException {
+        try (Inserter customers = new Inserter(connection, "customers (customer_id, name, email, phone)", 4)) {
+            for (int id = 1; id <= options.customers; id++) {
+                customers.add(id, personName(id + options.authors), "customer" + id + "@example.com",
+                              String.format("555-%03d-%04d", random.nextInt(1000), random.nextInt(10000)));
+            }
+        }
+        connection.commit();
+        result.customers = options.customers;
+    }
+
+    private static void writeOrders(Connection connection, Random random, Options options, Sales sales,
+                                    Result result) throws SQLException {
+        // Line counts first, so the number of orders is known before they are spread over the calendar
+        byte[] lines = orderSizes(options.items, random);
+        long orders = lines.length;
+        LocalDate first = options.from;
+        int days = (int) (first.plusYears(options.years).toEpochDay() - first.toEpochDay());
+        long[] ordersPerDay = new long[days];
+        double[] calendar = cumulative(dayWeights(first, days));
+        for (long i = 0; i < orders; i++) {
+            ordersPerDay[pick(calendar, random.nextDouble())]++;
+        }
+
+        Zipf books = new Zipf(options.books, BOOK_POPULARITY_SKEW, random);
+        Zipf customers = new Zipf(options.customers, CUSTOMER_LOYALTY_SKEW, random);
+        try (Inserter orderRows = new Inserter(connection, "orders (order_id, customer_id, order_date, total_cents)", 4);
+             Inserter itemRows = new Inserter(connection,
+                 "order_items (order_item_id, order_id, book_id, quantity, unit_price_cents)", 5)) {
+            long orderId = 0;
+            long itemId = 0;
+            long uncommitted = 0;
+            int[] bookIds = new int[MAX_LINES_PER_ORDER];
+            for (int day = 0; day < days; day++) {
+                String date = first.plusDays(day).toString();
+                for (long n = 0; n < ordersPerDay[day]; n++) {
+                    int count = lines[(int) orderId++];
+                    long totalCents = 0;
+                    for (int line = 0; line < count; line++) {
+                        int bookId = distinctBook(books, bookIds, line);
+                        int quantity = quantity(random);
+                        long priceCents = sales.bookPriceCents[bookId];
+                        totalCents += quantity * priceCents;
+                        sales.bookQuantity[bookId] += quantity;
+                        sales.bookItems[bookId]++;
+                        itemRows.add(++itemId, orderId, bookId, quantity, priceCents);
+                    }
+                    int customerId = customers.next();
+                    sales.customerCents[customerId] += totalCents;
+                    sales.customerOrders[customerId]++;
+                    orderRows.add(orderId, customerId, date, totalCents);
+                    uncommitted += count;
+                    if (uncommitted >= COMMIT_SIZE) {
+                        itemRows.flush();
+                        orderRows.flush();
+                        connection.commit();
+                        uncommitted = 0;
+                        System.out.printf("  %,d of %,d order lines%n", itemId, options.items);
+                    }
+                }
+            }
+            itemRows.flush();
+            orderRows.flush();
+            result.orders = orderId;
+            result.items = itemId;
+        }
+    }
+
+    // The rows SalesSummary.rebuild would compute from the generated history
+    private static void writeSalesSummaries(Connection connection, Sales sales) throws SQLException {
+        long[] genreQuantity = new long[GENRES.length];
+        long[] genreItems = new long[GENRES.length];
+        try (Inserter rows = new Inserter(connection, "sales_by_book (book_id, quantity, items)", 3)) {
+            for (int id = 1; id < sales.bookItems.length; id++) {
+                if (sales.bookItems[id] > 0) {
+                    rows.add(id, sales.bookQuantity[id], sales.bookItems[id]);
+                    genreQuantity[sales.bookGenre[id]] += sales.bookQuantity[id];
+                    genreItems[sales.bookGenre[id]] += sales.bookItems[id];
+                }
+            }
+        }
+        try (Inserter rows = new Inserter(connection, "sales_by_genre (genre, quantity, items)", 3)) {
+            for (int genre = 0; genre < GENRES.length; genre++) {
+                if (genreItems[genre] > 0) {
+                    rows.add(GENRES[genre], genreQuantity[genre], genreItems[genre]);
+                }
+            }
+        }
+        try (Inserter rows = new Inserter(connection, "sales_by_customer (customer_id, total_spent_cents, orders)", 3)) {
+            for (int id = 1; id < sales.customerOrders.length; id++) {
+                if (sales.customerOrders[id] > 0) {
+                    rows.add(id, sales.customerCents[id], sales.customerOrders[id]);
+                }
+            }
+        }
+    }
+
+    // Lines per order, summing exactly to the requested number of items
+    private static byte[] orderSizes(long items, Random random) {
+        long estimate = (long) (items * (1 - NEXT_LINE_PROBABILITY)) + 16;
+        if (estimate > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(items + " order lines is more than one run can generate");
+        }
+        byte[] sizes = new byte[(int) estimate];
+        int orders = 0;
+        long remaining = items;
+        while (remaining > 0) {
+            int count = 1;
+            while (count < MAX_LINES_PER_ORDER && random.nextDouble() < NEXT_LINE_PROBABILITY) {
+                count++;
+            }
+            count = (int) Math.min(count, remaining);
+            if (orders == sizes.length) {
+                sizes = Arrays.copyOf(sizes, sizes.length + sizes.length / 8);
+            }
+            sizes[orders++] = (byte) count;
+            remaining -= count;
+        }
+        return Arrays.copyOf(sizes, orders);
+    }
+
+    // Seasonal weight of each day: month of year, day of week and steady growth
+    private static double[] dayWeights(LocalDate first, int days) {
+        double[] weights = new double[days];
+        for (int day = 0; day < days; day++) {
+            LocalDate date = first.plusDays(day);
+            double weekday = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY
+                             ? 1.25 : 0.9;
+            weights[day] = MONTH_WEIGHTS[date.getMonthValue() - 1] * weekday * Math.pow(1 + YEARLY_GROWTH, day / 365.0);
+        }
+        return weights;
+    }
+
+    // A popular book drawn for this line, redrawn if the order already has it
+    private static int distinctBook(Zipf books, int[] chosen, int line) {
+        for (int attempt = 0; ; attempt++) {
+            int bookId = books.next();
+            boolean repeated = false;
+            for (int i = 0; i < line && !repeated; i++) {
+                repeated = chosen[i] == bookId;
+            }
+            if (!repeated || attempt == 8) {
+                chosen[line] = bookId;
+                return bookId;
+            }
+        }
+    }
+
+    private static int quantity(Random random) {
+        double r = random.nextDouble();
+        return r < 0.82 ? 1 : r < 0.95 ? 2 : 3 + random.nextInt(3);
+    }
+
+    // Unique names in a stable order: every first/last pair, then numbered repeats
+    private static String personName(int id) {
+        int index = id - 1;
+        int pairs = FIRST_NAMES.length * LAST_NAMES.length;
+        String name = FIRST_NAMES[index % FIRST_NAMES.length] + " " + LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length];
+        return index < pairs ? name : name + " " + (1 + index / pairs);
+    }
+
+    // Unique titles, so lookups by title stay unambiguous: every combination, then volumes
+    private static String title(int id) {
+        int index = id - 1;
+        int combinations = TITLE_ADJECTIVES.length * TITLE_NOUNS.length * TITLE_PLACES.length;
+        int combination = index % combinations;
+        String title = "The " + TITLE_ADJECTIVES[combination % TITLE_ADJECTIVES.length] + " " +
+                       TITLE_NOUNS[(combination / TITLE_ADJECTIVES.length) % TITLE_NOUNS.length] +
+                       TITLE_PLACES[combination / (TITLE_ADJECTIVES.length * TITLE_NOUNS.length)];
+        return index < combinations ? title : title + ", Volume " + (1 + index / combinations);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    // Index of the first cumulative weight above u
+    private static int pick(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    // Book prices and genres, and the running sales totals, indexed by id
+    private static final class Sales {
+        final long[] bookPriceCents;
+        final int[] bookGenre;
+        final long[] bookQuantity;
+        final int[] bookItems;
+        final long[] customerCents;
+        final int[] customerOrders;
+
+        Sales(Options options) {
+            bookPriceCents = new long[options.books + 1];
+            bookGenre = new int[options.books + 1];
+            bookQuantity = new long[options.books + 1];
+            bookItems = new int[options.books + 1];
+            customerCents = new long[options.customers + 1];
+            customerOrders = new int[options.customers + 1];
+        }
+    }
+
+    // Batched multi-row INSERT into one table: values are buffered until a statement's
+    // worth of rows is complete, and a final partial statement is sized to fit on flush
+    private static final class Inserter implements AutoCloseable {
+        private final Connection connection;
+        private final String target;
+        private final int columns;
+        private final PreparedStatement statement;
+        private final Object[] values;
+        private int buffered;
+        private int queued;
+
+        Inserter(Connection connection, String target, int columns) throws SQLException {
+            this.connection = connection;
+            this.target = target;
+            this.columns = columns;
+            this.statement = connection.prepareStatement(sql(ROWS_PER_STATEMENT));
+            this.values = new Object[ROWS_PER_STATEMENT * columns];
+        }
+
+        void add(Object... row) throws SQLException {
+            System.arraycopy(row, 0, values, buffered * columns, columns);
+            if (++buffered == ROWS_PER_STATEMENT) {
+                bind(statement, ROWS_PER_STATEMENT);
+                statement.addBatch();
+                buffered = 0;
+                if (++queued == STATEMENTS_PER_BATCH) {
+                    statement.executeBatch();
+                    queued = 0;
+                }
+            }
+        }
+
+        // Write everything added so far
+        void flush() throws SQLException {
+            if (queued > 0) {
+                statement.executeBatch();
+                queued = 0;
+            }
+            if (buffered > 0) {
+                try (PreparedStatement tail = connection.prepareStatement(sql(buffered))) {
+                    bind(tail, buffered);
+                    tail.executeUpdate();
+                }
+                buffered = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                statement.close();
+            }
+        }
+
+        private String sql(int rows) {
+            StringBuilder row = new StringBuilder("(?");
+            for (int i = 1; i < columns; i++) {
+                row.append(", ?");
+            }
+            row.append(')');
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(target).append(" VALUES ").append(row);
+            for (int i = 1; i < rows; i++) {
+                sql.append(", ").append(row);
+            }
+            return sql.toString();
+        }
+
+        private void bind(PreparedStatement pstmt, int rows) throws SQLException {
+            for (int i = 0; i < rows * columns; i++) {
+                Object value = values[i];
+                if (value instanceof Double) {
+                    pstmt.setDouble(i + 1, (Double) value);
+                } else if (value instanceof Number) {
+                    pstmt.setLong(i + 1, ((Number) value).longValue());
+                } else {
+                    pstmt.setString(i + 1, (String) value);
+                }
+                values[i] = null;
+            }
+        }
+    }
+
+    // Zipf-distributed ids 1..n: rank k is drawn with probability proportional to 1/k^skew,
+    // and ranks map to ids through a seeded shuffle so popularity is not tied to insertion order
+    private static final class Zipf {
+        private final double[] cumulative;
+        private final int[] ids;
+        private final Random random;
+
+        Zipf(int n, double skew, Random random) {
+            this.random = random;
+            double[] weights = new double[n];
+            for (int rank = 0; rank < n; rank++) {
+                weights[rank] = 1 / Math.pow(rank + 1, skew);
+            }
+            cumulative = cumulative(weights);
+            ids = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = i + 1;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = ids[i];
+                ids[i] = ids[j];
+                ids[j] = swap;
+            }
+        }
+
+        int next() {
+            return ids[pick(cumulative, random.nextDouble())];
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteJDBCLoader;
+import org.sqlite.util.OSInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Connections to the bookstore database file, which runs in WAL mode so that
+// readers and the writer no longer block each other. There is one writer
+// connection for every insert, update and delete (SQLite allows one writer at
+// a time anyway) and one read-only connection per read thread, opened on first
+// use, for page loads, searches, reports and exports. Threads that live for a
+// single request (ApiServer's) borrow a reader from a small pool instead. Commits do not trigger
+// checkpoints; a background thread copies the WAL back into the database every
+// second instead, so saves never pay for it. The writer and readers are wrapped
+// by QueryMetrics, which times every statement the application runs on them.
+final class Database {
+    private static final Logger log = LoggerFactory.getLogger(Database.class);
+
+    static final int BUSY_TIMEOUT_MS = 5000;
+    // Page cache per connection, in KiB (negative cache_size values are KiB)
+    static final int WRITER_CACHE_KB = 32 * 1024;
+    static final int READER_CACHE_KB = 16 * 1024;
+    static final long CHECKPOINT_INTERVAL_MS = 1000;
+    // After a checkpoint resets the WAL, the file is truncated back to this size
+    static final long WAL_SIZE_LIMIT_BYTES = 64L * 1024 * 1024;
+    // Queries listed in the statistics logged at close
+    static final int REPORT_QUERIES = 20;
+    // Readers lent out by borrowReader at once; further borrowers wait
+    static final int POOLED_READERS = 8;
+
+    private static volatile String url;
+    private static volatile Connection writer;
+    // Also answers data_version queries; it never writes, so every commit shows up there
+    private static Connection checkpointer;
+    private static final Object checkpointerLock = new Object();
+    private static ScheduledExecutorService checkpointScheduler;
+    private static final ThreadLocal<Connection> readers = new ThreadLocal<>();
+    private static final List<Connection> openReaders = new CopyOnWriteArrayList<>();
+    private static final BlockingQueue<Connection> idleReaders = new LinkedBlockingQueue<>();
+    private static final Semaphore readerPermits = new Semaphore(POOLED_READERS);
+
+    private static final AtomicLong checkpoints = new AtomicLong();
+    private static volatile long walFrames;
+    private static volatile long walFramesPending;
+
+    private Database() {
+    }
+
+    // Open (or create) the database file, switch it to WAL mode and start the
+    // checkpoint thread. Returns the writer connection.
+    static synchronized Connection open(String path) throws SQLException {
+        if (writer != null) {
+            throw new IllegalStateException("Database already open: " + url);
+        }
+        url = "jdbc:sqlite:" + path;
+        useCachedNativeLibrary();
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode = WAL")) {
+                if (!rs.next() || !"wal".equalsIgnoreCase(rs.getString(1))) {
+                    throw new SQLException("Could not switch " + path + " to WAL mode");
+                }
+            }
+            // NORMAL only syncs at checkpoints in WAL mode; a power loss can drop the
+            // last commits but cannot corrupt the database
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA cache_size = -" + WRITER_CACHE_KB);
+            stmt.execute("PRAGMA wal_autocheckpoint = 0");
+            stmt.execute("PRAGMA journal_size_limit = " + WAL_SIZE_LIMIT_BYTES);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        writer = QueryMetrics.wrap(connection);
+
+        checkpointer = DriverManager.getConnection(url);
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(Database::checkpoint,
+            CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(Database::close, "database-close"));
+        return writer;
+    }
+
+    // sqlite-jdbc copies its native library out of its jar into a new temporary
+    // file on every start, a few hundred milliseconds before the first connection.
+    // Keep one copy per driver version, platform and jar entry in the user's cache
+    // directory and load that instead. The entry's size and CRC come from the jar's
+    // directory, so they cost nothing to read. They name the cached file's folder, and a
+    // cached file of the wrong size (an interrupted copy) is replaced. When the
+    // platform lookup, which is driver-internal API, or anything else fails, the driver
+    // is left to extract as usual.
+    // Call before the first connection is opened; open() does.
+    static void useCachedNativeLibrary() {
+        if (System.getProperty("org.sqlite.lib.path") != null) {
+            return;
+        }
+        try {
+            String name = System.mapLibraryName("sqlitejdbc");
+            String platform = OSInfo.getNativeLibFolderPathForCurrentOS();
+            URL url = SQLiteJDBCLoader.class.getResource("/org/sqlite/native/" + platform + "/" + name);
+            if (url == null || !"jar".equals(url.getProtocol())) {
+                return;
+            }
+            JarURLConnection jar = (JarURLConnection) url.openConnection();
+            jar.setUseCaches(false);
+            JarEntry entry;
+            try (JarFile file = jar.getJarFile()) {
+                entry = file.getJarEntry(jar.getEntryName());
+            }
+            if (entry == null || entry.getSize() < 0) {
+                return;
+            }
+            Path dir = Paths.get(System.getProperty("user.home"), ".cache", "bookstore",
+                                 "sqlite-jdbc-" + SQLiteJDBCLoader.getVersion()).resolve(platform)
+                .resolve(Long.toHexString(entry.getCrc()) + "-" + entry.getSize());
+            Path library = dir.resolve(name);
+            if (!Files.isRegularFile(library) || Files.size(library) != entry.getSize()) {
+                try (InputStream in = url.openStream()) {
+                    Files.createDirectories(dir);
+                    // Copy under another name first so a concurrent run never loads half a library
+                    Path partial = Files.createTempFile(dir, name, ".part");
+                    Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(partial, library, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            System.setProperty("org.sqlite.lib.path", dir.toString());
+            System.setProperty("org.sqlite.lib.name", name);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            log.warn("Not caching the SQLite native library: {}", e.toString());
+        }
+    }
+
+    static Connection writer() {
+        Connection connection = writer;
+        if (connection == null) {
+            throw new IllegalStateException("Database is not open");
+        }
+        return connection;
+    }
+
+    // The calling thread's read-only connection, opened on first use
+    static Connection reader() throws SQLException {
+        Connection connection = readers.get();
+        if (connection == null || connection.isClosed()) {
+            connection = openReader();
+            readers.set(connection);
+        }
+        return connection;
+    }
+
+    // A read-only connection from the pool, for threads that do not outlive one request;
+    // blocks while POOLED_READERS are lent out. Hand it back with returnReader.
+    static Connection borrowReader() throws SQLException {
+        try {
+            readerPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        try {
+            Connection connection;
+            while ((connection = idleReaders.poll()) != null) {
+                if (!connection.isClosed()) {
+                    return connection;
+                }
+            }
+            return openReader();
+        } catch (SQLException | RuntimeException e) {
+            readerPermits.release();
+            throw e;
+        }
+    }
+
+    static void returnReader(Connection connection) {
+        idleReaders.offer(connection);
+        readerPermits.release();
+    }
+
+    private static Connection openReader() throws SQLException {
+        if (url == null) {
+            throw new IllegalStateException("Database is not open");
+        }
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON");
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA cache_size = -" + READER_CACHE_KB);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        connection = QueryMetrics.wrap(connection);
+        openReaders.add(connection);
+        return connection;
+    }
+
+    // Copy committed WAL frames back into the database without waiting on anyone.
+    // Frames still visible to a running read stay in the WAL until the next round.
+    static void checkpoint() {
+        synchronized (checkpointerLock) {
+            try (Statement stmt = checkpointer.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+                if (rs.next()) {
+                    long frames = rs.getLong(2);
+                    long done = rs.getLong(3);
+                    checkpoints.incrementAndGet();
+                    walFrames = frames;
+                    walFramesPending = Math.max(0, frames - done);
+                }
+            } catch (SQLException e) {
+                log.warn("WAL checkpoint failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Changes whenever any connection, in this process or another, commits to the
+    // database; equal values mean nothing has changed in between
+    static long dataVersion() throws SQLException {
+        synchronized (checkpointerLock) {
+            if (checkpointer == null || checkpointer.isClosed()) {
+                throw new IllegalStateException("Database is not open");
+            }
+            try (Statement stmt = checkpointer.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Stop checkpointing and close every connection; the last close folds the WAL
+    // into the database file
+    static synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        checkpointScheduler.shutdownNow();
+        for (Connection reader : openReaders) {
+            closeQuietly(reader);
+        }
+        openReaders.clear();
+        idleReaders.clear();
+        try (Statement stmt = writer.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException e) {
+            log.warn("Final WAL checkpoint failed: {}", e.getMessage());
+        }
+        synchronized (checkpointerLock) {
+            closeQuietly(checkpointer);
+        }
+        closeQuietly(writer);
+        writer = null;
+        url = null;
+        QueryMetrics.logReport(REPORT_QUERIES);
+    }
+
+    static String stats() {
+        return String.format("WAL frames=%d pending=%d checkpoints=%d readers=%d",
+            walFrames, walFramesPending, checkpoints.get(), openReaders.size());
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Closing anyway
+        }
+    }
+}
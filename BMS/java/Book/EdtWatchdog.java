@@ -0,0 +1,284 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.AbstractButton;
+import javax.swing.SwingUtilities;
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Dialog;
+import java.awt.EventQueue;
+import java.awt.Frame;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Watches the Event Dispatch Thread for stalls. A replacement EventQueue times
+// every event's handler, and its own time (less any nested event loop, such
+// as a modal dialog, and the time that loop spends waiting) goes into a
+// latency histogram. A sampler thread checks the EDT every quarter threshold;
+// once a handler has run for bms.edtStallMs (default 250) without yielding it
+// captures the EDT's stack, and when the handler finishes the stall is kept,
+// with its trigger (the button, key or window it came from), and logged to the
+// "Book.EdtWatchdog" slf4j logger. export() writes everything as JSON.
+final class EdtWatchdog {
+    static final long STALL_NANOS = Long.getLong("bms.edtStallMs", 250) * 1_000_000;
+    static final int MAX_STALLS = 100;
+    static final int STACK_DEPTH = 40;
+
+    private static final Logger log = LoggerFactory.getLogger(EdtWatchdog.class);
+
+    // One handler that ran over the threshold without yielding
+    static final class Stall {
+        final long startMillis;
+        final long nanos;
+        final String trigger;
+        final String stack;
+
+        Stall(long startMillis, long nanos, String trigger, String stack) {
+            this.startMillis = startMillis;
+            this.nanos = nanos;
+            this.trigger = trigger;
+            this.stack = stack;
+        }
+    }
+
+    // An event being dispatched; a segment is a stretch of its handler running without a nested loop
+    private static final class Dispatch {
+        final AWTEvent event;
+        long ownNanos;
+        volatile long segmentStart;
+        volatile String stack;
+
+        Dispatch(AWTEvent event, long start) {
+            this.event = event;
+            this.segmentStart = start;
+        }
+    }
+
+    private static final QueryMetrics.Histogram histogram = new QueryMetrics.Histogram();
+    private static final LongAdder events = new LongAdder();
+    private static final AtomicLong maxNanos = new AtomicLong();
+    private static final LongAdder stallCount = new LongAdder();
+    private static final Deque<Stall> stalls = new ArrayDeque<>();
+
+    // Touched only on the EDT
+    private static final Deque<Dispatch> dispatches = new ArrayDeque<>();
+    // The dispatch whose handler is running right now; null while the EDT waits for events
+    private static volatile Dispatch running;
+    private static volatile Thread edt;
+    private static ScheduledExecutorService sampler;
+
+    private EdtWatchdog() {
+    }
+
+    static synchronized void install() {
+        if (sampler != null) {
+            return;
+        }
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new MonitoredQueue());
+        long interval = Math.max(TimeUnit.MILLISECONDS.toNanos(10), STALL_NANOS / 4);
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(EdtWatchdog::sample, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    static String stats() {
+        return String.format(Locale.ROOT, "EDT events=%d p50=%.2fms p99=%.2fms max=%.0fms stalls=%d",
+            events.sum(), percentile(0.50) / 1e6, percentile(0.99) / 1e6, maxNanos.get() / 1e6, stallCount.sum());
+    }
+
+    static List<Stall> stalls() {
+        synchronized (stalls) {
+            return new ArrayList<>(stalls);
+        }
+    }
+
+    // Summary, histogram and recent stalls as one JSON document
+    static void export(File file) throws IOException {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("exportedAt", Instant.now().toString());
+        summary.put("stallThresholdMs", STALL_NANOS / 1_000_000);
+        summary.put("events", events.sum());
+        summary.put("p50Ms", percentile(0.50) / 1e6);
+        summary.put("p90Ms", percentile(0.90) / 1e6);
+        summary.put("p99Ms", percentile(0.99) / 1e6);
+        summary.put("p999Ms", percentile(0.999) / 1e6);
+        summary.put("maxMs", maxNanos.get() / 1e6);
+        summary.put("stalls", stallCount.sum());
+
+        List<Object> buckets = new ArrayList<>();
+        for (Map.Entry<Long, Long> bucket : histogram.buckets().entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("upToMs", bucket.getKey() / 1e6);
+            row.put("count", bucket.getValue());
+            buckets.add(row);
+        }
+        List<Object> recent = new ArrayList<>();
+        for (Stall stall : stalls()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("at", Instant.ofEpochMilli(stall.startMillis).toString());
+            row.put("durationMs", stall.nanos / 1e6);
+            row.put("trigger", stall.trigger);
+            row.put("stack", stall.stack);
+            recent.add(row);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("summary", summary);
+        report.put("histogram", buckets);
+        report.put("recentStalls", recent);
+        Files.write(file.toPath(), Json.write(report).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long percentile(double quantile) {
+        return Math.min(histogram.valueAt(quantile), maxNanos.get());
+    }
+
+    // Runs on the sampler thread: take the stack of a handler that has gone over the threshold
+    private static void sample() {
+        Dispatch dispatch = running;
+        Thread thread = edt;
+        if (dispatch == null || thread == null || dispatch.stack != null ||
+            System.nanoTime() - dispatch.segmentStart < STALL_NANOS) {
+            return;
+        }
+        StringBuilder stack = new StringBuilder();
+        StackTraceElement[] frames = thread.getStackTrace();
+        for (int i = 0; i < Math.min(frames.length, STACK_DEPTH); i++) {
+            stack.append("at ").append(frames[i]).append('\n');
+        }
+        if (frames.length > STACK_DEPTH) {
+            stack.append("... ").append(frames.length - STACK_DEPTH).append(" more\n");
+        }
+        dispatch.stack = stack.toString();
+    }
+
+    // Close the running segment of a dispatch, keeping it as a stall if it was long enough
+    private static void endSegment(Dispatch dispatch, long now) {
+        long segment = now - dispatch.segmentStart;
+        dispatch.ownNanos += segment;
+        if (segment < STALL_NANOS) {
+            return;
+        }
+        String stack = dispatch.stack != null ? dispatch.stack : "(not sampled)\n";
+        dispatch.stack = null;
+        Stall stall = new Stall(System.currentTimeMillis() - segment / 1_000_000, segment, describe(dispatch.event), stack);
+        stallCount.increment();
+        synchronized (stalls) {
+            if (stalls.size() == MAX_STALLS) {
+                stalls.removeFirst();
+            }
+            stalls.addLast(stall);
+        }
+        log.warn("EDT stalled for {} ms handling {}\n{}", segment / 1_000_000, stall.trigger, stack);
+    }
+
+    // What the user did: the event type, the component it reached and the window's title
+    static String describe(AWTEvent event) {
+        Object source = event.getSource();
+        String type = event.paramString();
+        int comma = type.indexOf(',');
+        if (!(source instanceof Component)) {
+            // invokeLater tasks: the runnable's class names the code that queued it
+            int runnable = type.indexOf("runnable=");
+            if (runnable < 0) {
+                return event.getClass().getSimpleName();
+            }
+            String task = type.substring(runnable + "runnable=".length()).split("[,@/]")[0];
+            return "invokeLater " + task;
+        }
+        Component target = (Component) source;
+        if (event instanceof MouseEvent) {
+            MouseEvent mouse = (MouseEvent) event;
+            Component deepest = SwingUtilities.getDeepestComponentAt(target, mouse.getX(), mouse.getY());
+            target = deepest != null ? deepest : target;
+        }
+        StringBuilder trigger = new StringBuilder(comma > 0 ? type.substring(0, comma) : type).append(" on ");
+        // Anonymous subclasses (the styled buttons) are named after what they extend
+        Class<?> componentClass = target.getClass();
+        while (componentClass.getSimpleName().isEmpty()) {
+            componentClass = componentClass.getSuperclass();
+        }
+        if (target instanceof AbstractButton && ((AbstractButton) target).getText() != null &&
+            !((AbstractButton) target).getText().isEmpty()) {
+            trigger.append('"').append(((AbstractButton) target).getText()).append("\" ");
+        }
+        trigger.append(componentClass.getSimpleName());
+        Window window = target instanceof Window ? (Window) target : SwingUtilities.getWindowAncestor(target);
+        String title = window instanceof Dialog ? ((Dialog) window).getTitle()
+                     : window instanceof Frame ? ((Frame) window).getTitle() : null;
+        if (title != null && !title.isEmpty()) {
+            trigger.append(" in \"").append(title).append('"');
+        }
+        return trigger.toString();
+    }
+
+    private static final class MonitoredQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            long start = System.nanoTime();
+            edt = Thread.currentThread();
+            Dispatch parent = dispatches.peek();
+            if (parent != null) {
+                endSegment(parent, start);
+            }
+            Dispatch dispatch = new Dispatch(event, start);
+            dispatches.push(dispatch);
+            running = dispatch;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long end = System.nanoTime();
+                dispatches.pop();
+                endSegment(dispatch, end);
+                histogram.record(dispatch.ownNanos);
+                events.increment();
+                maxNanos.accumulateAndGet(dispatch.ownNanos, Math::max);
+                if (parent != null) {
+                    parent.segmentStart = end;
+                }
+                running = parent;
+            }
+        }
+
+        // A nested loop waiting for events (a modal dialog open) is not the handler's time
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            Dispatch dispatch = dispatches.peek();
+            if (dispatch != null) {
+                endSegment(dispatch, System.nanoTime());
+                running = null;
+            }
+            try {
+                return super.getNextEvent();
+            } finally {
+                if (dispatch != null) {
+                    dispatch.segmentStart = System.nanoTime();
+                    running = dispatch;
+                }
+            }
+        }
+    }
+}
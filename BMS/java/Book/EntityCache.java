@@ -0,0 +1,257 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory id -> name (and, for books, price and author) lookup for authors,
+// customers and books. Combo boxes and order item rows carry LookupItems, so
+// saving a form uses the id the user picked instead of re-resolving a display
+// name. Loaded in the background once the main window is up, without blocking
+// lookups from the EDT meanwhile; the dialogs write changes through with put
+// and remove after their transaction commits, so only bulk imports reload it.
+// Each kind also keeps a SuggestionIndex that backs the autocomplete combos.
+final class EntityCache {
+
+    enum Kind {
+        AUTHOR("SELECT author_id, name, 0, 0 FROM authors"),
+        CUSTOMER("SELECT customer_id, name, 0, 0 FROM customers"),
+        BOOK("SELECT book_id, title, price_cents, author_id FROM books");
+
+        final String query;
+        final String keyColumn;
+
+        Kind(String query) {
+            this.query = query;
+            this.keyColumn = query.substring("SELECT ".length(), query.indexOf(','));
+        }
+    }
+
+    // An entity as shown in a combo box or order item row; renders as its name
+    static final class LookupItem {
+        final Kind kind;
+        final int id;
+        final String name;
+        final long priceCents; // books only
+        final int authorId;    // books only
+
+        LookupItem(Kind kind, int id, String name, long priceCents, int authorId) {
+            this.kind = kind;
+            this.id = id;
+            this.name = name;
+            this.priceCents = priceCents;
+            this.authorId = authorId;
+        }
+
+        static LookupItem author(int id, String name) {
+            return new LookupItem(Kind.AUTHOR, id, name, 0, 0);
+        }
+
+        static LookupItem customer(int id, String name) {
+            return new LookupItem(Kind.CUSTOMER, id, name, 0, 0);
+        }
+
+        static LookupItem book(int id, String title, long priceCents, int authorId) {
+            return new LookupItem(Kind.BOOK, id, title, priceCents, authorId);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LookupItem && ((LookupItem) other).kind == kind && ((LookupItem) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return kind.hashCode() * 31 + id;
+        }
+    }
+
+    // Replaced as a whole by load; read and changed only while holding the class lock
+    private static Map<Kind, Map<Integer, LookupItem>> entries = new EnumMap<>(Kind.class);
+    private static Map<Kind, SuggestionIndex> indexes = new EnumMap<>(Kind.class);
+    // put and remove calls made while a load reads the tables, replayed onto its result
+    private static List<LookupItem[]> changesDuringLoad;
+    private static int loadsRunning;
+    // Id lookups (get and cached) answered from memory and not; suggestions are counted apart
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong suggestions = new AtomicLong();
+
+    static {
+        for (Kind kind : Kind.values()) {
+            entries.put(kind, new HashMap<>());
+            indexes.put(kind, new SuggestionIndex());
+        }
+    }
+
+    private EntityCache() {
+    }
+
+    // Read every entity and build the suggestion indexes without holding the lock, so the
+    // EDT's lookups keep answering from the old maps meanwhile, then swap the new ones in
+    static void load(Connection connection) throws SQLException {
+        synchronized (EntityCache.class) {
+            if (loadsRunning++ == 0) {
+                changesDuringLoad = new ArrayList<>();
+            }
+        }
+        try {
+            Map<Kind, Map<Integer, LookupItem>> loadedEntries = new EnumMap<>(Kind.class);
+            Map<Kind, SuggestionIndex> loadedIndexes = new EnumMap<>(Kind.class);
+            for (Kind kind : Kind.values()) {
+                Map<Integer, LookupItem> items = new HashMap<>();
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery(kind.query)) {
+                    while (rs.next()) {
+                        items.put(rs.getInt(1), read(kind, rs));
+                    }
+                }
+                loadedEntries.put(kind, items);
+                loadedIndexes.put(kind, SuggestionIndex.build(items.values()));
+            }
+            synchronized (EntityCache.class) {
+                entries = loadedEntries;
+                indexes = loadedIndexes;
+                // {item} for a put, {null, item} for a remove, in the order they were made
+                for (LookupItem[] change : changesDuringLoad) {
+                    if (change[0] != null) {
+                        apply(change[0]);
+                    } else {
+                        unapply(change[1].kind, change[1].id);
+                    }
+                }
+            }
+        } finally {
+            synchronized (EntityCache.class) {
+                if (--loadsRunning == 0) {
+                    changesDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    // Autocomplete suggestions: names starting with the text first, then names containing it
+    static List<LookupItem> suggest(Kind kind, String text, int limit) {
+        suggestions.incrementAndGet();
+        return index(kind).suggest(text, limit);
+    }
+
+    // Look an entity up by id, reading just that row if it is not cached. The read
+    // runs without the lock, so EDT lookups never wait behind the database.
+    static LookupItem get(Connection connection, Kind kind, int id) throws SQLException {
+        LookupItem item = entry(kind, id);
+        if (item != null) {
+            hits.incrementAndGet();
+            return item;
+        }
+        misses.incrementAndGet();
+        try (PreparedStatement pstmt = connection.prepareStatement(kind.query + " WHERE " + kind.keyColumn + " = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    item = read(kind, rs);
+                    put(item);
+                }
+            }
+        }
+        return item;
+    }
+
+    // The entity as stored now, never the cached copy, which another terminal may have
+    // made stale; for writes that depend on it, such as pricing an order. Null if it is
+    // gone. The cache is brought up to date with what was read.
+    static LookupItem current(Connection connection, Kind kind, int id) throws SQLException {
+        LookupItem item = null;
+        try (PreparedStatement pstmt = connection.prepareStatement(kind.query + " WHERE " + kind.keyColumn + " = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    item = read(kind, rs);
+                }
+            }
+        }
+        if (item != null) {
+            put(item);
+        } else {
+            remove(kind, id);
+        }
+        return item;
+    }
+
+    // Cached entry only, for callers on the EDT that must not touch the database
+    static LookupItem cached(Kind kind, int id) {
+        LookupItem item = entry(kind, id);
+        (item != null ? hits : misses).incrementAndGet();
+        return item;
+    }
+
+    // The entity behind a combo box selection: the item itself when one was picked,
+    // otherwise the first entry whose name matches the typed text exactly
+    static synchronized LookupItem resolve(Kind kind, Object selection) {
+        if (selection instanceof LookupItem) {
+            return (LookupItem) selection;
+        }
+        if (selection == null) {
+            return null;
+        }
+        return indexes.get(kind).exact(selection.toString().trim());
+    }
+
+    static synchronized void put(LookupItem item) {
+        apply(item);
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(new LookupItem[] {item});
+        }
+    }
+
+    static synchronized void remove(Kind kind, int id) {
+        unapply(kind, id);
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(new LookupItem[] {null, new LookupItem(kind, id, null, 0, 0)});
+        }
+    }
+
+    private static void apply(LookupItem item) {
+        entries.get(item.kind).put(item.id, item);
+        indexes.get(item.kind).add(item);
+    }
+
+    private static void unapply(Kind kind, int id) {
+        if (entries.get(kind).remove(id) != null) {
+            indexes.get(kind).remove(id);
+        }
+    }
+
+    static String stats() {
+        long hit = hits.get();
+        long miss = misses.get();
+        return String.format("Lookup cache hits=%d misses=%d (%.1f%% hit rate); suggestions served=%d, book index %s",
+            hit, miss, hit + miss == 0 ? 0.0 : hit * 100.0 / (hit + miss), suggestions.get(),
+            index(Kind.BOOK).stats());
+    }
+
+    private static synchronized LookupItem entry(Kind kind, int id) {
+        return entries.get(kind).get(id);
+    }
+
+    private static synchronized SuggestionIndex index(Kind kind) {
+        return indexes.get(kind);
+    }
+
+    private static LookupItem read(Kind kind, ResultSet rs) throws SQLException {
+        return new LookupItem(kind, rs.getInt(1), rs.getString(2), rs.getLong(3), rs.getInt(4));
+    }
+}
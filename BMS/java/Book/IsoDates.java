@@ -0,0 +1,87 @@
+package Book;
+
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.util.Locale;
+
+// Dates are stored as ISO-8601 TEXT (yyyy-MM-dd), which sorts and compares in
+// date order, so an index on a date column serves range queries. normalize()
+// turns the forms people type, and the free-form values older databases hold,
+// into that representation; anything it cannot read unambiguously is rejected.
+final class IsoDates {
+    // Bounds for an open end of a date range
+    static final String MIN = "0000-01-01";
+    static final String MAX = "9999-12-31";
+
+    // Tried in order; month before day in slashed dates, as in the rest of the UI's US conventions
+    private static final DateTimeFormatter[] FORMATS = {
+        strict("uuuu-M-d"),
+        strict("uuuu/M/d"),
+        strict("uuuu.M.d"),
+        strict("uuuuMMdd"),
+        strict("M/d/uuuu"),
+        strict("d.M.uuuu"),
+        strict("d MMM uuuu"),
+        strict("d MMMM uuuu"),
+        strict("MMM d, uuuu"),
+        strict("MMMM d, uuuu")
+    };
+
+    private IsoDates() {
+    }
+
+    private static DateTimeFormatter strict(String pattern) {
+        return new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(pattern)
+            .toFormatter(Locale.ENGLISH).withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    // Blank text is no date (null); a time of day after the date ("2024-01-05 14:30") is dropped
+    static String normalize(String text) throws ParseException {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String value = text.trim();
+        if (isIso(value)) {
+            return value;
+        }
+        int time = value.length() > 10 ? indexOfTime(value) : -1;
+        if (time > 0) {
+            value = value.substring(0, time).trim();
+        }
+        for (DateTimeFormatter format : FORMATS) {
+            try {
+                return LocalDate.parse(value, format).toString();
+            } catch (DateTimeException e) {
+                // Try the next form
+            }
+        }
+        throw new ParseException("Not a date: " + text, 0);
+    }
+
+    // True for an existing calendar date written exactly as yyyy-MM-dd
+    static boolean isIso(String text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return false;
+        }
+        try {
+            return LocalDate.parse(text).toString().equals(text);
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    // Start of a "T14:30" or " 14:30" suffix after an ISO-like date
+    private static int indexOfTime(String value) {
+        for (int i = 8; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == 'T' || c == ' ') && i + 3 < value.length() && value.charAt(i + 3) == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
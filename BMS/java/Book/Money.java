@@ -0,0 +1,133 @@
+package Book;
+
+// An amount of money in cents. Prices and totals are stored as INTEGER cents
+// (price_cents, total_cents, unit_price_cents) and summed as longs, so totals
+// are exact. Table models hold Money values: the renderer shows toString(),
+// which is formatted once per value without a Formatter, so repainting a large
+// table allocates nothing.
+final class Money implements Comparable<Money> {
+    static final Money ZERO = new Money(0);
+
+    final long cents;
+    private String text;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    // Exact parse of a plain amount ("12", "12.5", "12.34", "$1,234.50"); more than
+    // two decimals or anything else that is not a number throws NumberFormatException
+    static long parseCents(String text) {
+        String s = text.trim();
+        if (s.startsWith("$")) {
+            s = s.substring(1).trim();
+        }
+        boolean negative = s.startsWith("-");
+        if (negative || s.startsWith("+")) {
+            s = s.substring(1);
+        }
+        long units = 0;
+        int digits = 0;
+        int i = 0;
+        for (; i < s.length() && s.charAt(i) != '.'; i++) {
+            char c = s.charAt(i);
+            if (c == ',' && digits > 0) {
+                continue;
+            }
+            if (c < '0' || c > '9' || units > (Long.MAX_VALUE / 100 - 9) / 10) {
+                throw new NumberFormatException("Not an amount: " + text);
+            }
+            units = units * 10 + (c - '0');
+            digits++;
+        }
+        long fraction = 0;
+        int decimals = 0;
+        for (i++; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9' || ++decimals > 2) {
+                throw new NumberFormatException("Not an amount in cents: " + text);
+            }
+            fraction = fraction * 10 + (c - '0');
+        }
+        if (digits == 0 && decimals == 0) {
+            throw new NumberFormatException("Not an amount: " + text);
+        }
+        long cents = units * 100 + (decimals == 1 ? fraction * 10 : fraction);
+        return negative ? -cents : cents;
+    }
+
+    // "$1234.56", built in a char buffer
+    static String format(long cents) {
+        return text(cents, true);
+    }
+
+    // "1234.56", for editable fields and exports
+    static String plain(long cents) {
+        return text(cents, false);
+    }
+
+    private static String text(long cents, boolean symbol) {
+        char[] buf = new char[24];
+        int pos = buf.length;
+        long abs = Math.abs(cents);
+        if (abs < 0) { // Long.MIN_VALUE
+            return symbol ? "-$92233720368547758.08" : "-92233720368547758.08";
+        }
+        buf[--pos] = (char) ('0' + abs % 10);
+        buf[--pos] = (char) ('0' + abs / 10 % 10);
+        buf[--pos] = '.';
+        long units = abs / 100;
+        do {
+            buf[--pos] = (char) ('0' + units % 10);
+            units /= 10;
+        } while (units > 0);
+        if (symbol) {
+            buf[--pos] = '$';
+        }
+        if (cents < 0) {
+            buf[--pos] = '-';
+        }
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    Money times(int quantity) {
+        return ofCents(Math.multiplyExact(cents, quantity));
+    }
+
+    Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    String plain() {
+        return plain(cents);
+    }
+
+    @Override
+    public String toString() {
+        String s = text;
+        if (s == null) {
+            s = format(cents);
+            text = s;
+        }
+        return s;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+}
@@ -0,0 +1,234 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Persists an order header and its line items as one transaction. Lines carry
+// the book's LookupItem; any given only by title are resolved with a single IN
+// query. The items are written with one JDBC batch, so saving an order costs a
+// handful of statements and a single commit no matter how many lines it has.
+// Edits to an existing order write only the lines that changed: rows keep their
+// order_item_id, so untouched lines are neither deleted nor re-inserted.
+final class OrderWriter {
+    // Stay well under SQLite's host parameter limit when resolving titles
+    private static final int MAX_IN_PARAMS = 500;
+
+    private OrderWriter() {
+    }
+
+    // Item rows are {book, quantity, unitPrice}, where book is a LookupItem or a title and
+    // unitPrice is a Money or a number of cents
+    static int insertOrder(Connection connection, int customerId, String orderDate, long totalCents,
+                           List<Object[]> items) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+
+            int orderId = -1;
+            try (PreparedStatement orderStmt = connection.prepareStatement(
+                    "INSERT INTO orders (customer_id, order_date, total_cents) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                orderStmt.setInt(1, customerId);
+                orderStmt.setString(2, orderDate);
+                orderStmt.setLong(3, totalCents);
+                orderStmt.executeUpdate();
+                try (ResultSet generatedKeys = orderStmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        orderId = generatedKeys.getInt(1);
+                    }
+                }
+            }
+
+            insertItems(connection, orderId, items);
+            connection.commit();
+            return orderId;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // What an order update actually wrote
+    static final class ItemChanges {
+        int inserted;
+        int updated;
+        int deleted;
+
+        @Override
+        public String toString() {
+            return inserted + " added, " + updated + " changed, " + deleted + " removed";
+        }
+    }
+
+    // Apply an edited order atomically. Item rows are {book, quantity, unitPrice, orderItemId},
+    // with a null id for lines added in the dialog; stored lines missing from items are deleted.
+    // expectedVersion is the order's version when the dialog loaded it: if the order has been
+    // saved elsewhere since, nothing is written and RowVersions.ConflictException is thrown.
+    static ItemChanges updateOrder(Connection connection, int orderId, int expectedVersion, String orderDate,
+                                   long totalCents, List<Object[]> items) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+
+            RowVersions.claim(connection, "orders", "order_id", orderId, expectedVersion,
+                              "SELECT order_date, version FROM orders WHERE order_id = ?",
+                              rs -> new Object[] {rs.getString("order_date")});
+
+            try (PreparedStatement orderStmt = connection.prepareStatement(
+                    "UPDATE orders SET order_date = ?, total_cents = ? " +
+                    "WHERE order_id = ? AND (order_date IS NOT ? OR total_cents IS NOT ?)")) {
+                orderStmt.setString(1, orderDate);
+                orderStmt.setLong(2, totalCents);
+                orderStmt.setInt(3, orderId);
+                orderStmt.setString(4, orderDate);
+                orderStmt.setLong(5, totalCents);
+                orderStmt.executeUpdate();
+            }
+
+            // Stored lines by order_item_id: {book_id, quantity, unit_price_cents}
+            Map<Integer, Object[]> stored = new HashMap<>();
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT order_item_id, book_id, quantity, unit_price_cents FROM order_items WHERE order_id = ?")) {
+                pstmt.setInt(1, orderId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.put(rs.getInt(1), new Object[] {rs.getInt(2), rs.getInt(3), rs.getLong(4)});
+                    }
+                }
+            }
+
+            Map<String, Integer> bookIds = resolveTitles(connection, items);
+            ItemChanges changes = new ItemChanges();
+            List<Object[]> added = new ArrayList<>();
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "UPDATE order_items SET book_id = ?, quantity = ?, unit_price_cents = ? WHERE order_item_id = ?")) {
+                for (Object[] item : items) {
+                    Integer itemId = item.length > 3 && item[3] != null ? ((Number) item[3]).intValue() : null;
+                    Object[] before = itemId == null ? null : stored.remove(itemId);
+                    if (before == null) {
+                        // New in the dialog, or removed by someone else since it was loaded
+                        added.add(item);
+                        continue;
+                    }
+                    int bookId = bookId(item, bookIds);
+                    int quantity = ((Number) item[1]).intValue();
+                    long unitPriceCents = cents(item[2]);
+                    if (bookId == (int) before[0] && quantity == (int) before[1] && unitPriceCents == (long) before[2]) {
+                        continue;
+                    }
+                    pstmt.setInt(1, bookId);
+                    pstmt.setInt(2, quantity);
+                    pstmt.setLong(3, unitPriceCents);
+                    pstmt.setInt(4, itemId);
+                    pstmt.addBatch();
+                    changes.updated++;
+                }
+                if (changes.updated > 0) {
+                    pstmt.executeBatch();
+                }
+            }
+
+            if (!stored.isEmpty()) {
+                try (PreparedStatement pstmt = connection.prepareStatement(
+                        "DELETE FROM order_items WHERE order_item_id = ?")) {
+                    for (int itemId : stored.keySet()) {
+                        pstmt.setInt(1, itemId);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                changes.deleted = stored.size();
+            }
+
+            insertItems(connection, orderId, added);
+            changes.inserted = added.size();
+            connection.commit();
+            return changes;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Batch-insert the items; runs inside the caller's transaction
+    static void insertItems(Connection connection, int orderId, List<Object[]> items) throws SQLException {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> bookIds = resolveTitles(connection, items);
+
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO order_items (order_id, book_id, quantity, unit_price_cents) VALUES (?, ?, ?, ?)")) {
+            for (Object[] item : items) {
+                pstmt.setInt(1, orderId);
+                pstmt.setInt(2, bookId(item, bookIds));
+                pstmt.setInt(3, ((Number) item[1]).intValue());
+                pstmt.setLong(4, cents(item[2]));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static long cents(Object unitPrice) {
+        return unitPrice instanceof Money ? ((Money) unitPrice).cents : ((Number) unitPrice).longValue();
+    }
+
+    // Book ids for the lines that carry only a title
+    private static Map<String, Integer> resolveTitles(Connection connection, List<Object[]> items) throws SQLException {
+        Set<String> titles = new LinkedHashSet<>();
+        for (Object[] item : items) {
+            if (!(item[0] instanceof EntityCache.LookupItem)) {
+                titles.add((String) item[0]);
+            }
+        }
+        return titles.isEmpty() ? new HashMap<>() : resolveBookIds(connection, titles);
+    }
+
+    private static int bookId(Object[] item, Map<String, Integer> bookIds) throws SQLException {
+        Integer bookId = item[0] instanceof EntityCache.LookupItem
+            ? Integer.valueOf(((EntityCache.LookupItem) item[0]).id) : bookIds.get((String) item[0]);
+        if (bookId == null) {
+            throw new SQLException("Unknown book: " + item[0]);
+        }
+        return bookId;
+    }
+
+    // Title -> book_id for every title that exists, in as few queries as the parameter limit allows
+    static Map<String, Integer> resolveBookIds(Connection connection, Set<String> titles) throws SQLException {
+        Map<String, Integer> bookIds = new HashMap<>();
+        List<String> pending = new ArrayList<>(titles);
+        for (int start = 0; start < pending.size(); start += MAX_IN_PARAMS) {
+            List<String> slice = pending.subList(start, Math.min(pending.size(), start + MAX_IN_PARAMS));
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < slice.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ", ?");
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT title, MIN(book_id) FROM books WHERE title IN (" + placeholders + ") GROUP BY title")) {
+                for (int i = 0; i < slice.size(); i++) {
+                    pstmt.setString(i + 1, slice.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        bookIds.put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+            }
+        }
+        return bookIds;
+    }
+}
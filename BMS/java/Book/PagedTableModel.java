@@ -0,0 +1,482 @@
+package Book;
+
+import javax.swing.table.AbstractTableModel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Virtual table model for the entity tabs. Only the row keys are held for the
+// whole result (one int per row, read from the primary key index); the rows
+// themselves are fetched a page at a time with keyset predicates and dropped
+// again once they have scrolled out of view. A model can also show an explicit,
+// pre-ranked key list (search hits), in which case pages are fetched by key.
+// After a single row is saved or deleted, upsert/remove patch the key list and
+// re-read only that row instead of reloading the table. All queries run on the
+// DataAccessExecutor's read threads; cells of a page that is still loading
+// render empty.
+class PagedTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    static final int PAGE_SIZE = 200;
+    static final int PREFETCH_ROWS = 50; // Load the neighbouring page when this close to its edge
+    static final int MAX_CACHED_PAGES = 8;
+
+    interface RowMapper {
+        Object[] map(ResultSet rs) throws SQLException;
+    }
+
+    private final String name;
+    private final String[] columnNames;
+    private final String selectColumns;
+    private final String fromClause;
+    private final String keyColumn;
+    private final RowMapper rowMapper;
+    private final Consumer<Exception> onError;
+    // Stands in for a ranked key whose row was deleted after the search; one slot wider
+    // than the columns so the trailing version reads as missing too
+    private final Object[] deletedRow;
+
+    private String filterClause;
+    private Object[] filterParams = new Object[0];
+    private int[] keys = new int[0];
+    private boolean ranked; // keys are in caller-defined order rather than key order
+    private int generation;
+    private int layout; // Bumped whenever rows move, so page loads for the old positions are dropped
+    private final Set<Integer> loadingPages = new HashSet<>();
+    // Pages whose load failed; not retried on every repaint, only after a reload or refresh
+    private final Set<Integer> failedPages = new HashSet<>();
+
+    // Access-ordered so the least recently painted page is evicted first
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    // The name doubles as the executor channel, so a new load cancels the one it supersedes
+    PagedTableModel(String name, String[] columnNames, String selectColumns,
+                    String fromClause, String keyColumn, RowMapper rowMapper, Consumer<Exception> onError) {
+        this.name = name;
+        this.columnNames = columnNames;
+        this.selectColumns = selectColumns;
+        this.fromClause = fromClause;
+        this.keyColumn = keyColumn;
+        this.rowMapper = rowMapper;
+        this.onError = onError;
+        this.deletedRow = new Object[columnNames.length + 1];
+    }
+
+    // Restrict the model to rows matching the given SQL predicate (null for all rows) and reload
+    void setFilter(String clause, Object... params) {
+        filterClause = clause;
+        filterParams = params == null ? new Object[0] : params;
+        reload();
+    }
+
+    // Show exactly the keys returned by the loader, in the order it returns them
+    void setKeys(DataAccessExecutor.Task<int[]> keyLoader) {
+        filterClause = null;
+        filterParams = new Object[0];
+        load(keyLoader, true);
+    }
+
+    // Re-read the row keys in the background and drop every cached page
+    void reload() {
+        String query = keysQuery();
+        Object[] params = filterParams;
+        int expected = keys.length;
+        load(context -> loadKeys(context, query, params, expected), false);
+    }
+
+    private void load(DataAccessExecutor.Task<int[]> keyLoader, boolean rankedKeys) {
+        int requestGeneration = ++generation;
+        layout++;
+        loadingPages.clear();
+        failedPages.clear();
+
+        DataAccessExecutor.submitRead(name, "Loading " + name, keyLoader,
+            loaded -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                keys = loaded;
+                ranked = rankedKeys;
+                pages.clear();
+                fireTableDataChanged();
+            }, onError);
+    }
+
+    private int[] loadKeys(DataAccessExecutor.Context context, String query, Object[] params,
+                           int expected) throws SQLException {
+        int[] loaded = new int[Math.max(expected, 64)];
+        int count = 0;
+        try (PreparedStatement pstmt = context.connection().prepareStatement(query)) {
+            context.setStatement(pstmt);
+            bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == loaded.length) {
+                        if (context.isCancelled()) {
+                            break;
+                        }
+                        loaded = Arrays.copyOf(loaded, count * 2);
+                    }
+                    loaded[count++] = rs.getInt(1);
+                }
+            }
+        }
+        return Arrays.copyOf(loaded, count);
+    }
+
+    // Re-read one row after it was inserted or updated. A new row is slotted into
+    // key order; a row that no longer matches the filter is removed. Ranked lists
+    // (search hits) only refresh rows they already show.
+    void upsert(int key) {
+        int requestGeneration = generation;
+        String query = "SELECT " + selectColumns + " FROM " + fromClause + whereClause(keyColumn + " = ?");
+        Object[] params = filterParams;
+        DataAccessExecutor.submitRead(null, "Loading " + name, context -> fetchRow(context, query, params, key),
+            row -> {
+                if (requestGeneration != generation) {
+                    return; // A reload in flight already reads the new state
+                }
+                if (row == null) {
+                    remove(key);
+                    return;
+                }
+                int index = indexOf(key);
+                if (index >= 0) {
+                    Object[][] data = pages.get(index / PAGE_SIZE);
+                    if (data != null && index % PAGE_SIZE < data.length) {
+                        data[index % PAGE_SIZE] = row;
+                    }
+                    fireTableRowsUpdated(index, index);
+                } else if (!ranked) {
+                    insert(-index - 1, key, row);
+                }
+            }, onError);
+    }
+
+    // Drop a deleted row without reloading the rest
+    void remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        int[] shrunk = new int[keys.length - 1];
+        System.arraycopy(keys, 0, shrunk, 0, index);
+        System.arraycopy(keys, index + 1, shrunk, index, keys.length - index - 1);
+        keys = shrunk;
+
+        // The row's own page can be patched only if no later row has to move into it
+        int page = index / PAGE_SIZE;
+        Object[][] data = pages.get(page);
+        dropPagesAfter(page);
+        if (data != null && (page + 1) * PAGE_SIZE >= keys.length + 1 && index % PAGE_SIZE < data.length) {
+            Object[][] patched = new Object[data.length - 1][];
+            System.arraycopy(data, 0, patched, 0, index % PAGE_SIZE);
+            System.arraycopy(data, index % PAGE_SIZE + 1, patched, index % PAGE_SIZE, data.length - index % PAGE_SIZE - 1);
+            pages.put(page, patched);
+        } else {
+            pages.remove(page);
+        }
+        fireTableRowsDeleted(index, index);
+    }
+
+    private void insert(int index, int key, Object[] row) {
+        int[] grown = new int[keys.length + 1];
+        System.arraycopy(keys, 0, grown, 0, index);
+        grown[index] = key;
+        System.arraycopy(keys, index, grown, index + 1, keys.length - index);
+        keys = grown;
+
+        // Splice the row into its page; whatever overflows belongs to the next page, which is dropped
+        int page = index / PAGE_SIZE;
+        Object[][] data = pages.get(page);
+        dropPagesAfter(page);
+        if (data != null && index % PAGE_SIZE <= data.length) {
+            Object[][] patched = new Object[Math.min(PAGE_SIZE, data.length + 1)][];
+            System.arraycopy(data, 0, patched, 0, index % PAGE_SIZE);
+            patched[index % PAGE_SIZE] = row;
+            System.arraycopy(data, index % PAGE_SIZE, patched, index % PAGE_SIZE + 1,
+                             patched.length - index % PAGE_SIZE - 1);
+            pages.put(page, patched);
+        } else {
+            pages.remove(page);
+        }
+        fireTableRowsInserted(index, index);
+    }
+
+    // Re-fetch the loaded pages, keeping the key list; for changes to joined
+    // columns (an author or customer rename) that can touch any number of rows
+    void refreshLoadedRows() {
+        layout++;
+        pages.clear();
+        loadingPages.clear();
+        failedPages.clear();
+        if (keys.length > 0) {
+            fireTableRowsUpdated(0, keys.length - 1);
+        }
+    }
+
+    // Rows after the given page have shifted, so its cached successors are misaligned
+    private void dropPagesAfter(int page) {
+        pages.keySet().removeIf(cached -> cached > page);
+        layout++;
+        loadingPages.clear();
+    }
+
+    // Position of the key, or (-(insertion point) - 1) for a key-ordered model that lacks it
+    private int indexOf(int key) {
+        if (!ranked) {
+            return Arrays.binarySearch(keys, key);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object[] fetchRow(DataAccessExecutor.Context context, String query, Object[] params,
+                              int key) throws SQLException {
+        try (PreparedStatement pstmt = context.connection().prepareStatement(query)) {
+            int index = bind(pstmt, params);
+            pstmt.setInt(index, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rowMapper.map(rs) : null;
+            }
+        }
+    }
+
+    // The statements reload() and a keyset page load run, also used by the benchmarks.
+    // Both take the filter's parameters; a page query then takes its first key and size.
+    String keysQuery() {
+        return "SELECT " + keyColumn + " FROM " + fromClause + whereClause(null) + " ORDER BY " + keyColumn;
+    }
+
+    String pageQuery() {
+        return "SELECT " + selectColumns + " FROM " + fromClause + whereClause(keyColumn + " >= ?") +
+               " ORDER BY " + keyColumn + " LIMIT ?";
+    }
+
+    RowMapper rowMapper() {
+        return rowMapper;
+    }
+
+    // Query (with its parameters appended to params) for every row the model currently
+    // shows, in display order, without going through the page cache
+    String exportQuery(List<Object> params) {
+        String columns = "SELECT " + selectColumns + " FROM " + fromClause;
+        if (!ranked) {
+            params.addAll(Arrays.asList(filterParams));
+            return columns + whereClause(null) + " ORDER BY " + keyColumn;
+        }
+        // Ranked keys only exist in memory; hand them over as a JSON array and keep their order
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < keys.length; i++) {
+            json.append(i == 0 ? "" : ",").append(keys[i]);
+        }
+        params.add(json.append(']').toString());
+        return columns + " JOIN json_each(?) ranked ON " + keyColumn + " = ranked.value ORDER BY ranked.key";
+    }
+
+    String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    int getKeyAt(int row) {
+        return keys[row];
+    }
+
+    // The row's version, which the mappers of editable tables put after the visible
+    // columns; -1 while its page is not loaded, which any save will treat as a conflict
+    int getVersionAt(int row) {
+        Object[] values = loadedRow(row);
+        Object version = values != null && values.length > columnNames.length ? values[columnNames.length] : null;
+        return version instanceof Integer ? (Integer) version : -1;
+    }
+
+    // Whether the row's key was ranked by a search but the row has been deleted since
+    boolean isRowDeleted(int row) {
+        return loadedRow(row) == deletedRow;
+    }
+
+    // Whether the row's values are here to edit; if not, its page is requested
+    boolean isRowLoaded(int row) {
+        Object[] values = loadedRow(row);
+        if (values == null) {
+            page(row / PAGE_SIZE);
+        }
+        return values != null && values != deletedRow;
+    }
+
+    // The row's values if its page is loaded, otherwise null
+    private Object[] loadedRow(int row) {
+        Object[][] data = pages.get(row / PAGE_SIZE);
+        int offset = row % PAGE_SIZE;
+        return data == null || offset >= data.length ? null : data[offset];
+    }
+
+    @Override
+    public int getRowCount() {
+        return keys.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Make table read-only
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        int offset = row % PAGE_SIZE;
+        Object[][] data = page(page);
+
+        // Prefetch the neighbouring page before the viewport reaches it
+        if (offset >= PAGE_SIZE - PREFETCH_ROWS && (page + 1) * PAGE_SIZE < keys.length) {
+            page(page + 1);
+        } else if (offset < PREFETCH_ROWS && page > 0) {
+            page(page - 1);
+        }
+
+        if (data == null || offset >= data.length) {
+            return null;
+        }
+        return data[offset][column];
+    }
+
+    private Object[][] page(int page) {
+        Object[][] data = pages.get(page);
+        if (data == null && !failedPages.contains(page) && loadingPages.add(page)) {
+            requestPage(page);
+        }
+        return data;
+    }
+
+    private void requestPage(int page) {
+        int first = page * PAGE_SIZE;
+        int size = Math.min(PAGE_SIZE, keys.length - first);
+        int requestLayout = layout;
+        DataAccessExecutor.Task<Object[][]> fetch;
+        if (ranked) {
+            int[] pageKeys = Arrays.copyOfRange(keys, first, first + size);
+            fetch = context -> fetchPageByKeys(context, pageKeys);
+        } else {
+            int firstKey = keys[first];
+            Object[] params = filterParams;
+            String query = pageQuery();
+            fetch = context -> fetchPage(context, query, params, firstKey, size);
+        }
+
+        DataAccessExecutor.submitRead(null, "Loading " + name, fetch,
+            data -> {
+                if (requestLayout != layout) {
+                    return;
+                }
+                loadingPages.remove(page);
+                pages.put(page, data);
+                if (data.length > 0) {
+                    fireTableRowsUpdated(first, first + data.length - 1);
+                }
+            },
+            e -> {
+                if (requestLayout == layout) {
+                    loadingPages.remove(page);
+                    failedPages.add(page);
+                }
+                if (onError != null) {
+                    onError.accept(e);
+                }
+            });
+    }
+
+    private Object[][] fetchPage(DataAccessExecutor.Context context, String query, Object[] params, int firstKey,
+                                 int size) throws SQLException {
+        Object[][] data = new Object[size][];
+        try (PreparedStatement pstmt = context.connection().prepareStatement(query)) {
+            int index = bind(pstmt, params);
+            pstmt.setInt(index++, firstKey);
+            pstmt.setInt(index, size);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int i = 0;
+                while (rs.next() && i < size) {
+                    data[i++] = rowMapper.map(rs);
+                }
+                if (i < size) {
+                    // Rows were deleted underneath us; keep the page short rather than misaligned
+                    data = Arrays.copyOf(data, i);
+                }
+            }
+        }
+        return data;
+    }
+
+    private Object[][] fetchPageByKeys(DataAccessExecutor.Context context, int[] pageKeys) throws SQLException {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < pageKeys.length; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        String query = "SELECT " + selectColumns + ", " + keyColumn + " AS page_key FROM " + fromClause +
+                       " WHERE " + keyColumn + " IN (" + placeholders + ")";
+
+        Map<Integer, Object[]> rows = new HashMap<>();
+        try (PreparedStatement pstmt = context.connection().prepareStatement(query)) {
+            for (int i = 0; i < pageKeys.length; i++) {
+                pstmt.setInt(i + 1, pageKeys[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.put(rs.getInt("page_key"), rowMapper.map(rs));
+                }
+            }
+        }
+
+        // Put the rows back into ranked order; a key deleted since the search renders empty
+        Object[][] data = new Object[pageKeys.length][];
+        for (int i = 0; i < pageKeys.length; i++) {
+            Object[] row = rows.get(pageKeys[i]);
+            data[i] = row != null ? row : deletedRow;
+        }
+        return data;
+    }
+
+    private String whereClause(String extra) {
+        if (filterClause == null && extra == null) {
+            return "";
+        }
+        if (filterClause == null) {
+            return " WHERE " + extra;
+        }
+        return " WHERE (" + filterClause + ")" + (extra == null ? "" : " AND " + extra);
+    }
+
+    private static int bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        int index = 1;
+        for (Object param : params) {
+            pstmt.setObject(index++, param);
+        }
+        return index;
+    }
+}
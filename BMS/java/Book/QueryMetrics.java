@@ -0,0 +1,408 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-query latency and row counts for every statement run through a wrapped
+// connection. Database wraps the writer and reader connections, so the inline
+// SQL throughout the application is measured without touching the call sites.
+// A query's logical name is the method that prepared it (the first caller
+// outside JDBC and this class); each distinct SQL string under a name is kept
+// apart. A query's time runs from execute until its result set is exhausted or
+// closed, so it includes the row fetching SQLite does lazily in next().
+//
+// Queries slower than bms.slowQueryMs (default 100) are written to the
+// "Book.SlowQueries" slf4j logger with their EXPLAIN QUERY PLAN, captured once
+// per SQL string. report() lists the top offenders by total time; the status
+// bar opens the same table as a live view, and Database.close logs it.
+// Set -Dbms.queryMetrics=false to hand out the driver's connections unwrapped.
+final class QueryMetrics {
+    static final boolean ENABLED = !"false".equals(System.getProperty("bms.queryMetrics"));
+    static final long SLOW_QUERY_NANOS = Long.getLong("bms.slowQueryMs", 100) * 1_000_000;
+    static final int SQL_DISPLAY_LENGTH = 120;
+
+    private static final Logger slowLog = LoggerFactory.getLogger("Book.SlowQueries");
+    private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+    private static final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    // SQL text as prepared to its whitespace-normalized form; the application's strings are a fixed set
+    private static final Map<String, String> normalizedSql = new ConcurrentHashMap<>();
+    private static final int MAX_NORMALIZED_SQL = 10_000;
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    // Log-linear latency buckets in the style of HdrHistogram: exact below 32ns, then
+    // 16 linear sub-buckets per power of two, so any recorded value is within 1/16
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 16;
+        private static final int BUCKETS = (63 - 3) * SUB_BUCKETS;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(index(Math.max(0, nanos)));
+        }
+
+        // Upper bound of the bucket holding the given quantile (0..1) of recorded values
+        long valueAt(double quantile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts.get(i);
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        // Upper bound of each non-empty bucket with its count, lowest first
+        Map<Long, Long> buckets() {
+            Map<Long, Long> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = counts.get(i);
+                if (count > 0) {
+                    buckets.put(upperBound(i), count);
+                }
+            }
+            return buckets;
+        }
+
+        static int index(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            return (magnitude - 3) * SUB_BUCKETS + (int) (value >>> (magnitude - 4)) - SUB_BUCKETS;
+        }
+
+        static long upperBound(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int magnitude = index / SUB_BUCKETS + 3;
+            long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((sub + 1) << (magnitude - 4)) - 1;
+        }
+    }
+
+    // Everything recorded for one query name and SQL string
+    static final class QueryStats {
+        final String name;
+        final String sql;
+        final Histogram histogram = new Histogram();
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder slowCalls = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        volatile String plan;
+
+        QueryStats(String name, String sql) {
+            this.name = name;
+            this.sql = sql;
+        }
+
+        // Never above the largest value actually recorded
+        long percentile(double quantile) {
+            return Math.min(histogram.valueAt(quantile), maxNanos.get());
+        }
+
+        void record(long nanos, long rowCount) {
+            histogram.record(nanos);
+            calls.increment();
+            totalNanos.add(nanos);
+            rows.add(rowCount);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private QueryMetrics() {
+    }
+
+    // A connection that records every statement prepared or executed on it
+    static Connection wrap(Connection connection) {
+        if (!ENABLED) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    // Queries with the most total time first
+    static List<QueryStats> topOffenders(int limit) {
+        List<QueryStats> sorted = new ArrayList<>(queries.values());
+        sorted.sort(Comparator.comparingLong((QueryStats q) -> q.totalNanos.sum()).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    static void reset() {
+        queries.clear();
+    }
+
+    static String report(int limit) {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+            "%-45s %8s %10s %8s %8s %8s %8s %9s %6s  %s%n",
+            "query", "calls", "total ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows/call", "slow", "sql"));
+        for (QueryStats q : topOffenders(limit)) {
+            long calls = Math.max(1, q.calls.sum());
+            report.append(String.format(Locale.ROOT, "%-45s %8d %10.1f %8.2f %8.2f %8.2f %8.2f %9.1f %6d  %s%n",
+                q.name, q.calls.sum(), q.totalNanos.sum() / 1e6, q.percentile(0.50) / 1e6,
+                q.percentile(0.95) / 1e6, q.percentile(0.99) / 1e6, q.maxNanos.get() / 1e6,
+                (double) q.rows.sum() / calls, q.slowCalls.sum(), abbreviate(q.sql)));
+        }
+        return report.toString();
+    }
+
+    // Dump of the top offenders, written when the database closes
+    static void logReport(int limit) {
+        if (!queries.isEmpty() && log.isInfoEnabled()) {
+            log.info("Top {} queries by total time:{}{}", limit, System.lineSeparator(), report(limit));
+        }
+    }
+
+    static String abbreviate(String sql) {
+        return sql.length() <= SQL_DISPLAY_LENGTH ? sql : sql.substring(0, SQL_DISPLAY_LENGTH - 3) + "...";
+    }
+
+    private static QueryStats stats(String sql) {
+        String normalized = normalizedSql.get(sql);
+        if (normalized == null) {
+            normalized = sql.trim().replaceAll("\\s+", " ");
+            if (normalizedSql.size() < MAX_NORMALIZED_SQL) {
+                normalizedSql.put(sql, normalized);
+            }
+        }
+        String name = caller();
+        String text = normalized;
+        return queries.computeIfAbsent(name + '\n' + text, key -> new QueryStats(name, text));
+    }
+
+    // Class.method of the code that issued the statement; lambdas are named after their enclosing method
+    private static String caller() {
+        Optional<StackWalker.StackFrame> frame = stackWalker.walk(frames -> frames
+            .filter(f -> !f.getClassName().equals(QueryMetrics.class.getName()) &&
+                         !f.getClassName().startsWith(QueryMetrics.class.getName() + "$") &&
+                         !f.getClassName().startsWith("java.") && !f.getClassName().startsWith("jdk.") &&
+                         !f.getClassName().startsWith("com.sun.proxy."))
+            .findFirst());
+        if (!frame.isPresent()) {
+            return "unknown";
+        }
+        String className = frame.get().getClassName();
+        className = className.substring(className.lastIndexOf('.') + 1);
+        int nested = className.indexOf('$');
+        if (nested > 0) {
+            className = className.substring(0, nested);
+        }
+        String method = frame.get().getMethodName();
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            method = end > 7 ? method.substring(7, end) : method;
+        }
+        return className + "." + method;
+    }
+
+    private static void record(QueryStats stats, Connection connection, long nanos, long rowCount) {
+        stats.record(nanos, rowCount);
+        if (nanos < SLOW_QUERY_NANOS) {
+            return;
+        }
+        stats.slowCalls.increment();
+        if (!slowLog.isWarnEnabled()) {
+            return;
+        }
+        if (stats.plan == null) {
+            stats.plan = explain(connection, stats.sql);
+        }
+        slowLog.warn("Slow query {} took {} ms ({} rows): {} | plan: {}", stats.name,
+                     String.format(Locale.ROOT, "%.1f", nanos / 1e6), rowCount, stats.sql, stats.plan);
+    }
+
+    // The plan SQLite chooses with every parameter unbound
+    private static String explain(Connection connection, String sql) {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            List<String> steps = new ArrayList<>();
+            while (rs.next()) {
+                steps.add(rs.getString("detail"));
+            }
+            return steps.isEmpty() ? "(none)" : String.join(" | ", steps);
+        } catch (SQLException e) {
+            return "unavailable: " + e.getMessage();
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    PreparedStatement prepared = (PreparedStatement) QueryMetrics.invoke(connection, method, args);
+                    return Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class},
+                        new StatementHandler(connection, prepared, stats((String) args[0])));
+                case "createStatement":
+                    Statement statement = (Statement) QueryMetrics.invoke(connection, method, args);
+                    return Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+                        new Class<?>[] {Statement.class}, new StatementHandler(connection, statement, null));
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(connection) ? connection : connection.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(connection) || connection.isWrapperFor((Class<?>) args[0]);
+                default:
+                    return QueryMetrics.invoke(connection, method, args);
+            }
+        }
+    }
+
+    // Times the statement's executions; prepared statements carry their stats, plain ones look them up per SQL
+    private static final class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Statement statement;
+        private final QueryStats prepared;
+        private ResultSetHandler open;
+
+        StatementHandler(Connection connection, Statement statement, QueryStats prepared) {
+            this.connection = connection;
+            this.statement = statement;
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute") && !name.equals("close")) {
+                return QueryMetrics.invoke(statement, method, args);
+            }
+            // Executing again or closing ends the previous result set's query
+            finishOpenResult();
+            if (name.equals("close")) {
+                return QueryMetrics.invoke(statement, method, args);
+            }
+            QueryStats stats = prepared;
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                stats = stats((String) args[0]);
+            }
+            if (stats == null) {
+                // addBatch(String) statements
+                stats = stats("batch");
+            }
+
+            long start = System.nanoTime();
+            Object result = QueryMetrics.invoke(statement, method, args);
+            long elapsed = System.nanoTime() - start;
+            if (result instanceof ResultSet) {
+                open = new ResultSetHandler(connection, (ResultSet) result, stats, elapsed);
+                return Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, open);
+            }
+            record(stats, connection, elapsed, updateCount(result));
+            return result;
+        }
+
+        private void finishOpenResult() {
+            if (open != null) {
+                open.finish();
+                open = null;
+            }
+        }
+
+        private long updateCount(Object result) throws SQLException {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[]) {
+                long total = 0;
+                for (int count : (int[]) result) {
+                    total += Math.max(0, count);
+                }
+                return total;
+            }
+            // execute(): a result set was not requested, so count what was changed
+            return Math.max(0, statement.getUpdateCount());
+        }
+    }
+
+    // Adds the time spent stepping through rows; records once exhausted or closed
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final Connection connection;
+        private final ResultSet resultSet;
+        private final QueryStats stats;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        ResultSetHandler(Connection connection, ResultSet resultSet, QueryStats stats, long executeNanos) {
+            this.connection = connection;
+            this.resultSet = resultSet;
+            this.stats = stats;
+            this.nanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    boolean more = resultSet.next();
+                    nanos += System.nanoTime() - start;
+                    if (more) {
+                        rows++;
+                    } else {
+                        finish();
+                    }
+                    return more;
+                case "close":
+                    finish();
+                    resultSet.close();
+                    return null;
+                default:
+                    return QueryMetrics.invoke(resultSet, method, args);
+            }
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                record(stats, connection, nanos, rows);
+            }
+        }
+    }
+}
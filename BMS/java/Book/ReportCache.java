@@ -0,0 +1,114 @@
+package Book;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finished report results, keyed by report name and parameters and stamped with
+// the database's data_version when the query started. An entry is served only
+// while the stamp still matches, so any commit (a saved order, an import, or a
+// write from another process) invalidates every report without the write paths
+// having to know about the cache. Least recently used entries are evicted once
+// the cache holds MAX_ENTRIES results or MAX_ROWS rows in total.
+final class ReportCache {
+    static final int MAX_ENTRIES = 32;
+    static final int MAX_ROWS = 50_000;
+
+    // A report's rows and what it cost to compute them
+    static final class ReportResult {
+        final long dataVersion;
+        final List<Object[]> rows;
+        final long computeNanos;
+
+        ReportResult(long dataVersion, List<Object[]> rows, long computeNanos) {
+            this.dataVersion = dataVersion;
+            this.rows = rows;
+            this.computeNanos = computeNanos;
+        }
+    }
+
+    private static final class Key {
+        private final String report;
+        private final Object[] params;
+
+        Key(String report, Object[] params) {
+            this.report = report;
+            this.params = params.clone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && report.equals(((Key) other).report) &&
+                   Arrays.equals(params, ((Key) other).params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * report.hashCode() + Arrays.hashCode(params);
+        }
+    }
+
+    private static final LinkedHashMap<Key, ReportResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static int cachedRows;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong stale = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong nanosSaved = new AtomicLong();
+
+    private ReportCache() {
+    }
+
+    // The cached result for this report, or null if there is none for the given data_version
+    static synchronized ReportResult get(String report, Object[] params, long dataVersion) {
+        Key key = new Key(report, params);
+        ReportResult result = entries.get(key);
+        if (result != null && result.dataVersion != dataVersion) {
+            entries.remove(key);
+            cachedRows -= result.rows.size();
+            stale.incrementAndGet();
+            result = null;
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        nanosSaved.addAndGet(result.computeNanos);
+        return result;
+    }
+
+    static synchronized void put(String report, Object[] params, ReportResult result) {
+        if (result.rows.size() > MAX_ROWS) {
+            return;
+        }
+        ReportResult previous = entries.put(new Key(report, params), result);
+        if (previous != null) {
+            cachedRows -= previous.rows.size();
+        }
+        cachedRows += result.rows.size();
+
+        Iterator<Map.Entry<Key, ReportResult>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > MAX_ENTRIES || cachedRows > MAX_ROWS) && eldest.hasNext()) {
+            cachedRows -= eldest.next().getValue().rows.size();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    static String stats() {
+        long hit = hits.get();
+        long miss = misses.get();
+        int size;
+        synchronized (ReportCache.class) {
+            size = entries.size();
+        }
+        return String.format("Report cache hits=%d misses=%d (%.1f%% hit rate) stale=%d evicted=%d entries=%d saved=%.0fms",
+            hit, miss, hit + miss == 0 ? 0.0 : hit * 100.0 / (hit + miss), stale.get(), evictions.get(), size,
+            nanosSaved.get() / 1e6);
+    }
+}
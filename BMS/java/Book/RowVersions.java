@@ -0,0 +1,107 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Optimistic concurrency for rows edited at several tills at once. authors,
+// books, customers and orders carry a version column that every edit
+// increments. A form remembers the version it was loaded with, and its save
+// is a compare-and-set: the UPDATE also matches on that version, so if another
+// till saved the row in the meantime nothing is written and ConflictException
+// reports what the row holds now. Nothing is locked while a form is open.
+// Editable tables' RowMappers append the version after their visible columns.
+final class RowVersions {
+
+    // The row was saved (or deleted) elsewhere after the form loaded it
+    static final class ConflictException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        final String table;
+        final int id;
+        final int expectedVersion;
+        final int currentVersion; // -1 when the row is gone
+        final Object[] current;   // the stored values, as the caller's mapper reads them; null when gone
+
+        ConflictException(String table, int id, int expectedVersion, int currentVersion, Object[] current) {
+            super(current == null
+                ? "This " + singular(table) + " was deleted at another terminal"
+                : "This " + singular(table) + " was changed at another terminal (version " + currentVersion +
+                  ", this form has version " + expectedVersion + ")");
+            this.table = table;
+            this.id = id;
+            this.expectedVersion = expectedVersion;
+            this.currentVersion = currentVersion;
+            this.current = current;
+        }
+
+        boolean deleted() {
+            return current == null;
+        }
+    }
+
+    private RowVersions() {
+    }
+
+    // Move the row on from the expected version, inside the transaction that writes its
+    // other changes; throws ConflictException if it is no longer at that version. For
+    // edits spread over several statements, such as an order and its lines.
+    static void claim(Connection connection, String table, String keyColumn, int id, int expectedVersion,
+                      String currentQuery, PagedTableModel.RowMapper mapper) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "UPDATE " + table + " SET version = version + 1 WHERE " + keyColumn + " = ? AND version = ?")) {
+            pstmt.setInt(1, id);
+            pstmt.setInt(2, expectedVersion);
+            if (pstmt.executeUpdate() == 0) {
+                throw conflict(connection, table, id, expectedVersion, currentQuery, mapper);
+            }
+        }
+    }
+
+    // The exception for a compare-and-set update that matched no row. currentQuery takes
+    // the key and selects the row's version; mapper reads the rest of it.
+    static ConflictException conflict(Connection connection, String table, int id, int expectedVersion,
+                                      String currentQuery, PagedTableModel.RowMapper mapper) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(currentQuery)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new ConflictException(table, id, expectedVersion, -1, null);
+                }
+                return new ConflictException(table, id, expectedVersion, rs.getInt("version"), mapper.map(rs));
+            }
+        }
+    }
+
+    // Three-way merge of a form's fields: the user's value where they changed the field
+    // from what the form loaded, the stored value everywhere else
+    static Object[] merge(Object[] base, Object[] mine, Object[] theirs) {
+        Object[] merged = theirs.clone();
+        for (int i = 0; i < merged.length; i++) {
+            if (!Objects.equals(base[i], mine[i])) {
+                merged[i] = mine[i];
+            }
+        }
+        return merged;
+    }
+
+    // Fields both sides changed, to different values; the merge keeps the user's
+    static List<Integer> overlapping(Object[] base, Object[] mine, Object[] theirs) {
+        List<Integer> fields = new ArrayList<>();
+        for (int i = 0; i < base.length; i++) {
+            if (!Objects.equals(base[i], mine[i]) && !Objects.equals(base[i], theirs[i])
+                    && !Objects.equals(mine[i], theirs[i])) {
+                fields.add(i);
+            }
+        }
+        return fields;
+    }
+
+    private static String singular(String table) {
+        return table.endsWith("s") ? table.substring(0, table.length() - 1) : table;
+    }
+}
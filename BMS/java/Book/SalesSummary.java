@@ -0,0 +1,259 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Running sales totals per genre, per book and per customer, so the reports read
+// only the rows they show instead of re-aggregating all order history. Triggers
+// on order_items, orders, books and customers keep the totals current on every
+// write path (order saves and edits, deletes, bulk imports); rebuild() recomputes
+// them from scratch and verify() compares them with a full aggregation.
+final class SalesSummary {
+    // Report queries over the summary tables; genre '' stands for books without a genre
+    static final String SALES_BY_GENRE_QUERY =
+        "SELECT NULLIF(genre, '') AS genre, quantity AS total_quantity FROM sales_by_genre " +
+        "ORDER BY quantity DESC";
+    static final String TOP_SELLING_BOOKS_QUERY =
+        "SELECT b.title, a.name, s.quantity AS total_quantity FROM sales_by_book s " +
+        "JOIN books b ON b.book_id = s.book_id JOIN authors a ON b.author_id = a.author_id " +
+        "ORDER BY s.quantity DESC LIMIT 10";
+    static final String CUSTOMER_SPENDING_QUERY =
+        "SELECT c.name, s.total_spent_cents FROM sales_by_customer s " +
+        "JOIN customers c ON c.customer_id = s.customer_id ORDER BY s.total_spent_cents DESC";
+
+    // The same reports for orders dated within a period (two parameters, inclusive ISO dates).
+    // They aggregate only the orders in range, found through idx_orders_order_date.
+    static final String SALES_BY_GENRE_PERIOD_QUERY =
+        "SELECT NULLIF(IFNULL(b.genre, ''), '') AS genre, SUM(oi.quantity) AS total_quantity FROM orders o " +
+        "JOIN order_items oi ON oi.order_id = o.order_id JOIN books b ON b.book_id = oi.book_id " +
+        "WHERE o.order_date BETWEEN ? AND ? GROUP BY IFNULL(b.genre, '') ORDER BY total_quantity DESC";
+    static final String TOP_SELLING_BOOKS_PERIOD_QUERY =
+        "SELECT b.title, a.name, SUM(oi.quantity) AS total_quantity FROM orders o " +
+        "JOIN order_items oi ON oi.order_id = o.order_id JOIN books b ON b.book_id = oi.book_id " +
+        "JOIN authors a ON b.author_id = a.author_id " +
+        "WHERE o.order_date BETWEEN ? AND ? GROUP BY oi.book_id ORDER BY total_quantity DESC LIMIT 10";
+    static final String CUSTOMER_SPENDING_PERIOD_QUERY =
+        "SELECT c.name, SUM(IFNULL(o.total_cents, 0)) AS total_spent_cents FROM orders o " +
+        "JOIN customers c ON c.customer_id = o.customer_id " +
+        "WHERE o.order_date BETWEEN ? AND ? GROUP BY o.customer_id ORDER BY total_spent_cents DESC";
+
+    // The same totals aggregated from the order history, keyed like the summary tables
+    private static final String GENRE_FROM_HISTORY =
+        "SELECT IFNULL(b.genre, ''), TOTAL(oi.quantity), COUNT(*) FROM books b " +
+        "JOIN order_items oi ON b.book_id = oi.book_id GROUP BY IFNULL(b.genre, '')";
+    private static final String BOOK_FROM_HISTORY =
+        "SELECT oi.book_id, TOTAL(oi.quantity), COUNT(*) FROM order_items oi " +
+        "JOIN books b ON b.book_id = oi.book_id GROUP BY oi.book_id";
+    private static final String CUSTOMER_FROM_HISTORY =
+        "SELECT o.customer_id, SUM(IFNULL(o.total_cents, 0)), COUNT(*) FROM orders o " +
+        "JOIN customers c ON c.customer_id = o.customer_id GROUP BY o.customer_id";
+
+    // Summary rows carry a count of contributing rows and disappear when it drops
+    // to zero, so a report lists exactly the groups a GROUP BY over history would
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS sales_by_genre (genre TEXT PRIMARY KEY NOT NULL, " +
+            "quantity INTEGER NOT NULL DEFAULT 0, items INTEGER NOT NULL DEFAULT 0)",
+        "CREATE TABLE IF NOT EXISTS sales_by_book (book_id INTEGER PRIMARY KEY, " +
+            "quantity INTEGER NOT NULL DEFAULT 0, items INTEGER NOT NULL DEFAULT 0)",
+        "CREATE TABLE IF NOT EXISTS sales_by_customer (customer_id INTEGER PRIMARY KEY, " +
+            "total_spent_cents INTEGER NOT NULL DEFAULT 0, orders INTEGER NOT NULL DEFAULT 0)",
+        "CREATE INDEX IF NOT EXISTS idx_sales_by_genre_quantity ON sales_by_genre(quantity)",
+        "CREATE INDEX IF NOT EXISTS idx_sales_by_book_quantity ON sales_by_book(quantity)",
+        "CREATE INDEX IF NOT EXISTS idx_sales_by_customer_total ON sales_by_customer(total_spent_cents)",
+
+        "CREATE TRIGGER IF NOT EXISTS trg_order_items_sales_insert AFTER INSERT ON order_items BEGIN " +
+            addItem("NEW") + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_order_items_sales_delete AFTER DELETE ON order_items BEGIN " +
+            removeItem("OLD") + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_order_items_sales_update AFTER UPDATE OF book_id, quantity ON order_items BEGIN " +
+            removeItem("OLD") + " " + addItem("NEW") + " END",
+
+        // A book changing genre carries its sales to the new genre
+        "CREATE TRIGGER IF NOT EXISTS trg_books_sales_genre AFTER UPDATE OF genre ON books " +
+            "WHEN IFNULL(OLD.genre, '') <> IFNULL(NEW.genre, '') BEGIN " +
+            "UPDATE sales_by_genre SET quantity = quantity - (SELECT quantity FROM sales_by_book WHERE book_id = OLD.book_id), " +
+            "items = items - (SELECT items FROM sales_by_book WHERE book_id = OLD.book_id) " +
+            "WHERE genre = IFNULL(OLD.genre, '') AND EXISTS (SELECT 1 FROM sales_by_book WHERE book_id = OLD.book_id); " +
+            "DELETE FROM sales_by_genre WHERE genre = IFNULL(OLD.genre, '') AND items <= 0; " +
+            "INSERT INTO sales_by_genre (genre, quantity, items) " +
+            "SELECT IFNULL(NEW.genre, ''), quantity, items FROM sales_by_book WHERE book_id = NEW.book_id " +
+            "ON CONFLICT(genre) DO UPDATE SET quantity = quantity + excluded.quantity, items = items + excluded.items; " +
+            "END",
+        // Normally a book's items are deleted first; any left over stop counting, as in the report joins
+        "CREATE TRIGGER IF NOT EXISTS trg_books_sales_delete AFTER DELETE ON books BEGIN " +
+            "UPDATE sales_by_genre SET quantity = quantity - (SELECT quantity FROM sales_by_book WHERE book_id = OLD.book_id), " +
+            "items = items - (SELECT items FROM sales_by_book WHERE book_id = OLD.book_id) " +
+            "WHERE genre = IFNULL(OLD.genre, '') AND EXISTS (SELECT 1 FROM sales_by_book WHERE book_id = OLD.book_id); " +
+            "DELETE FROM sales_by_genre WHERE genre = IFNULL(OLD.genre, '') AND items <= 0; " +
+            "DELETE FROM sales_by_book WHERE book_id = OLD.book_id; " +
+            "END",
+
+        "CREATE TRIGGER IF NOT EXISTS trg_orders_sales_insert AFTER INSERT ON orders BEGIN " +
+            addOrder("NEW") + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_orders_sales_delete AFTER DELETE ON orders BEGIN " +
+            removeOrder("OLD") + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_orders_sales_update AFTER UPDATE OF customer_id, total_cents ON orders BEGIN " +
+            removeOrder("OLD") + " " + addOrder("NEW") + " END",
+        "CREATE TRIGGER IF NOT EXISTS trg_customers_sales_delete AFTER DELETE ON customers BEGIN " +
+            "DELETE FROM sales_by_customer WHERE customer_id = OLD.customer_id; END"
+    };
+
+    private SalesSummary() {
+    }
+
+    static void ensureSchema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                stmt.execute(sql);
+            }
+        }
+        rebuild(connection);
+    }
+
+    // Drop the summary tables and triggers, for migrations that change the columns they read
+    static void dropSchema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                for (String kind : new String[] {"TRIGGER", "TABLE"}) {
+                    String prefix = "CREATE " + kind + " IF NOT EXISTS ";
+                    if (sql.startsWith(prefix)) {
+                        String name = sql.substring(prefix.length()).split("[ (]", 2)[0];
+                        stmt.execute("DROP " + kind + " IF EXISTS " + name);
+                    }
+                }
+            }
+        }
+    }
+
+    // Recompute every total from the order history
+    static void rebuild(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM sales_by_genre");
+            stmt.executeUpdate("DELETE FROM sales_by_book");
+            stmt.executeUpdate("DELETE FROM sales_by_customer");
+            stmt.executeUpdate("INSERT INTO sales_by_genre (genre, quantity, items) " + GENRE_FROM_HISTORY);
+            stmt.executeUpdate("INSERT INTO sales_by_book (book_id, quantity, items) " + BOOK_FROM_HISTORY);
+            stmt.executeUpdate("INSERT INTO sales_by_customer (customer_id, total_spent_cents, orders) " + CUSTOMER_FROM_HISTORY);
+        }
+    }
+
+    // Differences between the summary tables and a fresh aggregation; empty when they agree
+    static List<String> verify(Connection connection) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        compare(connection, "sales_by_genre", "SELECT genre, quantity, items FROM sales_by_genre",
+                GENRE_FROM_HISTORY, problems);
+        compare(connection, "sales_by_book", "SELECT book_id, quantity, items FROM sales_by_book",
+                BOOK_FROM_HISTORY, problems);
+        compare(connection, "sales_by_customer", "SELECT customer_id, total_spent_cents, orders FROM sales_by_customer",
+                CUSTOMER_FROM_HISTORY, problems);
+        return problems;
+    }
+
+    private static void compare(Connection connection, String table, String summaryQuery, String historyQuery,
+                                List<String> problems) throws SQLException {
+        Map<Object, long[]> summary = totals(connection, summaryQuery);
+        Map<Object, long[]> history = totals(connection, historyQuery);
+        for (Map.Entry<Object, long[]> entry : history.entrySet()) {
+            long[] stored = summary.remove(entry.getKey());
+            long[] expected = entry.getValue();
+            if (stored == null) {
+                problems.add(table + " " + entry.getKey() + ": missing, expected " + format(expected));
+            } else if (stored[0] != expected[0] || stored[1] != expected[1]) {
+                problems.add(table + " " + entry.getKey() + ": " + format(stored) + ", expected " + format(expected));
+            }
+        }
+        for (Map.Entry<Object, long[]> entry : summary.entrySet()) {
+            problems.add(table + " " + entry.getKey() + ": " + format(entry.getValue()) + ", expected no row");
+        }
+    }
+
+    // Quantities and cents are whole numbers, so the totals must match exactly
+    private static Map<Object, long[]> totals(Connection connection, String query) throws SQLException {
+        Map<Object, long[]> totals = new HashMap<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                Object key = rs.getObject(1);
+                // Integer and Long keys of the same id must match
+                totals.put(key instanceof Number ? (Object) ((Number) key).longValue() : Objects.toString(key, ""),
+                           new long[] {rs.getLong(2), rs.getLong(3)});
+            }
+        }
+        return totals;
+    }
+
+    private static String format(long[] total) {
+        return "total=" + total[0] + " rows=" + total[1];
+    }
+
+    private static String addItem(String row) {
+        return "INSERT INTO sales_by_book (book_id, quantity, items) " +
+               "SELECT " + row + ".book_id, IFNULL(" + row + ".quantity, 0), 1 FROM books WHERE book_id = " + row + ".book_id " +
+               "ON CONFLICT(book_id) DO UPDATE SET quantity = quantity + excluded.quantity, items = items + 1; " +
+               "INSERT INTO sales_by_genre (genre, quantity, items) " +
+               "SELECT IFNULL(genre, ''), IFNULL(" + row + ".quantity, 0), 1 FROM books WHERE book_id = " + row + ".book_id " +
+               "ON CONFLICT(genre) DO UPDATE SET quantity = quantity + excluded.quantity, items = items + 1;";
+    }
+
+    private static String removeItem(String row) {
+        return "UPDATE sales_by_book SET quantity = quantity - IFNULL(" + row + ".quantity, 0), items = items - 1 " +
+               "WHERE book_id = " + row + ".book_id; " +
+               "DELETE FROM sales_by_book WHERE book_id = " + row + ".book_id AND items <= 0; " +
+               "UPDATE sales_by_genre SET quantity = quantity - IFNULL(" + row + ".quantity, 0), items = items - 1 " +
+               "WHERE genre = (SELECT IFNULL(genre, '') FROM books WHERE book_id = " + row + ".book_id); " +
+               "DELETE FROM sales_by_genre WHERE genre = (SELECT IFNULL(genre, '') FROM books WHERE book_id = " +
+               row + ".book_id) AND items <= 0;";
+    }
+
+    private static String addOrder(String row) {
+        return "INSERT INTO sales_by_customer (customer_id, total_spent_cents, orders) " +
+               "SELECT " + row + ".customer_id, IFNULL(" + row + ".total_cents, 0), 1 FROM customers " +
+               "WHERE customer_id = " + row + ".customer_id " +
+               "ON CONFLICT(customer_id) DO UPDATE SET total_spent_cents = total_spent_cents + excluded.total_spent_cents, " +
+               "orders = orders + 1;";
+    }
+
+    private static String removeOrder(String row) {
+        return "UPDATE sales_by_customer SET total_spent_cents = total_spent_cents - IFNULL(" + row + ".total_cents, 0), " +
+               "orders = orders - 1 WHERE customer_id = " + row + ".customer_id; " +
+               "DELETE FROM sales_by_customer WHERE customer_id = " + row + ".customer_id AND orders <= 0;";
+    }
+
+    // Rebuild and/or check the totals: java Book.SalesSummary [database] [--rebuild]
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 && !args[0].startsWith("--") ? args[0] : "bookstore.db";
+        boolean rebuild = args.length > 0 && args[args.length - 1].equals("--rebuild");
+        Class.forName("org.sqlite.JDBC");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            SchemaMigrations.migrate(connection, System.out);
+            if (rebuild) {
+                long start = System.nanoTime();
+                connection.setAutoCommit(false);
+                try {
+                    rebuild(connection);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                System.out.printf("Rebuilt sales summaries in %.0fms%n", (System.nanoTime() - start) / 1e6);
+            }
+            List<String> problems = verify(connection);
+            problems.forEach(System.out::println);
+            System.out.println(problems.isEmpty() ? "Sales summaries match the order history"
+                                                  : problems.size() + " summary rows differ from the order history");
+            if (!problems.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Versioned schema upgrades. The applied version is stored in SQLite's
+// PRAGMA user_version, and each pending migration runs in its own transaction
+// together with the version bump, so an interrupted upgrade resumes at the
+// first step that did not commit.
+final class SchemaMigrations {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // A query run on a hot path; requireIndex marks lookups that must never scan a table
+    static final class HotQuery {
+        final String name;
+        final String sql;
+        final boolean requireIndex;
+
+        HotQuery(String name, String sql, boolean requireIndex) {
+            this.name = name;
+            this.sql = sql;
+            this.requireIndex = requireIndex;
+        }
+    }
+
+    static final List<Migration> MIGRATIONS = Arrays.asList(
+        new Migration(1, "Create base tables", connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                // Create authors table
+                stmt.execute("CREATE TABLE IF NOT EXISTS authors (author_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, birth_date TEXT)");
+                // Create books table
+                stmt.execute("CREATE TABLE IF NOT EXISTS books (book_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, author_id INTEGER, genre TEXT, price REAL, publication_date TEXT, FOREIGN KEY (author_id) REFERENCES authors(author_id))");
+                // Create customers table
+                stmt.execute("CREATE TABLE IF NOT EXISTS customers (customer_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, email TEXT, phone TEXT)");
+                // Create orders table
+                stmt.execute("CREATE TABLE IF NOT EXISTS orders (order_id INTEGER PRIMARY KEY AUTOINCREMENT, customer_id INTEGER, order_date TEXT, total_amount REAL, FOREIGN KEY (customer_id) REFERENCES customers(customer_id))");
+                // Create order_items table
+                stmt.execute("CREATE TABLE IF NOT EXISTS order_items (order_item_id INTEGER PRIMARY KEY AUTOINCREMENT, order_id INTEGER, book_id INTEGER, quantity INTEGER, unit_price REAL, FOREIGN KEY (order_id) REFERENCES orders(order_id), FOREIGN KEY (book_id) REFERENCES books(book_id))");
+            }
+        }),
+        new Migration(2, "Full-text search index for books", BookSearchIndex::ensureSchema),
+        new Migration(3, "Foreign-key and lookup indexes", connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_order_items_order_id ON order_items(order_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_order_items_book_id ON order_items(book_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_customer_id ON orders(customer_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_author_id ON books(author_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_title ON books(title)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_authors_name ON authors(name)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_name ON customers(name)");
+                // Give the planner statistics for the new indexes
+                stmt.execute("ANALYZE");
+            }
+        }),
+        // The summaries are created, in cents, by migration 5; a database that already
+        // has them from this step gets them dropped and rebuilt there
+        new Migration(4, "Incremental sales summaries for reports", connection -> {
+        }),
+        new Migration(5, "Store money as integer cents", SchemaMigrations::moneyToCents),
+        new Migration(6, "ISO-8601 dates with checks and date indexes", SchemaMigrations::isoDates),
+        // Existing rows start at version 0; adding a column with a constant default rewrites nothing
+        new Migration(7, "Row versions for optimistic locking", connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                for (String table : new String[] {"authors", "books", "customers", "orders"}) {
+                    stmt.execute("ALTER TABLE " + table + " ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+                }
+            }
+        }),
+        new Migration(8, "Search index maintained by triggers", BookSearchIndex::ensureTriggers)
+    );
+
+    // REAL money columns and the INTEGER cents columns that replace them
+    private static final String[][] MONEY_COLUMNS = {
+        {"books", "price", "price_cents"},
+        {"orders", "total_amount", "total_cents"},
+        {"order_items", "unit_price", "unit_price_cents"}
+    };
+
+    // Date columns kept as ISO-8601 text: {table, key column, date column}
+    static final String[][] DATE_COLUMNS = {
+        {"authors", "author_id", "birth_date"},
+        {"books", "book_id", "publication_date"},
+        {"orders", "order_id", "order_date"}
+    };
+
+    static final List<HotQuery> HOT_QUERIES = Arrays.asList(
+        new HotQuery("getBookId", "SELECT book_id FROM books WHERE title=?", true),
+        new HotQuery("getBookPrice", "SELECT price_cents FROM books WHERE title=?", true),
+        new HotQuery("getAuthorId", "SELECT author_id FROM authors WHERE name=?", true),
+        new HotQuery("getCustomerId", "SELECT customer_id FROM customers WHERE name=?", true),
+        new HotQuery("deleteOrder items", "DELETE FROM order_items WHERE order_id=?", true),
+        new HotQuery("deleteBook items", "DELETE FROM order_items WHERE book_id=?", true),
+        new HotQuery("deleteCustomer items",
+            "DELETE FROM order_items WHERE order_id IN (SELECT order_id FROM orders WHERE customer_id=?)", true),
+        new HotQuery("deleteCustomer orders", "DELETE FROM orders WHERE customer_id=?", true),
+        new HotQuery("order details items",
+            "SELECT b.title, oi.quantity, oi.unit_price_cents FROM order_items oi " +
+            "JOIN books b ON oi.book_id = b.book_id WHERE oi.order_id=?", true),
+        new HotQuery("books by author", "SELECT book_id FROM books WHERE author_id=?", true),
+        new HotQuery("orders in period",
+            "SELECT o.order_id FROM orders o WHERE o.order_date BETWEEN ? AND ? ORDER BY o.order_id", true),
+        new HotQuery("books published in period",
+            "SELECT b.book_id FROM books b WHERE b.publication_date BETWEEN ? AND ?", true),
+        // Reports read the summary tables in total order; no scan of order history
+        new HotQuery("sales by genre report", SalesSummary.SALES_BY_GENRE_QUERY, true),
+        new HotQuery("top selling books report", SalesSummary.TOP_SELLING_BOOKS_QUERY, true),
+        new HotQuery("customer spending report", SalesSummary.CUSTOMER_SPENDING_QUERY, true),
+        // Reports for a period aggregate only the orders in it, found through the order_date index
+        new HotQuery("sales by genre in period", SalesSummary.SALES_BY_GENRE_PERIOD_QUERY, true),
+        new HotQuery("top books in period", SalesSummary.TOP_SELLING_BOOKS_PERIOD_QUERY, true),
+        new HotQuery("customer spend in period", SalesSummary.CUSTOMER_SPENDING_PERIOD_QUERY, true)
+    );
+
+    private SchemaMigrations() {
+    }
+
+    // Each money column is copied into a new INTEGER column, rounded to the nearest
+    // cent, and dropped. The summary triggers read total_amount, so the summaries
+    // go first and are recreated over the new columns; dropping them also dropped
+    // their planner statistics, which the report queries need to walk the indexes.
+    private static void moneyToCents(Connection connection) throws SQLException {
+        SalesSummary.dropSchema(connection);
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] column : MONEY_COLUMNS) {
+                stmt.execute("ALTER TABLE " + column[0] + " ADD COLUMN " + column[2] + " INTEGER");
+                stmt.executeUpdate("UPDATE " + column[0] + " SET " + column[2] + " = CAST(ROUND(" + column[1] +
+                                   " * 100) AS INTEGER) WHERE " + column[1] + " IS NOT NULL");
+                stmt.execute("ALTER TABLE " + column[0] + " DROP COLUMN " + column[1]);
+            }
+        }
+        SalesSummary.ensureSchema(connection);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ANALYZE sales_by_genre");
+            stmt.execute("ANALYZE sales_by_book");
+            stmt.execute("ANALYZE sales_by_customer");
+        }
+    }
+
+    // Rewrite each date that is not already yyyy-MM-dd in ISO form. Values that cannot be
+    // read as a date are cleared, since they could never match a date range; they are
+    // logged so they can be re-entered. SQLite cannot add a CHECK constraint to an existing
+    // table, so triggers reject non-ISO dates on every later insert and update.
+    private static void isoDates(Connection connection) throws SQLException {
+        for (String[] column : DATE_COLUMNS) {
+            String table = column[0];
+            String key = column[1];
+            String date = column[2];
+            Map<Long, String> normalized = new LinkedHashMap<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT " + key + ", " + date + " FROM " + table +
+                                                  " WHERE " + date + " IS NOT NULL AND date(" + date + ") IS NOT " + date)) {
+                while (rs.next()) {
+                    String value = rs.getString(2);
+                    String iso;
+                    try {
+                        iso = IsoDates.normalize(value);
+                    } catch (ParseException e) {
+                        iso = null;
+                        log.warn("Cleared {}.{} '{}' of {} {}: not a date", table, date, value, key, rs.getLong(1));
+                    }
+                    normalized.put(rs.getLong(1), iso);
+                }
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "UPDATE " + table + " SET " + date + " = ? WHERE " + key + " = ?")) {
+                for (Map.Entry<Long, String> entry : normalized.entrySet()) {
+                    pstmt.setString(1, entry.getValue());
+                    pstmt.setLong(2, entry.getKey());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            String check = "WHEN NEW." + date + " IS NOT NULL AND date(NEW." + date + ") IS NOT NEW." + date +
+                           " BEGIN SELECT RAISE(ABORT, '" + date + " must be a date in YYYY-MM-DD form'); END";
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_" + date + "_insert BEFORE INSERT ON " +
+                             table + " " + check);
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_" + date + "_update BEFORE UPDATE OF " +
+                             date + " ON " + table + " " + check);
+            }
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            // Period reports need the customer and total of each order in range, so the index covers them
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_order_date ON orders(order_date, customer_id, total_cents)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_publication_date ON books(publication_date)");
+            stmt.execute("ANALYZE idx_orders_order_date");
+            stmt.execute("ANALYZE idx_books_publication_date");
+        }
+    }
+
+    static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    // Apply every pending migration; returns the number applied. When an existing
+    // database is upgraded, the hot query plans are logged before and after.
+    // Each step holds the write lock (through WriteScheduler) and checks the version
+    // again under it, so tills and the API server starting together on an old file
+    // apply every step exactly once between them.
+    static int migrate(Connection connection, PrintStream out) throws SQLException {
+        return migrate(connection, out == null ? null : (Consumer<String>) out::print);
+    }
+
+    // As migrate(connection, out), reporting through this class's logger; for the
+    // application and the API server, whose diagnostics all go through slf4j
+    static int migrate(Connection connection) throws SQLException {
+        return migrate(connection, (Consumer<String>) text -> log.info("{}", text.stripTrailing()));
+    }
+
+    // report receives each message as text ending in a line break
+    private static int migrate(Connection connection, Consumer<String> report) throws SQLException {
+        int version = currentVersion(connection);
+        if (version >= latestVersion()) {
+            return 0;
+        }
+
+        String before = version >= 1 && report != null ? queryPlanReport(connection) : null;
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= version) {
+                continue;
+            }
+            boolean ran;
+            try {
+                ran = WriteScheduler.run(connection, writer -> {
+                    if (currentVersion(writer) >= migration.version) {
+                        return false; // Another process applied it since the version was read
+                    }
+                    migration.step.apply(writer);
+                    try (Statement stmt = writer.createStatement()) {
+                        stmt.execute("PRAGMA user_version = " + migration.version);
+                    }
+                    return true;
+                });
+            } catch (Exception e) {
+                throw new SQLException("Migration " + migration.version + " (" + migration.description +
+                                       ") failed: " + e.getMessage(), e);
+            }
+            if (ran) {
+                applied++;
+                if (report != null) {
+                    report.accept("Applied migration " + migration.version + ": " + migration.description +
+                                  System.lineSeparator());
+                }
+            }
+        }
+
+        if (before != null) {
+            String newline = System.lineSeparator();
+            report.accept("Query plans before migration:" + newline + before);
+            report.accept("Query plans after migration:" + newline + queryPlanReport(connection));
+        }
+        return applied;
+    }
+
+    // EXPLAIN QUERY PLAN for every hot query, flagging any required lookup that scans a table
+    static String queryPlanReport(Connection connection) throws SQLException {
+        StringBuilder report = new StringBuilder();
+        for (HotQuery query : HOT_QUERIES) {
+            List<String> plan;
+            try {
+                plan = explain(connection, query.sql);
+            } catch (SQLException e) {
+                // Queries over tables a pending migration creates
+                report.append(String.format("  %-26s %-16s %s%n", query.name, "unavailable", e.getMessage()));
+                continue;
+            }
+            boolean scans = false;
+            for (String step : plan) {
+                scans |= isTableScan(step);
+            }
+            String verdict = !scans ? "index" : query.requireIndex ? "TABLE SCAN" : "scan (aggregate)";
+            report.append(String.format("  %-26s %-16s %s%n", query.name, verdict, String.join(" | ", plan)));
+        }
+        return report.toString();
+    }
+
+    static List<String> explain(Connection connection, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            int parameters = sql.length() - sql.replace("?", "").length();
+            for (int i = 1; i <= parameters; i++) {
+                pstmt.setNull(i, java.sql.Types.NULL);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString("detail"));
+                }
+            }
+        }
+        return plan;
+    }
+
+    static boolean isTableScan(String planStep) {
+        // "SCAN books" reads every row; "SCAN books USING COVERING INDEX ..." only walks an index
+        return planStep.startsWith("SCAN ") && !planStep.contains(" USING ");
+    }
+
+    // Upgrade a database file from the command line: java Book.SchemaMigrations bookstore.db
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "bookstore.db";
+        Class.forName("org.sqlite.JDBC");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            int from = currentVersion(connection);
+            int applied = migrate(connection, System.out);
+            System.out.println(path + ": schema version " + from + " -> " + currentVersion(connection) +
+                               " (" + applied + " migrations applied)");
+            if (applied == 0) {
+                System.out.print(queryPlanReport(connection));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Where the time goes between starting the JVM and the main window appearing.
+// main() marks the end of each phase (look and feel, database connection,
+// schema check, the first tab); when the window opens, the phases are logged
+// as one line to the "Book.StartupTimer" logger. Work deferred until after
+// that, such as tabs built on first selection, is logged as it finishes.
+final class StartupTimer {
+    private static final Logger log = LoggerFactory.getLogger(StartupTimer.class);
+
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static long mainStart;
+    private static long phaseStart;
+    private static long jvmMillis = -1;
+    private static boolean reported;
+
+    private StartupTimer() {
+    }
+
+    // The first phase starts here; the time before it is the JVM's own startup
+    static synchronized void start() {
+        Instant now = Instant.now();
+        mainStart = System.nanoTime();
+        phaseStart = mainStart;
+        ProcessHandle.current().info().startInstant().ifPresent(processStart ->
+            jvmMillis = Duration.between(processStart, now).toMillis());
+    }
+
+    // End the current phase under the given name and start the next
+    static synchronized void phase(String name) {
+        long now = System.nanoTime();
+        phases.merge(name, now - phaseStart, Long::sum);
+        phaseStart = now;
+    }
+
+    // Called once the main window is on screen: log every phase
+    static synchronized void windowOpened() {
+        if (reported) {
+            return;
+        }
+        reported = true;
+        phase("Show window");
+        StringBuilder line = new StringBuilder();
+        phases.forEach((name, nanos) -> line.append(", ").append(name).append(' ').append(millis(nanos)).append(" ms"));
+        log.info("Window shown {} ms after main{}: {}", millis(phaseStart - mainStart),
+                 jvmMillis >= 0 ? " (JVM startup " + jvmMillis + " ms)" : "", line.substring(2));
+    }
+
+    // Log something that ran after the window opened, from when it started
+    static void finished(String name, long startNanos) {
+        log.info("{} in {} ms", name, millis(System.nanoTime() - startNanos));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,352 @@
+package Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import Book.EntityCache.LookupItem;
+
+// Autocomplete index over the names of one entity kind. Names sorted in lower
+// case answer prefix queries with a binary search; trigram postings answer
+// substring queries by intersecting the postings of the query's two rarest
+// trigrams (leapfrogging through the sorted lists) and verifying the survivors. Results are ranked prefix matches first (in name
+// order), then other substring matches, and cut off at the requested limit.
+// Substring verification stops after MAX_VERIFIED candidates so a keystroke
+// stays within a few milliseconds even for rare phrases of common words.
+// Updated in place as entities are added, renamed and removed.
+final class SuggestionIndex {
+    private static final int GRAM = 3;
+    private static final int MAX_VERIFIED = 20_000;
+    // More lists filter more candidates but cost a gallop each; two measured fastest
+    private static final int INTERSECTED_LISTS = 2;
+    private static final long[] LATENCY_BUCKETS_NANOS = {
+        TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.MICROSECONDS.toNanos(250), TimeUnit.MICROSECONDS.toNanos(500),
+        TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(5),
+        TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(50), Long.MAX_VALUE
+    };
+
+    // Growable list of slots containing one trigram, in ascending slot order
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    // Slot-indexed entries; a removed entry leaves a null slot until the next compaction
+    private LookupItem[] items = new LookupItem[64];
+    private String[] keys = new String[64];
+    private int slotCount;
+    private int live;
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    // Live slots ordered by key, for prefix search
+    private String[] sortedKeys = new String[64];
+    private int[] sortedSlots = new int[64];
+    private int sortedSize;
+
+    private long queries;
+    private long totalNanos;
+    private long maxNanos;
+    private final long[] latencyCounts = new long[LATENCY_BUCKETS_NANOS.length];
+
+    static SuggestionIndex build(Collection<LookupItem> entries) {
+        SuggestionIndex index = new SuggestionIndex();
+        index.rebuild(entries);
+        return index;
+    }
+
+    synchronized void add(LookupItem item) {
+        if (slotById.containsKey(item.id)) {
+            remove(item.id);
+        }
+        int slot = appendSlot(item);
+        int position = lowerBound(keys[slot]);
+        while (position < sortedSize && sortedKeys[position].equals(keys[slot]) && sortedSlots[position] < slot) {
+            position++;
+        }
+        if (sortedSize == sortedKeys.length) {
+            sortedKeys = Arrays.copyOf(sortedKeys, sortedSize * 2);
+            sortedSlots = Arrays.copyOf(sortedSlots, sortedSize * 2);
+        }
+        System.arraycopy(sortedKeys, position, sortedKeys, position + 1, sortedSize - position);
+        System.arraycopy(sortedSlots, position, sortedSlots, position + 1, sortedSize - position);
+        sortedKeys[position] = keys[slot];
+        sortedSlots[position] = slot;
+        sortedSize++;
+    }
+
+    synchronized void remove(int id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        for (int position = lowerBound(keys[slot]);
+             position < sortedSize && sortedKeys[position].equals(keys[slot]); position++) {
+            if (sortedSlots[position] == slot) {
+                System.arraycopy(sortedKeys, position + 1, sortedKeys, position, sortedSize - position - 1);
+                System.arraycopy(sortedSlots, position + 1, sortedSlots, position, sortedSize - position - 1);
+                sortedSize--;
+                break;
+            }
+        }
+        items[slot] = null;
+        live--;
+
+        // Postings still reference dead slots; rebuild once they make up most of the index
+        if (slotCount > 1024 && live < slotCount / 2) {
+            List<LookupItem> remaining = new ArrayList<>(live);
+            for (int i = 0; i < slotCount; i++) {
+                if (items[i] != null) {
+                    remaining.add(items[i]);
+                }
+            }
+            rebuild(remaining);
+        }
+    }
+
+    // Up to limit entries whose name contains the text, ignoring case
+    synchronized List<LookupItem> suggest(String text, int limit) {
+        long start = System.nanoTime();
+        String needle = normalize(text);
+        List<LookupItem> result = new ArrayList<>(Math.min(limit, 64));
+        Set<Integer> prefixSlots = new HashSet<>();
+
+        for (int position = lowerBound(needle);
+             position < sortedSize && result.size() < limit && sortedKeys[position].startsWith(needle);
+             position++) {
+            result.add(items[sortedSlots[position]]);
+            prefixSlots.add(sortedSlots[position]);
+        }
+
+        if (!needle.isEmpty() && result.size() < limit) {
+            if (needle.length() >= GRAM) {
+                Postings[] lists = needlePostings(needle);
+                int[] cursors = new int[lists == null ? 0 : lists.length];
+                int slot = lists == null ? Integer.MAX_VALUE : nextCommonSlot(lists, cursors, 0);
+                for (int verified = 0; slot != Integer.MAX_VALUE && result.size() < limit && verified < MAX_VERIFIED;
+                     verified++) {
+                    addIfContains(slot, needle, prefixSlots, result);
+                    slot = nextCommonSlot(lists, cursors, slot + 1);
+                }
+            } else {
+                for (int slot = 0; slot < slotCount && result.size() < limit && slot < MAX_VERIFIED; slot++) {
+                    addIfContains(slot, needle, prefixSlots, result);
+                }
+            }
+        }
+
+        recordLatency(System.nanoTime() - start);
+        return result;
+    }
+
+    // First entry whose name equals the text exactly, or null
+    synchronized LookupItem exact(String text) {
+        String key = normalize(text);
+        for (int position = lowerBound(key); position < sortedSize && sortedKeys[position].equals(key); position++) {
+            LookupItem item = items[sortedSlots[position]];
+            if (item.name.equals(text)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    synchronized int size() {
+        return live;
+    }
+
+    synchronized String stats() {
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < LATENCY_BUCKETS_NANOS.length; i++) {
+            if (latencyCounts[i] > 0) {
+                histogram.append(histogram.length() == 0 ? "" : " ")
+                         .append(LATENCY_BUCKETS_NANOS[i] == Long.MAX_VALUE ? ">50ms"
+                             : "<" + LATENCY_BUCKETS_NANOS[i] / 1000 + "us")
+                         .append('=').append(latencyCounts[i]);
+            }
+        }
+        return String.format("entries=%d queries=%d avg=%.3fms max=%.3fms p99<=%s [%s]",
+            live, queries, queries == 0 ? 0.0 : totalNanos / 1e6 / queries, maxNanos / 1e6,
+            percentileBucket(0.99), histogram);
+    }
+
+    private void rebuild(Collection<LookupItem> entries) {
+        int capacity = Math.max(64, entries.size());
+        items = new LookupItem[capacity];
+        keys = new String[capacity];
+        slotCount = 0;
+        live = 0;
+        slotById.clear();
+        postings.clear();
+        for (LookupItem item : entries) {
+            appendSlot(item);
+        }
+
+        Integer[] order = new Integer[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byKey = keys[a].compareTo(keys[b]);
+            return byKey != 0 ? byKey : Integer.compare(a, b);
+        });
+        sortedKeys = new String[capacity];
+        sortedSlots = new int[capacity];
+        for (int i = 0; i < slotCount; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedSlots[i] = order[i];
+        }
+        sortedSize = slotCount;
+    }
+
+    private int appendSlot(LookupItem item) {
+        if (slotCount == items.length) {
+            items = Arrays.copyOf(items, slotCount * 2);
+            keys = Arrays.copyOf(keys, slotCount * 2);
+        }
+        int slot = slotCount++;
+        items[slot] = item;
+        keys[slot] = normalize(item.name);
+        slotById.put(item.id, slot);
+        live++;
+
+        String key = keys[slot];
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            Postings list = postings.computeIfAbsent(gram(key, i), g -> new Postings());
+            // Slots are appended in increasing order, so a trigram repeated in one name is posted once
+            if (list.size == 0 || list.slots[list.size - 1] != slot) {
+                list.add(slot);
+            }
+        }
+        return slot;
+    }
+
+    // Postings of the needle's rarest distinct trigrams, rarest first; null if one occurs nowhere
+    private Postings[] needlePostings(String needle) {
+        Map<Long, Postings> distinct = new HashMap<>();
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            long gram = gram(needle, i);
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return null;
+            }
+            distinct.put(gram, list);
+        }
+        Postings[] lists = distinct.values().toArray(new Postings[0]);
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        return Arrays.copyOf(lists, Math.min(INTERSECTED_LISTS, lists.length));
+    }
+
+    // Smallest slot >= from present in every list, advancing the cursors; MAX_VALUE when exhausted
+    private static int nextCommonSlot(Postings[] lists, int[] cursors, int from) {
+        int candidate = from;
+        int agreeing = 0;
+        int i = 0;
+        while (agreeing < lists.length) {
+            Postings list = lists[i];
+            int cursor = gallop(list, cursors[i], candidate);
+            cursors[i] = cursor;
+            if (cursor == list.size) {
+                return Integer.MAX_VALUE;
+            }
+            if (list.slots[cursor] == candidate) {
+                agreeing++;
+            } else {
+                // This list skips past the candidate, so every list must catch up to its next slot
+                candidate = list.slots[cursor];
+                agreeing = 1;
+            }
+            i = (i + 1) % lists.length;
+        }
+        return candidate;
+    }
+
+    // First index at or after start whose slot is >= target, by exponential then binary search
+    private static int gallop(Postings list, int start, int target) {
+        int step = 1;
+        int low = start;
+        int high = start;
+        while (high < list.size && list.slots[high] < target) {
+            low = high + 1;
+            high = start + step;
+            step <<= 1;
+        }
+        high = Math.min(high, list.size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.slots[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void addIfContains(int slot, String needle, Set<Integer> prefixSlots, List<LookupItem> result) {
+        if (items[slot] != null && !prefixSlots.contains(slot) && keys[slot].contains(needle)) {
+            result.add(items[slot]);
+        }
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = sortedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void recordLatency(long nanos) {
+        queries++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        for (int i = 0; i < LATENCY_BUCKETS_NANOS.length; i++) {
+            if (nanos < LATENCY_BUCKETS_NANOS[i]) {
+                latencyCounts[i]++;
+                break;
+            }
+        }
+    }
+
+    private String percentileBucket(double percentile) {
+        long threshold = (long) Math.ceil(queries * percentile);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS_NANOS.length; i++) {
+            seen += latencyCounts[i];
+            if (seen >= threshold && seen > 0) {
+                return LATENCY_BUCKETS_NANOS[i] == Long.MAX_VALUE ? "inf"
+                    : String.format("%.2fms", LATENCY_BUCKETS_NANOS[i] / 1e6);
+            }
+        }
+        return "n/a";
+    }
+
+    private static long gram(String key, int offset) {
+        return ((long) key.charAt(offset) << 32) | ((long) key.charAt(offset + 1) << 16) | key.charAt(offset + 2);
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,199 @@
+package Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// Every write to the database goes through here. Within the process, writes
+// wait their turn in one first-come first-served queue. Between processes
+// (other tills, the API server, the batch CLI) SQLite's lock decides, and each
+// write starts by taking it with BEGIN IMMEDIATE. A deferred transaction reads
+// first and only asks for the lock at its first write, where it fails at once
+// with "database is locked" if another process has committed since its read.
+// Each attempt waits LOCK_ATTEMPT_MS for the lock. While it is busy the next
+// attempt follows a jittered pause that doubles each time, so competing
+// processes spread out instead of retrying in step. After WRITE_DEADLINE_MS
+// the write fails with BusyException and nothing has been written.
+// The write runs inside that transaction, which commits when it returns:
+// writes that manage their own transaction (setAutoCommit(false), commit,
+// rollback) still do, and their commits open deferred transactions again, so
+// the lock is taken once per write. The counters behind stats() show how
+// often and how long writes waited.
+final class WriteScheduler {
+    private static final Logger log = LoggerFactory.getLogger(WriteScheduler.class);
+
+    // Busy timeout of one attempt at the write lock
+    static final int LOCK_ATTEMPT_MS = 200;
+    // Pause after the first busy attempt; it doubles up to BACKOFF_MAX_MS
+    static final long BACKOFF_BASE_MS = 20;
+    static final long BACKOFF_MAX_MS = 1000;
+    // How long a write waits for other processes before giving up
+    static final long WRITE_DEADLINE_MS = 10_000;
+
+    interface Write<T> {
+        T run(Connection connection) throws Exception;
+    }
+
+    // Other processes held the write lock until the deadline; nothing was written
+    static final class BusyException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        BusyException(long waitedMillis, SQLException cause) {
+            super("The database is busy with changes from another terminal (waited " + waitedMillis +
+                  " ms); nothing was saved, please try again", cause);
+        }
+    }
+
+    private static final ReentrantLock queue = new ReentrantLock(true);
+
+    private static final LongAdder writes = new LongAdder();
+    private static final LongAdder contended = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+    private static final LongAdder queueNanos = new LongAdder();
+    private static final LongAdder lockNanos = new LongAdder();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private WriteScheduler() {
+    }
+
+    static <T> T run(Connection connection, Write<T> write) throws Exception {
+        return run(connection, write, () -> false);
+    }
+
+    // Run write in a transaction on connection once it is this thread's turn and the
+    // write lock is held; cancelled is checked between attempts at the lock
+    static <T> T run(Connection connection, Write<T> write, BooleanSupplier cancelled) throws Exception {
+        long queued = System.nanoTime();
+        queue.lockInterruptibly();
+        try {
+            long turn = System.nanoTime();
+            queueNanos.add(turn - queued);
+            begin(connection, cancelled);
+            long locked = System.nanoTime();
+            lockNanos.add(locked - turn);
+            maxWaitNanos.accumulateAndGet(locked - queued, Math::max);
+
+            try {
+                T result = write.run(connection);
+                // Unless the write already committed (or rolled back) its own work
+                connection.setAutoCommit(true);
+                writes.increment();
+                return result;
+            } catch (Exception e) {
+                if (!connection.getAutoCommit()) {
+                    try {
+                        connection.rollback();
+                    } catch (SQLException rollbackFailure) {
+                        e.addSuppressed(rollbackFailure);
+                    }
+                    resetAutoCommit(connection);
+                }
+                throw e;
+            }
+        } finally {
+            queue.unlock();
+        }
+    }
+
+    // BEGIN IMMEDIATE, backing off while another process holds the write lock
+    private static void begin(Connection connection, BooleanSupplier cancelled) throws SQLException {
+        SQLiteConnection sqlite = connection.unwrap(SQLiteConnection.class);
+        int busyTimeout = sqlite.getBusyTimeout();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(WRITE_DEADLINE_MS);
+        sqlite.setBusyTimeout(LOCK_ATTEMPT_MS);
+        sqlite.getConnectionConfig().setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    connection.setAutoCommit(false);
+                    return;
+                } catch (SQLException e) {
+                    // A failed BEGIN leaves the driver out of auto-commit with no transaction open
+                    resetAutoCommit(connection);
+                    if (!isBusy(e)) {
+                        throw e;
+                    }
+                    if (attempt == 0) {
+                        contended.increment();
+                    }
+                    long pause = backoffMillis(attempt);
+                    long now = System.nanoTime();
+                    if (cancelled.getAsBoolean() || now + TimeUnit.MILLISECONDS.toNanos(pause) > deadline) {
+                        failures.increment();
+                        lockNanos.add(now - start);
+                        long waited = TimeUnit.NANOSECONDS.toMillis(now - start);
+                        log.warn("Gave up on the write lock after {} ms and {} attempts; {}", waited, attempt + 1, stats());
+                        throw new BusyException(waited, e);
+                    }
+                    retries.increment();
+                    try {
+                        Thread.sleep(pause);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        failures.increment();
+                        throw new BusyException(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), e);
+                    }
+                }
+            }
+        } finally {
+            // Transactions the write opens itself, and those its commits reopen, take the lock
+            // only when they first write, so a commit never waits on another process
+            sqlite.getConnectionConfig().setTransactionMode(SQLiteConfig.TransactionMode.DEFERRED);
+            sqlite.setBusyTimeout(busyTimeout);
+        }
+    }
+
+    // Between half and all of BACKOFF_BASE_MS * 2^attempt, capped at BACKOFF_MAX_MS
+    static long backoffMillis(int attempt) {
+        long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    // SQLITE_BUSY or SQLITE_LOCKED, in any of their extended forms, anywhere in the cause chain
+    static boolean isBusy(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BusyException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                // The driver reports SQLite's result code; the low byte is the primary code
+                int code = ((SQLException) t).getErrorCode() & 0xff;
+                if (code == SQLiteErrorCode.SQLITE_BUSY.code || code == SQLiteErrorCode.SQLITE_LOCKED.code) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void resetAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignored) {
+            // "cannot commit - no transaction is active"; the driver is back in auto-commit anyway
+        }
+    }
+
+    static String stats() {
+        long done = writes.sum();
+        long waited = Math.max(1, done + failures.sum());
+        return String.format(Locale.ROOT,
+            "Writes=%d contended=%d retries=%d failed=%d queue avg=%.2fms lock avg=%.2fms max wait=%.2fms",
+            done, contended.sum(), retries.sum(), failures.sum(), queueNanos.sum() / 1e6 / waited,
+            lockNanos.sum() / 1e6 / waited, maxWaitNanos.get() / 1e6);
+    }
+}
@@ -0,0 +1,259 @@
+package Book;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stress test for the optimistic locking in RowVersions. N writer threads, each
+// with its own connection like a separate till, keep editing the same few rows
+// for a while: read the row, think for a moment, then save it with one more
+// than they read. Every save that succeeds must show up, so at the end each
+// row has to equal its starting value plus the number of successful saves on
+// it. The book edits use the same compare-and-set UPDATE as the Edit Book
+// dialog, the order edits OrderWriter.updateOrder (one more of the first line's
+// quantity), and a conflict is retried by re-reading the row as Reload does.
+// A second run makes the same book edits as blind writes, the way the dialogs
+// saved before row versions, to show the updates that get lost without them.
+// Rows are changed, so use a copy of the database.
+// Usage: java -cp tools/target/tools.jar Book.ConcurrentEditTest <database> [writers] [seconds] [rows]
+final class ConcurrentEditTest {
+    // Upper bound of the pause between reading a row and saving it
+    private static final int THINK_MICROS = 2000;
+
+    private static final class Results {
+        final LongAdder saves = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        final QueryMetrics.Histogram latency = new QueryMetrics.Histogram();
+    }
+
+    private interface Edit {
+        // Read a row, change it and save it; false when the save lost to another writer
+        boolean apply(Connection connection, int id, Random random) throws SQLException;
+    }
+
+    private ConcurrentEditTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp tools/target/tools.jar Book.ConcurrentEditTest <database> [writers] [seconds] [rows]");
+            System.exit(2);
+        }
+        String url = "jdbc:sqlite:" + args[0];
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        Class.forName("org.sqlite.JDBC");
+        Database.useCachedNativeLibrary();
+        List<Integer> books;
+        List<Integer> orders;
+        try (Connection connection = open(url)) {
+            SchemaMigrations.migrate(connection, null);
+            books = ids(connection, "SELECT book_id FROM books ORDER BY book_id LIMIT " + rows);
+            orders = ids(connection, "SELECT order_id FROM orders WHERE EXISTS " +
+                         "(SELECT 1 FROM order_items oi WHERE oi.order_id = orders.order_id) ORDER BY order_id LIMIT " + rows);
+        }
+        if (books.isEmpty() || orders.isEmpty()) {
+            System.err.println("The database needs books and orders with items (see DataGenerator)");
+            System.exit(2);
+        }
+
+        boolean lost = false;
+        lost |= run("Books, compare-and-set", url, writers, seconds, books,
+                    "SELECT price_cents FROM books WHERE book_id = ?", ConcurrentEditTest::editBook, true);
+        lost |= run("Orders, OrderWriter.updateOrder", url, writers, seconds, orders,
+                    "SELECT quantity FROM order_items WHERE order_id = ? ORDER BY order_item_id LIMIT 1",
+                    ConcurrentEditTest::editOrder, true);
+        run("Books, blind writes (no version check)", url, writers, seconds, books,
+            "SELECT price_cents FROM books WHERE book_id = ?", ConcurrentEditTest::blindEditBook, false);
+        if (lost) {
+            System.out.println("FAILED: updates were lost with row versions in use");
+            System.exit(1);
+        }
+        System.out.println("OK: no updates lost with row versions");
+    }
+
+    // Run the edit from every writer for the given time; returns whether updates were lost
+    private static boolean run(String title, String url, int writers, int seconds, List<Integer> ids,
+                               String valueQuery, Edit edit, boolean retryConflicts) throws Exception {
+        long[] before = values(url, valueQuery, ids);
+        long[] saves = new long[ids.size()];
+        Results results = new Results();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int w = 0; w < writers; w++) {
+            Random random = new Random(w);
+            Thread thread = new Thread(() -> {
+                try (Connection connection = open(url)) {
+                    while (System.nanoTime() < deadline) {
+                        int row = random.nextInt(ids.size());
+                        long start = System.nanoTime();
+                        // A conflict means reloading and editing again, until the save goes in
+                        boolean saved = false;
+                        do {
+                            try {
+                                saved = edit.apply(connection, ids.get(row), random);
+                                if (!saved) {
+                                    results.conflicts.increment();
+                                }
+                            } catch (SQLException e) {
+                                if (!isBusy(e)) {
+                                    throw e;
+                                }
+                                results.busy.increment();
+                            }
+                        } while (!saved && retryConflicts);
+                        if (!saved) {
+                            continue;
+                        }
+                        results.latency.record(System.nanoTime() - start);
+                        results.saves.increment();
+                        synchronized (saves) {
+                            saves[row]++;
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            }, "writer-" + w);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        long[] after = values(url, valueQuery, ids);
+        long applied = 0;
+        long expected = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            applied += after[i] - before[i];
+            expected += saves[i];
+        }
+        System.out.printf(Locale.ROOT, "%s: %d writers on %d rows for %d s%n", title, writers, ids.size(), seconds);
+        System.out.printf(Locale.ROOT, "  %d saves (%.0f/s), %d conflicts retried, %d busy retries, " +
+                          "save p50=%.2fms p99=%.2fms%n", results.saves.sum(), results.saves.sum() / (double) seconds,
+                          results.conflicts.sum(), results.busy.sum(),
+                          results.latency.valueAt(0.50) / 1e6, results.latency.valueAt(0.99) / 1e6);
+        System.out.printf(Locale.ROOT, "  increments saved %d, applied %d, lost %d%n", expected, applied, expected - applied);
+        return applied != expected;
+    }
+
+    // The Edit Book dialog's save: the price read, plus one cent, if the version is still the one read
+    private static boolean editBook(Connection connection, int bookId, Random random) throws SQLException {
+        long[] row = read(connection, "SELECT price_cents, version FROM books WHERE book_id = ?", bookId);
+        think(random);
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "UPDATE books SET price_cents = ?, version = version + 1 WHERE book_id = ? AND version = ?")) {
+            pstmt.setLong(1, row[0] + 1);
+            pstmt.setInt(2, bookId);
+            pstmt.setLong(3, row[1]);
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    // As editBook, without the version check
+    private static boolean blindEditBook(Connection connection, int bookId, Random random) throws SQLException {
+        long[] row = read(connection, "SELECT price_cents, version FROM books WHERE book_id = ?", bookId);
+        think(random);
+        try (PreparedStatement pstmt = connection.prepareStatement("UPDATE books SET price_cents = ? WHERE book_id = ?")) {
+            pstmt.setLong(1, row[0] + 1);
+            pstmt.setInt(2, bookId);
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    // The order dialog's save: every line as read, the first one with one more copy
+    private static boolean editOrder(Connection connection, int orderId, Random random) throws SQLException {
+        Object[] header = BookstoreService.order(connection, orderId);
+        List<Object[]> items = new ArrayList<>();
+        long totalCents = 0;
+        // Lines are {orderItemId, bookId, title, quantity, unitPrice}
+        for (Object[] line : BookstoreService.orderItems(connection, orderId)) {
+            int quantity = (Integer) line[3] + (items.isEmpty() ? 1 : 0);
+            Money unitPrice = (Money) line[4];
+            items.add(new Object[] {line[2], quantity, unitPrice, line[0]});
+            totalCents += unitPrice.times(quantity).cents;
+        }
+        think(random);
+        try {
+            OrderWriter.updateOrder(connection, orderId, (Integer) header[4], (String) header[2], totalCents, items);
+            return true;
+        } catch (RowVersions.ConflictException e) {
+            return false;
+        }
+    }
+
+    private static void think(Random random) {
+        try {
+            long micros = random.nextInt(THINK_MICROS);
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isBusy(SQLException e) {
+        String message = String.valueOf(e.getMessage());
+        return message.contains("SQLITE_BUSY") || message.contains("database is locked");
+    }
+
+    private static Connection open(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + Database.BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA foreign_keys = ON");
+        }
+        return connection;
+    }
+
+    private static long[] read(Connection connection, String query, int id) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Row " + id + " is gone");
+                }
+                return new long[] {rs.getLong(1), rs.getLong(2)};
+            }
+        }
+    }
+
+    private static long[] values(String url, String query, List<Integer> ids) throws SQLException {
+        long[] values = new long[ids.size()];
+        try (Connection connection = open(url); PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(1, ids.get(i));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    values[i] = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<Integer> ids(Connection connection, String query) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
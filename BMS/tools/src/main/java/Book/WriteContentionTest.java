@@ -0,0 +1,192 @@
+package Book;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Several tills saving orders into one database file at the same moment, each
+// in its own process as in the shop. The tills run once saving the way they
+// used to, with the driver's deferred transactions and the connection's busy
+// timeout, and once through WriteScheduler. With holdMs, another process (a
+// long import batch, say) keeps the write lock for holdMs at a time with
+// holdMs between. For each run it prints the saves, the saves that failed as
+// busy and the time a save took including its wait, and checks that the
+// orders table grew by exactly the saves reported. Orders are written to the
+// database, so use a copy.
+// Usage: java -cp tools/target/tools.jar Book.WriteContentionTest <database> [tills] [seconds] [holdMs]
+final class WriteContentionTest {
+    private static final String RESULT = "RESULT";
+
+    private WriteContentionTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--till")) {
+            till(args[1], Boolean.parseBoolean(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--hold")) {
+            hold(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp tools/target/tools.jar Book.WriteContentionTest <database> [tills] [seconds] [holdMs]");
+            System.exit(2);
+        }
+        String database = args[0];
+        int tills = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int holdMs = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        Class.forName("org.sqlite.JDBC");
+        Database.useCachedNativeLibrary();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            SchemaMigrations.migrate(connection, null);
+        }
+        boolean lost = false;
+        lost |= run("Deferred transactions, busy timeout only", database, false, tills, seconds, holdMs);
+        lost |= run("WriteScheduler", database, true, tills, seconds, holdMs);
+        if (lost) {
+            System.out.println("FAILED: the orders table does not match the saves reported");
+            System.exit(1);
+        }
+    }
+
+    // One run of all the tills; returns whether the saves reported and the rows stored differ
+    private static boolean run(String title, String database, boolean scheduled, int tills, int seconds,
+                               int holdMs) throws Exception {
+        long before = orderCount(database);
+        List<Process> processes = new ArrayList<>();
+        for (int t = 0; t < tills; t++) {
+            processes.add(start("--till", database, String.valueOf(scheduled), String.valueOf(seconds), String.valueOf(t)));
+        }
+        Process holder = holdMs > 0 ? start("--hold", database, String.valueOf(seconds), String.valueOf(holdMs)) : null;
+
+        long saves = 0;
+        long failed = 0;
+        long errors = 0;
+        System.out.printf(Locale.ROOT, "%s: %d tills for %d s%s%n", title, tills, seconds,
+                          holdMs > 0 ? ", write lock held " + holdMs + " ms at a time elsewhere" : "");
+        for (Process process : processes) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(RESULT)) {
+                        String[] fields = line.split(" ", 5);
+                        saves += Long.parseLong(fields[1]);
+                        failed += Long.parseLong(fields[2]);
+                        errors += Long.parseLong(fields[3]);
+                        System.out.println("  " + fields[4]);
+                    }
+                }
+            }
+            process.waitFor();
+        }
+        if (holder != null) {
+            holder.waitFor();
+        }
+        long stored = orderCount(database) - before;
+        System.out.printf(Locale.ROOT, "  %d saves (%.0f/s), %d failed as busy, %d other errors; %d orders stored%n",
+                          saves, saves / (double) seconds, failed, errors, stored);
+        return stored != saves;
+    }
+
+    // A till: save small orders back to back until the time is up, then report
+    private static void till(String database, boolean scheduled, int seconds, int seed) throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Connection writer = Database.open(database);
+        int maxBookId = maxId(writer, "SELECT MAX(book_id) FROM books");
+        int maxCustomerId = maxId(writer, "SELECT MAX(customer_id) FROM customers");
+        Random random = new Random(seed);
+        QueryMetrics.Histogram latency = new QueryMetrics.Histogram();
+        long saves = 0;
+        long failed = 0;
+        long errors = 0;
+        String lastError = "";
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            int[] bookIds = {1 + random.nextInt(maxBookId), 1 + random.nextInt(maxBookId)};
+            int[] quantities = {1 + random.nextInt(3), 1};
+            int customerId = 1 + random.nextInt(maxCustomerId);
+            long start = System.nanoTime();
+            try {
+                // Priced before saving, as the order dialog does
+                List<Object[]> lines = BookstoreService.catalogLines(writer, bookIds, quantities);
+                if (scheduled) {
+                    WriteScheduler.run(writer, connection ->
+                        BookstoreService.placeOrder(connection, customerId, "2024-06-01", lines));
+                } else {
+                    BookstoreService.placeOrder(writer, customerId, "2024-06-01", lines);
+                }
+                saves++;
+            } catch (Exception e) {
+                if (WriteScheduler.isBusy(e)) {
+                    failed++;
+                } else {
+                    errors++;
+                }
+                lastError = e.getMessage();
+            }
+            latency.record(System.nanoTime() - start);
+        }
+        System.out.printf(Locale.ROOT, "%s %d %d %d till %d: %d saves, %d busy, save p50=%.1fms p99=%.1fms max=%.1fms%s%s%n",
+                          RESULT, saves, failed, errors, seed, saves, failed, latency.valueAt(0.50) / 1e6,
+                          latency.valueAt(0.99) / 1e6, latency.valueAt(1.0) / 1e6,
+                          scheduled ? "; " + WriteScheduler.stats() : "",
+                          lastError.isEmpty() ? "" : "; last error: " + lastError);
+        Database.close();
+    }
+
+    // Another writer that keeps the lock for holdMs at a time
+    private static void hold(String database, int seconds, int holdMs) throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Connection writer = Database.open(database);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            WriteScheduler.run(writer, connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("UPDATE books SET version = version WHERE book_id = 1");
+                }
+                Thread.sleep(holdMs);
+                return null;
+            });
+            Thread.sleep(holdMs);
+        }
+        Database.close();
+    }
+
+    private static Process start(String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        // Contention is the subject here, not the statements
+        command.add("-Dbms.queryMetrics=false");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WriteContentionTest.class.getName());
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static long orderCount(String database) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            return maxId(connection, "SELECT COUNT(*) FROM orders");
+        }
+    }
+
+    private static int maxId(Connection connection, String query) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}